@@ -4,7 +4,6 @@ import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.CompoundButton;
@@ -12,6 +11,7 @@ import android.widget.Toast;
 import android.widget.ToggleButton;
 
 import com.coderchoy.barcodereaderview.decode.BarcodeReaderView;
+import com.coderchoy.barcodereaderview.decode.BarcodeThumbnail;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.Result;
 
@@ -73,7 +73,7 @@ public class ScannerActivity extends AppCompatActivity implements BarcodeReaderV
     }
 
     @Override
-    public void onBarcodeRead(Result result, Bitmap barcode, float scaleFactor) {
+    public void onBarcodeRead(Result result, BarcodeThumbnail thumbnail) {
         new AlertDialog.Builder(this)
                 .setTitle("扫描结果：")
                 .setMessage("类型：" + result.getBarcodeFormat() + "\n内容：" + result.getText())
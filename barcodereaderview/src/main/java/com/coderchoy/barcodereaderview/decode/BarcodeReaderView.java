@@ -17,9 +17,9 @@
 package com.coderchoy.barcodereaderview.decode;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.content.res.TypedArray;
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
@@ -38,6 +38,9 @@ import com.google.zxing.Result;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.ResultPointCallback;
 import com.google.zxing.client.android.camera.CameraManager;
+import com.google.zxing.client.android.camera.PreviewBufferStats;
+import com.google.zxing.client.android.camera.PreviewSizeChoice;
+import com.google.zxing.client.android.camera.PreviewSizePolicy;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -70,16 +73,20 @@ public class BarcodeReaderView extends SurfaceView implements SurfaceHolder.Call
     private static final int MAX_RESULT_POINTS = 20;
     private static final int CURRENT_POINT_OPACITY = 0xA0;
     private static final int LAST_POINT_OPACITY = CURRENT_POINT_OPACITY >> 1;
+    private static final String FORMAT_STATS_PREFS = "barcode_reader_format_stats";
 
     private String mCharacterSet;
     private Map<DecodeHintType, ?> mDecodeHints;
     private Collection<BarcodeFormat> mDecodeFormats;
     private OnBarcodeReadListener mOnBarcodeReadListener;
+    private OnMultipleBarcodeReadListener mOnMultipleBarcodeReadListener;
 
     private boolean hasSurface;
     private BeepManager mBeepManager;
     private CameraManager mCameraManager;
+    private FrameSource mFrameSource;
     private BarcodeReaderHandler mBarcodeReaderHandler;
+    private StartupTracker mStartupTracker;
 
     private Paint paint;
     private int laserTop;
@@ -151,6 +158,27 @@ public class BarcodeReaderView extends SurfaceView implements SurfaceHolder.Call
      */
     private int scanHintMarginTop;
 
+    /**
+     * 循环使用的预览帧缓冲区个数，0表示每帧由相机重新分配
+     */
+    private int previewBufferCount;
+
+    /**
+     * 预览尺寸的选择策略，及按解码需要选择时预计最小条码占取景框短边的比例
+     */
+    private PreviewSizePolicy previewSizePolicy = PreviewSizePolicy.MATCH_SCREEN;
+    private float minCodeSize = 0.5f;
+
+    /**
+     * 解码流水线的参数：解码线程数、等待帧的策略、连续扫描等
+     */
+    private final ScanOptions mScanOptions = new ScanOptions();
+
+    /**
+     * 是否在后台线程打开相机
+     */
+    private boolean asyncCameraStart;
+
     public BarcodeReaderView(Context context) {
         this(context, null);
     }
@@ -203,11 +231,29 @@ public class BarcodeReaderView extends SurfaceView implements SurfaceHolder.Call
      * 启动相机预览与扫描，在Activity/Fragment的onResume方法中调用。
      */
     public void onResume() {
+        mStartupTracker = new StartupTracker();
+        if (mFrameSource != null) {
+            // Frames come from elsewhere; neither the camera nor the surface is needed.
+            if (mBarcodeReaderHandler == null) {
+                mBarcodeReaderHandler = new BarcodeReaderHandler(this, mDecodeFormats, mDecodeHints,
+                        mCharacterSet, this, mFrameSource, mScanOptions, mStartupTracker);
+                mBarcodeReaderHandler.start();
+            }
+            return;
+        }
         if (checkCameraHardware()) {
             mCameraManager = new CameraManager(this);
             if (frameWidth > 0 && frameHeight > 0) {
                 mCameraManager.setManualFramingRect(frameWidth, frameHeight, frameTopOffset);
             }
+            mCameraManager.setPreviewBufferCount(previewBufferCount);
+            mCameraManager.setPreviewSizePolicy(previewSizePolicy, mDecodeFormats, minCodeSize);
+            if (asyncCameraStart) {
+                // The camera opens in the background while the surface is created and the decode threads start.
+                mCameraManager.openDriverAsync(new CameraStarter(mCameraManager, mStartupTracker));
+                mBarcodeReaderHandler = new BarcodeReaderHandler(this, mDecodeFormats, mDecodeHints,
+                        mCharacterSet, this, mCameraManager, mScanOptions, mStartupTracker);
+            }
             SurfaceHolder surfaceHolder = getHolder();
             if (hasSurface) {
                 initCamera(surfaceHolder);
@@ -233,6 +279,10 @@ public class BarcodeReaderView extends SurfaceView implements SurfaceHolder.Call
         if (mCameraManager != null) {
             mCameraManager.closeDriver();
         }
+        FormatScheduler formatScheduler = mScanOptions.getFormatScheduler();
+        if (formatScheduler != null) {
+            formatScheduler.save(getFormatStatsPrefs());
+        }
 
         if (!hasSurface) {
             getHolder().removeCallback(this);
@@ -286,7 +336,7 @@ public class BarcodeReaderView extends SurfaceView implements SurfaceHolder.Call
     }
 
     /**
-     * 在指定时间后重新扫码
+     * 在指定时间后重新扫码，连续扫描模式下无需调用
      */
     public void restartPreviewAfterDelay(long delayMS) {
         if (mBarcodeReaderHandler != null) {
@@ -294,10 +344,276 @@ public class BarcodeReaderView extends SurfaceView implements SurfaceHolder.Call
         }
     }
 
+    /**
+     * 设置循环使用的预览帧缓冲区个数，避免相机每帧分配新的内存，减少GC。在onResume之前调用。
+     * <p>
+     * <p>默认为0，即不使用缓冲区；建议设置为2~4
+     */
+    public void setPreviewBufferCount(int previewBufferCount) {
+        if (previewBufferCount < 0) {
+            throw new IllegalArgumentException("Negative buffer count: " + previewBufferCount);
+        }
+        this.previewBufferCount = previewBufferCount;
+    }
+
+    /**
+     * 是否在后台线程打开和设置相机，同时在主线程创建预览Surface、启动解码线程，以缩短启动时间。在onResume之前调用。
+     * <p>
+     * <p>默认关闭。打开后相机的预览帧和对焦回调也改在后台线程中执行
+     */
+    public void setAsyncCameraStart(boolean newSetting) {
+        this.asyncCameraStart = newSetting;
+    }
+
+    /**
+     * 设置相机预览尺寸的选择策略。在onResume之前调用。
+     * <p>
+     * <p>默认{@link PreviewSizePolicy#MATCH_SCREEN}，选择与屏幕比例最接近的尺寸，往往是相机支持的最大尺寸；
+     * {@link PreviewSizePolicy#DECODE_COST}选择能看清最小条码的最小尺寸，每帧需要处理的数据更少，解码更快。
+     * 实际选择的结果见{@link #getPreviewSizeChoice()}
+     *
+     * @param minCodeSize 预计最小的条码占取景框短边的比例，(0, 1]，默认0.5；仅用于{@link PreviewSizePolicy#DECODE_COST}
+     */
+    public void setPreviewSizePolicy(PreviewSizePolicy policy, float minCodeSize) {
+        if (minCodeSize <= 0f || minCodeSize > 1f) {
+            throw new IllegalArgumentException("Code size out of (0, 1]: " + minCodeSize);
+        }
+        this.previewSizePolicy = policy;
+        this.minCodeSize = minCodeSize;
+    }
+
+    /**
+     * 获取预览尺寸的选择结果（策略、选择的尺寸、按屏幕比例会选择的尺寸、最小条码每个模块的像素数），相机未打开时返回null
+     */
+    public PreviewSizeChoice getPreviewSizeChoice() {
+        CameraManager cameraManager = mCameraManager;
+        return cameraManager == null ? null : cameraManager.getPreviewSizeChoice();
+    }
+
+    /**
+     * 设置并行解码的线程数，每个线程拥有独立的解码器，多核设备上可提高解码帧率。在onResume之前调用。
+     * <p>
+     * <p>默认为1，建议不超过{@code Runtime.getRuntime().availableProcessors()}
+     */
+    public void setDecodeWorkerCount(int decodeWorkerCount) {
+        if (decodeWorkerCount < 1) {
+            throw new IllegalArgumentException("At least one decode worker is required");
+        }
+        mScanOptions.setDecodeWorkerCount(decodeWorkerCount);
+    }
+
+    /**
+     * 设置所有解码线程都忙时新到达的帧的处理策略。在onResume之前调用。
+     *
+     * @param policy   处理策略，默认为{@link PendingFramePolicy#KEEP_LATEST}
+     * @param capacity 等待队列的长度，{@link PendingFramePolicy#KEEP_LATEST}时忽略
+     */
+    public void setPendingFramePolicy(PendingFramePolicy policy, int capacity) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Policy required");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        mScanOptions.setPendingFramePolicy(policy, capacity);
+    }
+
+    /**
+     * 设置是否流水线解码：解码当前帧的同时相机即开始获取下一帧，解码失败的帧不再经过主线程。在onResume之前调用。
+     * <p>
+     * <p>默认关闭；建议配合{@link #setPreviewBufferCount(int)}使用
+     */
+    public void setPipelinedDecode(boolean pipelinedDecode) {
+        mScanOptions.setPipelinedDecode(pipelinedDecode);
+    }
+
+    /**
+     * 设置连续扫描模式：扫码成功后不停止，继续扫描。同一条码（类型和内容相同）在指定时间内重复出现时不会再次回调，
+     * 条码一直处于取景框内时持续计时。在onResume之前调用。
+     *
+     * @param continuousScan 是否连续扫描，默认关闭
+     * @param duplicateTtlMs 重复条码的屏蔽时间（毫秒），0表示不屏蔽
+     */
+    public void setContinuousScan(boolean continuousScan, long duplicateTtlMs) {
+        if (duplicateTtlMs < 0) {
+            throw new IllegalArgumentException("Negative time-to-live: " + duplicateTtlMs);
+        }
+        mScanOptions.setContinuousScan(continuousScan, duplicateTtlMs);
+    }
+
+    /**
+     * 设置是否一次识别取景框内的所有条码（如同一标签上的多个条码），结果通过
+     * {@link #setOnMultipleBarcodeReadListener(OnMultipleBarcodeReadListener)}一次性回调。在onResume之前调用。
+     * <p>
+     * <p>默认关闭。只扫描二维码时使用{@link com.google.zxing.multi.qrcode.QRCodeMultiReader}，
+     * 否则使用{@link com.google.zxing.multi.GenericMultipleBarcodeReader}
+     */
+    public void setDecodeMultiple(boolean decodeMultiple) {
+        mScanOptions.setDecodeMultiple(decodeMultiple);
+    }
+
+    /**
+     * 设置是否根据实际扫到的条码种类自动调整解码顺序：常见的种类优先尝试，很少出现的种类隔若干帧才尝试一次。
+     * 统计数据保存在SharedPreferences中，下次启动时继续使用。在onResume之前调用。
+     * <p>
+     * <p>默认关闭；只在{@link #setDecodeFormats(Collection)}设置了多种条码且未开启多条码模式时生效
+     */
+    public void setAdaptiveFormatOrder(boolean adaptiveFormatOrder) {
+        if (!adaptiveFormatOrder) {
+            mScanOptions.setFormatScheduler(null);
+        } else if (mScanOptions.getFormatScheduler() == null) {
+            FormatScheduler formatScheduler = new FormatScheduler();
+            formatScheduler.load(getFormatStatsPrefs());
+            mScanOptions.setFormatScheduler(formatScheduler);
+        }
+    }
+
+    /**
+     * 设置是否跟踪条码位置：根据上一帧找到的定位点，只解码取景框内条码附近的区域，连续几帧找不到时逐步扩大回整个取景框。
+     * 取景框较大时可明显减少二值化和定位的耗时。在onResume之前调用。
+     * <p>
+     * <p>默认关闭
+     */
+    public void setRoiTracking(boolean roiTracking) {
+        mScanOptions.setRoiTracking(roiTracking);
+    }
+
+    /**
+     * 设置是否在解码前检查图像质量：对焦过程中或手抖时的模糊帧、空白帧直接跳过，不进行二值化和解码。
+     * 判断标准随最近的帧自动调整。在onResume之前调用。
+     * <p>
+     * <p>默认关闭；跳过的帧数见{@link DecodePipelineStats#getGatedFrameCount()}
+     */
+    public void setFrameQualityGate(boolean frameQualityGate) {
+        mScanOptions.setFrameQualityGate(frameQualityGate);
+    }
+
+    /**
+     * 设置二值化策略。光线充足时先用全局阈值可明显缩短每帧的解码时间，失败时仍会使用局部阈值，不影响弱光下的识别率。
+     * 在onResume之前调用。
+     * <p>
+     * <p>默认为{@link BinarizerStrategy#HYBRID}；{@link BinarizerStrategy#ADAPTIVE}配合
+     * {@link #setFrameQualityGate(boolean)}使用时可根据对比度判断光线
+     */
+    public void setBinarizerStrategy(BinarizerStrategy strategy) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("Strategy required");
+        }
+        mScanOptions.setBinarizerStrategy(strategy);
+    }
+
+    /**
+     * 设置是否多分辨率解码：取景框较大时先以一半分辨率解码，只有发现疑似条码但解码失败、或连续几帧都未找到时才以原始分辨率解码。
+     * 不额外复制图像数据。在onResume之前调用。
+     * <p>
+     * <p>默认关闭；各分辨率的解码次数见{@link DecodePipelineStats#getHalfResolutionHitCount()}等
+     */
+    public void setResolutionPyramid(boolean resolutionPyramid) {
+        mScanOptions.setResolutionPyramid(resolutionPyramid);
+    }
+
+    /**
+     * 设置解码的时间限制，避免损坏的条码（如PDF417、DataMatrix）长时间占用解码线程。在onResume之前调用。
+     *
+     * @param frameBudgetMs  单帧的时间预算（毫秒），超出后跳过该帧剩余的解码步骤，转而解码更新的帧；0表示不限制
+     * @param stallTimeoutMs 解码线程卡住的时间上限（毫秒），超出后由新线程替换；0表示不检查
+     */
+    public void setDecodeDeadline(long frameBudgetMs, long stallTimeoutMs) {
+        if (frameBudgetMs < 0 || stallTimeoutMs < 0) {
+            throw new IllegalArgumentException("Negative time limit");
+        }
+        mScanOptions.setDecodeDeadline(frameBudgetMs, stallTimeoutMs);
+    }
+
+    /**
+     * 按解码速度调节相机的帧率：相机出帧的速度保持在解码速度的两倍左右，不再产生只会被丢弃的帧，
+     * 长时间扫描时降低功耗和发热，扫码速度不受影响。在onResume之前调用，仅对相机有效。
+     * <p>
+     * <p>默认关闭
+     *
+     * @param allowLowerResolution 帧率已降到最低、解码仍跟不上时，是否降低一档预览尺寸以减少每帧的解码时间
+     */
+    public void setAdaptiveFrameRate(boolean enabled, boolean allowLowerResolution) {
+        mScanOptions.setAdaptiveFrameRate(enabled, enabled && allowLowerResolution);
+    }
+
+    /**
+     * 设置扫码成功时是否保留缩略图。在onResume之前调用。
+     * <p>
+     * <p>默认开启；缩略图只在调用{@link BarcodeThumbnail#getBitmap()}或{@link BarcodeThumbnail#loadBitmap}时才生成
+     */
+    public void setThumbnailEnabled(boolean thumbnailEnabled) {
+        mScanOptions.setThumbnailEnabled(thumbnailEnabled);
+    }
+
+    /**
+     * 使用指定的帧来源代替相机，如{@link MemoryFrameSource}、{@link FileFrameSource}，用于在没有相机的环境中
+     * 测试扫码流程的吞吐量和延迟。设置后不再打开相机和预览界面，传入null恢复使用相机。在onResume之前调用。
+     */
+    public void setFrameSource(FrameSource frameSource) {
+        mFrameSource = frameSource;
+    }
+
+    /**
+     * 记录解码器收到的帧及其拍摄信息和解码结果，用于分析扫不出来的问题，记录的文件可用{@link RecordedFrameSource}回放。
+     * 传入null停止记录。在onResume之前调用；不再使用时调用{@link FrameRecorder#close()}。
+     */
+    public void setFrameRecorder(FrameRecorder frameRecorder) {
+        mScanOptions.setFrameRecorder(frameRecorder);
+    }
+
+    /**
+     * 获取解码流水线的统计信息（实际解码帧率、解码线程空闲时间），未开始扫描时返回null
+     */
+    public DecodePipelineStats getDecodePipelineStats() {
+        BarcodeReaderHandler handler = mBarcodeReaderHandler;
+        return handler == null ? null : handler.getDecodePipelineStats();
+    }
+
+    /**
+     * 获取解码流程各步骤（等待帧、预处理、二值化、解码、回调主线程、总时间）的耗时分布和帧数统计，未开始扫描时返回null。
+     * 可在任意线程调用，不会阻塞解码线程
+     */
+    public DecodeStageStats getDecodeStageStats() {
+        BarcodeReaderHandler handler = mBarcodeReaderHandler;
+        return handler == null ? null : handler.getDecodeStageStats();
+    }
+
+    /**
+     * 获取启动扫描的时间线（打开相机、设置参数、第一帧、第一次解码等节点的耗时），未调用过{@link #onResume()}时返回null。
+     * 暂停后仍可获取上一次启动的时间线
+     */
+    public StartupTimeline getStartupTimeline() {
+        StartupTracker tracker = mStartupTracker;
+        return tracker == null ? null : tracker.snapshot();
+    }
+
+    /**
+     * 获取最近一帧的图像质量评分，未开启{@link #setFrameQualityGate(boolean)}或未开始扫描时返回null
+     */
+    public FrameQuality getLastFrameQuality() {
+        BarcodeReaderHandler handler = mBarcodeReaderHandler;
+        return handler == null ? null : handler.getLastFrameQuality();
+    }
+
+    /**
+     * 获取预览帧缓冲区的统计信息（缓冲区个数、耗尽次数、丢帧数），未使用缓冲区时返回null
+     */
+    public PreviewBufferStats getPreviewBufferStats() {
+        return mCameraManager == null ? null : mCameraManager.getPreviewBufferStats();
+    }
+
     public void setOnBarcodeReadListener(OnBarcodeReadListener onQRCodeReadListener) {
         this.mOnBarcodeReadListener = onQRCodeReadListener;
     }
 
+    /**
+     * 多条码模式下的回调；未设置时每个条码分别通过{@link OnBarcodeReadListener#onBarcodeRead}回调
+     */
+    public void setOnMultipleBarcodeReadListener(OnMultipleBarcodeReadListener listener) {
+        this.mOnMultipleBarcodeReadListener = listener;
+    }
+
     public void setMaskColor(@ColorInt int maskColor) {
         this.maskColor = maskColor;
     }
@@ -521,16 +837,26 @@ public class BarcodeReaderView extends SurfaceView implements SurfaceHolder.Call
         if (surfaceHolder == null) {
             throw new IllegalStateException("No SurfaceHolder provided");
         }
+        mStartupTracker.mark(StartupStep.SURFACE_READY);
+        if (asyncCameraStart) {
+            // Opening began in onResume(); configuring needs the surface and the size of this view.
+            mCameraManager.configureDriverAsync(surfaceHolder, getWidth(), getHeight(),
+                    new CameraStarter(mCameraManager, mStartupTracker));
+            return;
+        }
         if (mCameraManager.isOpen()) {
             LogEx.w(TAG, "initCamera() while already open -- late SurfaceView callback?");
             return;
         }
         try {
             mCameraManager.openDriver(surfaceHolder);
-            // Creating the mBarcodeReaderHandler starts the preview, which can also throw a RuntimeException.
+            mStartupTracker.mark(StartupStep.CAMERA_OPENED);
+            mStartupTracker.mark(StartupStep.CAMERA_CONFIGURED);
+            // Starting the mBarcodeReaderHandler starts the preview, which can also throw a RuntimeException.
             if (mBarcodeReaderHandler == null) {
                 mBarcodeReaderHandler = new BarcodeReaderHandler(this, mDecodeFormats, mDecodeHints,
-                        mCharacterSet, this, mCameraManager);
+                        mCharacterSet, this, mCameraManager, mScanOptions, mStartupTracker);
+                mBarcodeReaderHandler.start();
             }
         } catch (IOException ioe) {
             LogEx.w(TAG, ioe);
@@ -549,18 +875,29 @@ public class BarcodeReaderView extends SurfaceView implements SurfaceHolder.Call
         return laserTop;
     }
 
+    private SharedPreferences getFormatStatsPrefs() {
+        return getContext().getSharedPreferences(FORMAT_STATS_PREFS, Context.MODE_PRIVATE);
+    }
+
     CameraManager getCameraManager() {
         return mCameraManager;
     }
 
-    BarcodeReaderHandler getBarcodeReaderHandler() {
-        return mBarcodeReaderHandler;
+    void handleDecode(Result result, BarcodeThumbnail thumbnail) {
+        mBeepManager.playBeepSoundAndVibrate();
+        if (mOnBarcodeReadListener != null) {
+            mOnBarcodeReadListener.onBarcodeRead(result, thumbnail);
+        }
     }
 
-    void handleDecode(Result result, Bitmap barcode, float scaleFactor) {
+    void handleDecodeMultiple(Result[] results, BarcodeThumbnail thumbnail) {
         mBeepManager.playBeepSoundAndVibrate();
-        if (mOnBarcodeReadListener != null) {
-            mOnBarcodeReadListener.onBarcodeRead(result, barcode, scaleFactor);
+        if (mOnMultipleBarcodeReadListener != null) {
+            mOnMultipleBarcodeReadListener.onBarcodesRead(results, thumbnail);
+        } else if (mOnBarcodeReadListener != null) {
+            for (Result result : results) {
+                mOnBarcodeReadListener.onBarcodeRead(result, thumbnail);
+            }
         }
     }
 
@@ -574,10 +911,75 @@ public class BarcodeReaderView extends SurfaceView implements SurfaceHolder.Call
         /**
          * 扫码成功时调用
          *
-         * @param result      详细的解码结果（类型，内容等）
-         * @param barcode     二维码缩略图
-         * @param scaleFactor 二维码缩略图的缩放比例
+         * @param result    详细的解码结果（类型，内容等）
+         * @param thumbnail 二维码缩略图，通过{@link BarcodeThumbnail#loadBitmap}在后台生成；关闭缩略图时为null
          */
-        void onBarcodeRead(Result result, Bitmap barcode, float scaleFactor);
+        void onBarcodeRead(Result result, BarcodeThumbnail thumbnail);
+    }
+
+    public interface OnMultipleBarcodeReadListener {
+
+        /**
+         * 多条码模式下扫码成功时调用，一帧中识别到的所有条码一次性回调
+         *
+         * @param results   每个条码的解码结果，至少一个
+         * @param thumbnail 取景框内图像的缩略图；关闭缩略图时为null
+         */
+        void onBarcodesRead(Result[] results, BarcodeThumbnail thumbnail);
+    }
+
+    /**
+     * Hears from the camera thread during an asynchronous start and takes over on the main thread.
+     * Callbacks of a start that was since paused, or replaced by a newer one, are ignored.
+     */
+    private final class CameraStarter implements CameraManager.StartCallback {
+
+        private final CameraManager cameraManager;
+        private final StartupTracker startupTracker;
+
+        CameraStarter(CameraManager cameraManager, StartupTracker startupTracker) {
+            this.cameraManager = cameraManager;
+            this.startupTracker = startupTracker;
+        }
+
+        @Override
+        public void onCameraOpened() {
+            startupTracker.mark(StartupStep.CAMERA_OPENED);
+        }
+
+        @Override
+        public void onCameraConfigured() {
+            startupTracker.mark(StartupStep.CAMERA_CONFIGURED);
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    BarcodeReaderHandler handler = mBarcodeReaderHandler;
+                    if (mCameraManager != cameraManager || handler == null) {
+                        return;
+                    }
+                    try {
+                        handler.start();
+                    } catch (RuntimeException re) {
+                        onCameraStartFailed(re);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onCameraStartFailed(final Exception e) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCameraManager != cameraManager || mBarcodeReaderHandler == null) {
+                        return;
+                    }
+                    LogEx.w(TAG, e);
+                    if (mOnBarcodeReadListener != null) {
+                        mOnBarcodeReadListener.onCameraInitError();
+                    }
+                }
+            });
+        }
     }
 }
@@ -0,0 +1,357 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.Result;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不依赖View、Context和相机的解码引擎，使用与{@link BarcodeReaderView}相同的解码流程（质量检查、区域跟踪、
+ * 多分辨率、二值化策略、解码顺序等），可用于后台任务、批量处理或在JVM上测试性能。
+ * <p>
+ * <p>图像以未旋转的原始帧传入，解码区域（crop）以顺时针旋转rotation度之后的坐标表示，与相机预览帧的处理方式一致。
+ * 多个线程可同时调用同步解码方法，每个线程使用独立的解码器。不再使用时调用{@link #close()}。
+ * <p>
+ * <pre>
+ * BarcodeScannerEngine engine = new BarcodeScannerEngine.Builder()
+ *         .setDecodeFormats(EnumSet.of(BarcodeFormat.CODE_128, BarcodeFormat.QR_CODE))
+ *         .setBinarizerStrategy(BinarizerStrategy.ADAPTIVE)
+ *         .build();
+ * Result[] results = engine.decode(nv21, width, height, 90);
+ * </pre>
+ */
+public final class BarcodeScannerEngine {
+
+    private final DecodeTuning tuning;
+    private final Collection<BarcodeFormat> decodeFormats;
+    private final Map<DecodeHintType, ?> decodeHints;
+    private final String characterSet;
+    private final int threadCount;
+    private final ArrayDeque<FrameDecoder> idleDecoders = new ArrayDeque<>();
+    private ExecutorService executor;
+    private volatile boolean closed;
+
+    private BarcodeScannerEngine(ScanOptions options, Collection<BarcodeFormat> decodeFormats,
+                                 Map<DecodeHintType, ?> decodeHints, String characterSet, int threadCount) {
+        this.tuning = new DecodeTuning(options);
+        this.decodeFormats = decodeFormats;
+        this.decodeHints = decodeHints;
+        this.characterSet = characterSet;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * 解码整帧图像
+     *
+     * @see #decode(byte[], int, int, int, int, int, int, int)
+     */
+    public Result[] decode(byte[] yuvData, int dataWidth, int dataHeight, int rotation) {
+        boolean swapped = rotation == 90 || rotation == 270;
+        return decode(yuvData, dataWidth, dataHeight, rotation, 0, 0,
+                swapped ? dataHeight : dataWidth, swapped ? dataWidth : dataHeight);
+    }
+
+    /**
+     * 同步解码，在调用线程上执行
+     *
+     * @param yuvData    Y分量紧密排列在前的原始帧：NV21、NV12、I420等，或只有灰度数据的数组
+     * @param dataWidth  原始帧的宽度
+     * @param dataHeight 原始帧的高度
+     * @param rotation   顺时针旋转角度：0、90、180或270
+     * @param left       解码区域的左边，旋转后的坐标
+     * @param top        解码区域的上边，旋转后的坐标
+     * @param width      解码区域的宽度
+     * @param height     解码区域的高度
+     * @return 识别出的条码，结果点的坐标相对于解码区域；未识别到时返回空数组
+     */
+    public Result[] decode(byte[] yuvData, int dataWidth, int dataHeight, int rotation,
+                           int left, int top, int width, int height) {
+        return decode(new RotatedPlanarYUVLuminanceSource(yuvData, dataWidth, dataHeight, rotation,
+                left, top, width, height));
+    }
+
+    /**
+     * 同步解码Y分量不是紧密排列的帧，如行距对齐的YV12或文件中的一段
+     *
+     * @param layout Y分量在yuvData中的排列方式
+     * @see #decode(byte[], int, int, int, int, int, int, int)
+     */
+    public Result[] decode(byte[] yuvData, PlaneLayout layout, int dataWidth, int dataHeight, int rotation,
+                           int left, int top, int width, int height) {
+        return decode(new RotatedPlanarYUVLuminanceSource(yuvData, layout, dataWidth, dataHeight, rotation,
+                left, top, width, height));
+    }
+
+    /**
+     * 同步解码Y分量位于{@link ByteBuffer}中的帧，如{@code android.media.Image}的第一个平面。
+     * 直接读取ByteBuffer（包括direct和内存映射的ByteBuffer），不复制数据，也不改变其position和limit。
+     *
+     * @param yPlane      Y分量，从position开始读取
+     * @param rowStride   相邻两行的字节距离
+     * @param pixelStride 同一行相邻两个像素的字节距离
+     * @see #decode(byte[], int, int, int, int, int, int, int)
+     */
+    public Result[] decode(ByteBuffer yPlane, int rowStride, int pixelStride, int dataWidth, int dataHeight,
+                           int rotation, int left, int top, int width, int height) {
+        return decode(yPlane, PlaneLayout.of(0, rowStride, pixelStride), dataWidth, dataHeight, rotation,
+                left, top, width, height);
+    }
+
+    /**
+     * 同步解码位于{@link ByteBuffer}中的帧，不复制数据
+     *
+     * @param buffer 帧数据，从position开始读取
+     * @param layout Y分量的排列方式，偏移相对于position
+     * @see #decode(byte[], int, int, int, int, int, int, int)
+     */
+    public Result[] decode(ByteBuffer buffer, PlaneLayout layout, int dataWidth, int dataHeight, int rotation,
+                           int left, int top, int width, int height) {
+        return decode(new RotatedPlanarYUVLuminanceSource(buffer, layout, dataWidth, dataHeight, rotation,
+                left, top, width, height));
+    }
+
+    /**
+     * 异步解码，在引擎的线程池中执行。解码完成前不要修改yuvData。
+     *
+     * @see #decode(byte[], int, int, int, int, int, int, int)
+     */
+    public Future<Result[]> decodeAsync(byte[] yuvData, int dataWidth, int dataHeight, int rotation,
+                                        int left, int top, int width, int height) {
+        // Build the source on the caller's thread so a bad crop fails right away.
+        return submit(new RotatedPlanarYUVLuminanceSource(yuvData, dataWidth, dataHeight, rotation,
+                left, top, width, height));
+    }
+
+    /**
+     * 异步解码位于{@link ByteBuffer}中的帧。解码完成前不要修改buffer的内容，position和limit则可以随意改变。
+     *
+     * @see #decode(ByteBuffer, PlaneLayout, int, int, int, int, int, int, int)
+     */
+    public Future<Result[]> decodeAsync(ByteBuffer buffer, PlaneLayout layout, int dataWidth, int dataHeight,
+                                        int rotation, int left, int top, int width, int height) {
+        // The source keeps its own view of the buffer, taken here on the caller's thread.
+        return submit(new RotatedPlanarYUVLuminanceSource(buffer, layout, dataWidth, dataHeight, rotation,
+                left, top, width, height));
+    }
+
+    /**
+     * 获取最近一帧的图像质量评分，未开启质量检查时返回null
+     */
+    public FrameQuality getLastFrameQuality() {
+        FrameQualityGate frameQualityGate = tuning.getFrameQualityGate();
+        return frameQualityGate == null ? null : frameQualityGate.getLastQuality();
+    }
+
+    /**
+     * 停止线程池，尚未开始的异步解码被取消
+     */
+    public void close() {
+        ExecutorService executor;
+        synchronized (this) {
+            closed = true;
+            executor = this.executor;
+            this.executor = null;
+            idleDecoders.clear();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result[] decode(RotatedPlanarYUVLuminanceSource source) {
+        if (closed) {
+            throw new IllegalStateException("Engine closed");
+        }
+        FrameDecoder decoder = obtainDecoder();
+        try {
+            Result[] results = decoder.decode(source);
+            return results != null ? results : new Result[0];
+        } finally {
+            recycleDecoder(decoder);
+        }
+    }
+
+    private Future<Result[]> submit(final RotatedPlanarYUVLuminanceSource source) {
+        return getExecutor().submit(new Callable<Result[]>() {
+            @Override
+            public Result[] call() {
+                return decode(source);
+            }
+        });
+    }
+
+    private FrameDecoder obtainDecoder() {
+        synchronized (this) {
+            FrameDecoder decoder = idleDecoders.poll();
+            if (decoder != null) {
+                return decoder;
+            }
+        }
+        // Readers keep state between decodes, so every decoder gets its own copy of the hints.
+        return new FrameDecoder(tuning, FrameDecoder.buildHints(decodeFormats, decodeHints, characterSet, null));
+    }
+
+    private synchronized void recycleDecoder(FrameDecoder decoder) {
+        if (!closed) {
+            idleDecoders.push(decoder);
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (closed) {
+            throw new IllegalStateException("Engine closed");
+        }
+        if (executor == null) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "BarcodeScannerEngine-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    public static final class Builder {
+
+        private final ScanOptions options = new ScanOptions();
+        private Collection<BarcodeFormat> decodeFormats;
+        private Map<DecodeHintType, ?> decodeHints;
+        private String characterSet;
+        private int threadCount = 1;
+
+        /**
+         * 设置识别的条码种类，默认只识别二维码
+         */
+        public Builder setDecodeFormats(Collection<BarcodeFormat> decodeFormats) {
+            this.decodeFormats = decodeFormats;
+            return this;
+        }
+
+        /**
+         * 自定义解码参数，可设置的属性见{@link DecodeHintType}
+         */
+        public Builder setDecodeHints(Map<DecodeHintType, ?> decodeHints) {
+            this.decodeHints = decodeHints;
+            return this;
+        }
+
+        /**
+         * 设置二维码的编码格式
+         */
+        public Builder setCharacterSet(String characterSet) {
+            this.characterSet = characterSet;
+            return this;
+        }
+
+        /**
+         * 异步解码使用的线程数，默认为1
+         */
+        public Builder setThreadCount(int threadCount) {
+            if (threadCount < 1) {
+                throw new IllegalArgumentException("At least one thread is required");
+            }
+            this.threadCount = threadCount;
+            return this;
+        }
+
+        /**
+         * @see BarcodeReaderView#setDecodeMultiple(boolean)
+         */
+        public Builder setDecodeMultiple(boolean decodeMultiple) {
+            options.setDecodeMultiple(decodeMultiple);
+            return this;
+        }
+
+        /**
+         * 根据识别结果调整解码顺序，统计数据只保存在内存中
+         *
+         * @see BarcodeReaderView#setAdaptiveFormatOrder(boolean)
+         */
+        public Builder setAdaptiveFormatOrder(boolean adaptiveFormatOrder) {
+            options.setFormatScheduler(adaptiveFormatOrder ? new FormatScheduler() : null);
+            return this;
+        }
+
+        /**
+         * @see BarcodeReaderView#setRoiTracking(boolean)
+         */
+        public Builder setRoiTracking(boolean roiTracking) {
+            options.setRoiTracking(roiTracking);
+            return this;
+        }
+
+        /**
+         * @see BarcodeReaderView#setFrameQualityGate(boolean)
+         */
+        public Builder setFrameQualityGate(boolean frameQualityGate) {
+            options.setFrameQualityGate(frameQualityGate);
+            return this;
+        }
+
+        /**
+         * @see BarcodeReaderView#setBinarizerStrategy(BinarizerStrategy)
+         */
+        public Builder setBinarizerStrategy(BinarizerStrategy strategy) {
+            if (strategy == null) {
+                throw new IllegalArgumentException("Strategy required");
+            }
+            options.setBinarizerStrategy(strategy);
+            return this;
+        }
+
+        /**
+         * @see BarcodeReaderView#setResolutionPyramid(boolean)
+         */
+        public Builder setResolutionPyramid(boolean resolutionPyramid) {
+            options.setResolutionPyramid(resolutionPyramid);
+            return this;
+        }
+
+        /**
+         * 单帧的时间预算（毫秒），超出后跳过剩余的解码步骤；0表示不限制
+         */
+        public Builder setFrameBudgetMs(long frameBudgetMs) {
+            if (frameBudgetMs < 0) {
+                throw new IllegalArgumentException("Negative time limit");
+            }
+            options.setDecodeDeadline(frameBudgetMs, 0L);
+            return this;
+        }
+
+        public BarcodeScannerEngine build() {
+            return new BarcodeScannerEngine(new ScanOptions(options), decodeFormats, decodeHints,
+                    characterSet, threadCount);
+        }
+    }
+
+}
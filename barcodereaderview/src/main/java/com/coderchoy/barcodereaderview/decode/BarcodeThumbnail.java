@@ -0,0 +1,108 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import android.graphics.Bitmap;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.WorkerThread;
+
+/**
+ * 扫码成功时取景框内图像的缩略图。
+ * <p>
+ * <p>解码线程只保存缩小后的灰度数据，{@link Bitmap}在第一次获取时才生成，不需要缩略图时没有额外开销。
+ */
+public final class BarcodeThumbnail {
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private final byte[] luminance;
+    private final int width;
+    private final int height;
+    private final float scaleFactor;
+    private Bitmap bitmap;
+
+    BarcodeThumbnail(byte[] luminance, int width, int height, float scaleFactor) {
+        this.luminance = luminance;
+        this.width = width;
+        this.height = height;
+        this.scaleFactor = scaleFactor;
+    }
+
+    static BarcodeThumbnail from(RotatedPlanarYUVLuminanceSource source) {
+        int width = source.getThumbnailWidth();
+        return new BarcodeThumbnail(source.renderThumbnailLuminance(), width, source.getThumbnailHeight(),
+                (float) width / source.getWidth());
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 缩略图相对取景框内原始图像的缩放比例，可用于将{@link com.google.zxing.ResultPoint}换算到缩略图上
+     */
+    public float getScaleFactor() {
+        return scaleFactor;
+    }
+
+    /**
+     * 同步生成缩略图（可修改的ARGB_8888位图），结果会被缓存。会占用调用线程，请勿在主线程调用。
+     */
+    @WorkerThread
+    public synchronized Bitmap getBitmap() {
+        if (bitmap == null) {
+            int[] pixels = new int[width * height];
+            for (int i = 0; i < pixels.length; i++) {
+                int grey = luminance[i] & 0xff;
+                pixels[i] = 0xFF000000 | (grey * 0x00010101);
+            }
+            // Mutable, so the caller can draw the result points on it.
+            Bitmap result = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            result.setPixels(pixels, 0, width, 0, 0, width, height);
+            bitmap = result;
+        }
+        return bitmap;
+    }
+
+    /**
+     * 在后台线程生成缩略图，完成后在主线程回调
+     */
+    public void loadBitmap(final Callback callback) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap result = getBitmap();
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onBitmapLoaded(result);
+                    }
+                });
+            }
+        });
+    }
+
+    public interface Callback {
+        void onBitmapLoaded(Bitmap bitmap);
+    }
+}
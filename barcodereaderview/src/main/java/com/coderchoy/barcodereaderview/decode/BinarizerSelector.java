@@ -0,0 +1,84 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * Decides per frame whether the cheap {@link com.google.zxing.common.GlobalHistogramBinarizer}
+ * pass runs before the {@link com.google.zxing.common.HybridBinarizer} fallback.
+ * <p>
+ * In {@link BinarizerStrategy#ADAPTIVE} mode the global pass is skipped on frames whose contrast,
+ * when the quality gate measured it, is too low for a single threshold, and while it produced less
+ * than {@value #MIN_GLOBAL_HIT_SHARE} of the hits on the frames it ran on. One frame in
+ * {@value #PROBE_INTERVAL} still tries it, so it comes back when the lighting improves. Shared by
+ * all decode workers.
+ */
+final class BinarizerSelector {
+
+    private static final float LOW_CONTRAST = 24f;
+    private static final int PROBE_INTERVAL = 8;
+    private static final long MIN_HITS = 10L;
+    private static final double MIN_GLOBAL_HIT_SHARE = 0.2;
+    private static final long DECAY_HITS = 200L;
+
+    private final BinarizerStrategy strategy;
+    // Hits on frames where the global pass ran, and how many of those it found itself.
+    private long hitsWithGlobal;
+    private long globalHits;
+    private long frameCount;
+
+    BinarizerSelector(BinarizerStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @param quality Scores of the frame, or null if the quality gate is off.
+     * @return true if the global pass should run first on this frame
+     */
+    synchronized boolean tryGlobalFirst(FrameQuality quality) {
+        switch (strategy) {
+            case HYBRID:
+                return false;
+            case GLOBAL_FIRST:
+                return true;
+            default:
+                if (quality != null && quality.getContrast() < LOW_CONTRAST) {
+                    return false;
+                }
+                if (frameCount++ % PROBE_INTERVAL == 0 || hitsWithGlobal < MIN_HITS) {
+                    return true;
+                }
+                return globalHits >= hitsWithGlobal * MIN_GLOBAL_HIT_SHARE;
+        }
+    }
+
+    /**
+     * Records a decoded frame on which the global pass ran.
+     *
+     * @param byGlobal Whether the global pass found the code, rather than the fallback.
+     */
+    synchronized void recordHit(boolean byGlobal) {
+        hitsWithGlobal++;
+        if (byGlobal) {
+            globalHits++;
+        }
+        if (hitsWithGlobal >= DECAY_HITS) {
+            hitsWithGlobal >>= 1;
+            globalHits >>= 1;
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * 解码前二值化的策略
+ */
+public enum BinarizerStrategy {
+
+    /**
+     * 只使用{@link com.google.zxing.common.HybridBinarizer}（分块计算局部阈值），适应各种光照，但耗时较多
+     */
+    HYBRID,
+
+    /**
+     * 先使用{@link com.google.zxing.common.GlobalHistogramBinarizer}（全局阈值），解码失败时再使用
+     * {@link com.google.zxing.common.HybridBinarizer}识别二维条码。两者逐行读取的结果相同，一维条码不会重复识别
+     */
+    GLOBAL_FIRST,
+
+    /**
+     * 同{@link #GLOBAL_FIRST}，但根据对比度和最近的识别结果自动决定是否跳过全局阈值：
+     * 光线较暗或全局阈值很少成功时直接使用{@link com.google.zxing.common.HybridBinarizer}
+     */
+    ADAPTIVE
+
+}
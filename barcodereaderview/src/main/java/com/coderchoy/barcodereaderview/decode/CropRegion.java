@@ -0,0 +1,49 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * An immutable rectangle within the framing rect crop. Used instead of {@link android.graphics.Rect}
+ * so the decode path runs on a plain JVM.
+ */
+final class CropRegion {
+
+    final int left;
+    final int top;
+    final int width;
+    final int height;
+
+    CropRegion(int left, int top, int width, int height) {
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+    }
+
+    int centerX() {
+        return left + width / 2;
+    }
+
+    int centerY() {
+        return top + height / 2;
+    }
+
+    @Override
+    public String toString() {
+        return "CropRegion{" + left + ", " + top + ", " + width + "x" + height + '}';
+    }
+}
@@ -16,127 +16,129 @@
 
 package com.coderchoy.barcodereaderview.decode;
 
-import android.content.res.Configuration;
-import android.graphics.Bitmap;
-import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
-import android.os.Message;
-
 import com.coderchoy.barcodereaderview.util.LogEx;
-import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.MultiFormatReader;
-import com.google.zxing.PlanarYUVLuminanceSource;
-import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
-import com.google.zxing.common.HybridBinarizer;
 
-import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_DECODE;
-import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_DECODE_FAILED;
-import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_DECODE_SUCCEEDED;
-import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_QUIT;
 
 
 /**
+ * Decodes the frames sent to one worker loop of a {@link DecodeWorkerPool}.
+ * <p>
  * Modified by CoderChoy on 2017/03/14
  */
-final class DecodeHandler extends Handler {
+final class DecodeHandler implements MessageLoop.Callback {
 
     private static final String TAG = DecodeHandler.class.getSimpleName();
 
-    private final BarcodeReaderView barcodeReaderView;
-    private final MultiFormatReader multiFormatReader;
-    private boolean running = true;
+    private final DecodeWorkerPool workerPool;
+    private final int workerIndex;
+    private final FrameDecoder frameDecoder;
 
-    DecodeHandler(BarcodeReaderView barcodeReaderView, Map<DecodeHintType, Object> hints) {
-        multiFormatReader = new MultiFormatReader();
-        multiFormatReader.setHints(hints);
-        this.barcodeReaderView = barcodeReaderView;
+    DecodeHandler(DecodeWorkerPool workerPool, int workerIndex, Map<DecodeHintType, Object> hints) {
+        this.workerPool = workerPool;
+        this.workerIndex = workerIndex;
+        frameDecoder = new FrameDecoder(workerPool.getTuning(), hints);
     }
 
     @Override
-    public void handleMessage(Message message) {
-        if (!running) {
-            return;
-        }
-        switch (message.what) {
-            case MESSAGE_DECODE:
-                decode((byte[]) message.obj, message.arg1, message.arg2);
-                break;
-            case MESSAGE_QUIT:
-                running = false;
-                Looper.myLooper().quit();
-                break;
+    public void handleMessage(int what, int arg1, int arg2, Object obj) {
+        if (what == MESSAGE_DECODE) {
+            decode((byte[]) obj, arg1, arg2);
         }
     }
 
     /**
-     * Decode the data within the viewfinder rectangle, and time how long it took. For efficiency,
-     * reuse the same reader objects from one decode to the next.
+     * Decode the data within the viewfinder rectangle, and time how long it took.
      *
      * @param data   The YUV preview frame.
      * @param width  The width of the preview frame.
      * @param height The height of the preview frame.
      */
     private void decode(byte[] data, int width, int height) {
-        if (barcodeReaderView.getContext().getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
-            byte[] rotatedData = new byte[data.length];
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++)
-                    rotatedData[x * height + height - y - 1] = data[x + y * width];
-            }
-            int tmp = width;
-            width = height;
-            height = tmp;
-            data = rotatedData;
-        }
+        FrameSource frameSource = workerPool.getFrameSource();
+        int generation = workerPool.getGeneration();
         long start = System.currentTimeMillis();
-        Result rawResult = null;
-        PlanarYUVLuminanceSource source = barcodeReaderView.getCameraManager().buildLuminanceSource(data, width, height);
+        long sourceStart = System.nanoTime();
+        // Rotation to the display orientation is applied while reading the crop, not to the whole frame.
+        RotatedPlanarYUVLuminanceSource source = frameSource.buildLuminanceSource(data, width, height);
+        long sourceNanos = System.nanoTime() - sourceStart;
+        // Described before decoding, so the timestamp and focus state are as close to the capture as can be.
+        FrameRecorder recorder = workerPool.getOptions().getFrameRecorder();
+        FrameRecord frameRecord = recorder != null && recorder.shouldRecord() ?
+                frameSource.describeFrame(data, width, height) : null;
+        Result[] results = source != null ? frameDecoder.decode(source) : null;
+        if (frameRecord != null) {
+            // Only the Y plane is copied here; the recorder writes it on its own thread.
+            recorder.record(data, frameRecord, results);
+        }
+        boolean found = results != null;
+        // The watchdog gave up on this thread and has had the next frame requested in its place.
+        boolean replaced = !workerPool.isCurrentWorker(workerIndex);
         if (source != null) {
-            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-            try {
-                rawResult = multiFormatReader.decodeWithState(bitmap);
-            } catch (ReaderException re) {
-                // continue
-            } finally {
-                multiFormatReader.reset();
+            recordLatencies(sourceNanos);
+            if (!replaced) {
+                workerPool.onFocusSignal(generation, frameDecoder.getFocusSignal());
             }
         }
 
-        Handler handler = barcodeReaderView.getBarcodeReaderHandler();
-        if (rawResult != null) {
+        // Continuous mode: codes seen recently are dropped, carry on as if they were not found.
+        results = replaced ? null : filterDuplicates(results);
+
+        if (replaced) {
+            LogEx.d(TAG, "Suppressed the outcome of a replaced worker");
+        } else if (results != null && !workerPool.isCurrent(generation)) {
+            // Another worker already delivered a result, or scanning stopped while we were decoding.
+            LogEx.d(TAG, "Suppressed result of a cancelled frame");
+        } else if (results != null) {
             // Don't log the barcode contents for security.
             long end = System.currentTimeMillis();
-            LogEx.d(TAG, "Found barcode in " + (end - start) + " ms");
-            if (handler != null) {
-                Message message = Message.obtain(handler, MESSAGE_DECODE_SUCCEEDED, rawResult);
-                Bundle bundle = new Bundle();
-                bundleThumbnail(source, bundle);
-                message.setData(bundle);
-                message.sendToTarget();
-            }
-        } else {
-            if (handler != null) {
-                Message message = Message.obtain(handler, MESSAGE_DECODE_FAILED);
-                message.sendToTarget();
-            }
+            LogEx.d(TAG, "Found " + results.length + " barcode(s) in " + (end - start) + " ms");
+            // Only a downscaled copy of the crop is kept; the bitmap is rendered when asked for.
+            BarcodeThumbnail thumbnail = workerPool.getOptions().isThumbnailEnabled() ?
+                    BarcodeThumbnail.from(source) : null;
+            workerPool.onDecodeSucceeded(new DecodeResult(results, thumbnail), frameDecoder.isDecodeMultiple());
+        } else if (!workerPool.isPipelined()) {
+            // In pipelined mode the pool requests frames itself; no need to bother the scan loop.
+            workerPool.onDecodeFailed();
         }
+        // The thumbnail has been copied, nothing reads the frame any more.
+        frameSource.releasePreviewBuffer(data);
+        workerPool.onWorkerIdle(this, workerIndex, found);
     }
 
-    private static void bundleThumbnail(PlanarYUVLuminanceSource source, Bundle bundle) {
-        int[] pixels = source.renderThumbnail();
-        int width = source.getThumbnailWidth();
-        int height = source.getThumbnailHeight();
-        Bitmap bitmap = Bitmap.createBitmap(pixels, 0, width, width, height, Bitmap.Config.ARGB_8888);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 50, out);
-        bundle.putByteArray(DecodeThread.BARCODE_BITMAP, out.toByteArray());
-        bundle.putFloat(DecodeThread.BARCODE_SCALED_FACTOR, (float) width / source.getWidth());
+    private void recordLatencies(long sourceNanos) {
+        workerPool.recordLatency(DecodeStage.PREPROCESS, sourceNanos + frameDecoder.getPreprocessNanos());
+        long binarizeNanos = frameDecoder.getBinarizeNanos();
+        long decodeNanos = frameDecoder.getDecodeNanos();
+        // A gated frame never reaches the binarizer; counting it as 0 would hide how long real attempts take.
+        if (binarizeNanos > 0L || decodeNanos > 0L) {
+            workerPool.recordLatency(DecodeStage.BINARIZE, binarizeNanos);
+            workerPool.recordLatency(DecodeStage.DECODE, decodeNanos);
+        }
+    }
+
+    /**
+     * @return the results not seen within the time-to-live, or null if none are left
+     */
+    private Result[] filterDuplicates(Result[] results) {
+        DuplicateFilter duplicateFilter = workerPool.getDuplicateFilter();
+        if (results == null || duplicateFilter == null) {
+            return results;
+        }
+        long now = System.nanoTime() / 1000000L;
+        List<Result> fresh = new ArrayList<>(results.length);
+        for (Result result : results) {
+            if (duplicateFilter.accept(result, now)) {
+                fresh.add(result);
+            }
+        }
+        return fresh.isEmpty() ? null : fresh.toArray(new Result[fresh.size()]);
     }
 
 }
@@ -0,0 +1,177 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * 解码流水线的统计信息：实际解码帧率、解码线程空闲时间等。只统计处于扫描状态的时间。
+ */
+public final class DecodePipelineStats {
+
+    private final int workerCount;
+    private final boolean pipelined;
+    private final long scanningTimeMs;
+    private final long decoderIdleTimeMs;
+    private final long receivedFrameCount;
+    private final long decodedFrameCount;
+    private final long droppedFrameCount;
+    private final long gatedFrameCount;
+    private final long overBudgetFrameCount;
+    private final long stalledWorkerCount;
+    private final long halfResolutionPassCount;
+    private final long halfResolutionHitCount;
+    private final long fullResolutionPassCount;
+    private final long fullResolutionHitCount;
+
+    DecodePipelineStats(int workerCount, boolean pipelined, long scanningTimeMs, long decoderIdleTimeMs,
+                        long receivedFrameCount, long decodedFrameCount, long droppedFrameCount,
+                        long gatedFrameCount, long overBudgetFrameCount, long stalledWorkerCount,
+                        long halfResolutionPassCount, long halfResolutionHitCount,
+                        long fullResolutionPassCount, long fullResolutionHitCount) {
+        this.workerCount = workerCount;
+        this.pipelined = pipelined;
+        this.scanningTimeMs = scanningTimeMs;
+        this.decoderIdleTimeMs = decoderIdleTimeMs;
+        this.receivedFrameCount = receivedFrameCount;
+        this.decodedFrameCount = decodedFrameCount;
+        this.droppedFrameCount = droppedFrameCount;
+        this.gatedFrameCount = gatedFrameCount;
+        this.overBudgetFrameCount = overBudgetFrameCount;
+        this.stalledWorkerCount = stalledWorkerCount;
+        this.halfResolutionPassCount = halfResolutionPassCount;
+        this.halfResolutionHitCount = halfResolutionHitCount;
+        this.fullResolutionPassCount = fullResolutionPassCount;
+        this.fullResolutionHitCount = fullResolutionHitCount;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * 处于扫描状态的总时间（毫秒）
+     */
+    public long getScanningTimeMs() {
+        return scanningTimeMs;
+    }
+
+    /**
+     * 所有解码线程在扫描状态下等待预览帧的时间之和（毫秒）
+     */
+    public long getDecoderIdleTimeMs() {
+        return decoderIdleTimeMs;
+    }
+
+    /**
+     * 解码线程空闲时间占比，0~1
+     */
+    public float getDecoderIdleRatio() {
+        long total = scanningTimeMs * workerCount;
+        return total <= 0 ? 0f : Math.min(1f, decoderIdleTimeMs / (float) total);
+    }
+
+    /**
+     * 实际解码帧率
+     */
+    public float getFramesPerSecond() {
+        return scanningTimeMs <= 0 ? 0f : decodedFrameCount * 1000f / scanningTimeMs;
+    }
+
+    public long getReceivedFrameCount() {
+        return receivedFrameCount;
+    }
+
+    public long getDecodedFrameCount() {
+        return decodedFrameCount;
+    }
+
+    /**
+     * 解码线程都忙、等待队列已满时被丢弃的帧数
+     */
+    public long getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    /**
+     * 因模糊或空白未通过质量检查、没有交给解码器的帧数，包含在{@link #getDecodedFrameCount()}中
+     */
+    public long getGatedFrameCount() {
+        return gatedFrameCount;
+    }
+
+    /**
+     * 解码超出单帧时间预算、剩余步骤被跳过的帧数
+     */
+    public long getOverBudgetFrameCount() {
+        return overBudgetFrameCount;
+    }
+
+    /**
+     * 解码线程卡住超过限定时间、被替换的次数
+     */
+    public long getStalledWorkerCount() {
+        return stalledWorkerCount;
+    }
+
+    /**
+     * 多分辨率解码时，先以一半分辨率解码的次数；未开启多分辨率解码时为0
+     */
+    public long getHalfResolutionPassCount() {
+        return halfResolutionPassCount;
+    }
+
+    /**
+     * 一半分辨率下解码成功的次数
+     */
+    public long getHalfResolutionHitCount() {
+        return halfResolutionHitCount;
+    }
+
+    /**
+     * 一半分辨率解码失败后，再以原始分辨率解码的次数
+     */
+    public long getFullResolutionPassCount() {
+        return fullResolutionPassCount;
+    }
+
+    /**
+     * 原始分辨率下解码成功的次数
+     */
+    public long getFullResolutionHitCount() {
+        return fullResolutionHitCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DecodePipelineStats{workers=" + workerCount +
+                ", pipelined=" + pipelined +
+                ", fps=" + getFramesPerSecond() +
+                ", idleRatio=" + getDecoderIdleRatio() +
+                ", received=" + receivedFrameCount +
+                ", decoded=" + decodedFrameCount +
+                ", dropped=" + droppedFrameCount +
+                ", gated=" + gatedFrameCount +
+                ", overBudget=" + overBudgetFrameCount +
+                ", stalled=" + stalledWorkerCount +
+                ", halfResolution=" + halfResolutionHitCount + "/" + halfResolutionPassCount +
+                ", fullResolution=" + fullResolutionHitCount + "/" + fullResolutionPassCount +
+                '}';
+    }
+}
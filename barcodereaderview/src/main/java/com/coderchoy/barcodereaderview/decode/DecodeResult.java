@@ -0,0 +1,54 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.google.zxing.Result;
+
+/**
+ * What a decode worker sends to the {@link ScanStateMachine} on success.
+ */
+final class DecodeResult {
+
+    private final Result[] results;
+    private final BarcodeThumbnail thumbnail;
+    private final long postedNanos;
+
+    DecodeResult(Result[] results, BarcodeThumbnail thumbnail) {
+        this.results = results;
+        this.thumbnail = thumbnail;
+        this.postedNanos = System.nanoTime();
+    }
+
+    Result[] getResults() {
+        return results;
+    }
+
+    /**
+     * @return the thumbnail, or null when thumbnails are disabled
+     */
+    BarcodeThumbnail getThumbnail() {
+        return thumbnail;
+    }
+
+    /**
+     * @return when the worker posted the result, {@link System#nanoTime()}
+     */
+    long getPostedNanos() {
+        return postedNanos;
+    }
+
+}
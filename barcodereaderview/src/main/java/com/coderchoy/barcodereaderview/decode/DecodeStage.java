@@ -0,0 +1,55 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * 解码流程的各个步骤，见{@link DecodeStageStats}
+ */
+public enum DecodeStage {
+
+    /**
+     * 解码线程空闲、等待预览帧的时间；帧到达时已有解码线程空闲则从它空闲时算起，否则为0
+     */
+    FRAME_WAIT,
+
+    /**
+     * 二值化之前的准备：按取景框截取并旋转、质量检查、确定解码区域
+     */
+    PREPROCESS,
+
+    /**
+     * 二值化，每帧所有解码尝试之和
+     */
+    BINARIZE,
+
+    /**
+     * 在二值化图像中查找并解析条形码，每帧所有解码尝试之和
+     */
+    DECODE,
+
+    /**
+     * 解码线程得到结果到主线程回调监听器之间的时间
+     */
+    DISPATCH,
+
+    /**
+     * 从开始扫描到回调监听器的总时间；连续扫描时从上一次回调算起
+     */
+    END_TO_END
+
+}
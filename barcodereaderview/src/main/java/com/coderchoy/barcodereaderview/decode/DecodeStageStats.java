@@ -0,0 +1,88 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * 解码流程各步骤的耗时分布和帧数统计，用于找出扫码慢的原因。只统计本次扫描（{@link BarcodeReaderView#onResume()}之后）。
+ * <p>
+ * <p>统计不加锁，获取时不会阻塞解码线程；各项分别读取，彼此之间可能有少量出入。
+ */
+public final class DecodeStageStats {
+
+    private final StageLatency[] latencies;
+    private final long decodedFrameCount;
+    private final long failedFrameCount;
+    private final long droppedFrameCount;
+    private final long gatedFrameCount;
+
+    DecodeStageStats(StageLatency[] latencies, long decodedFrameCount, long failedFrameCount,
+                     long droppedFrameCount, long gatedFrameCount) {
+        this.latencies = latencies;
+        this.decodedFrameCount = decodedFrameCount;
+        this.failedFrameCount = failedFrameCount;
+        this.droppedFrameCount = droppedFrameCount;
+        this.gatedFrameCount = gatedFrameCount;
+    }
+
+    /**
+     * 某一步骤的耗时分布
+     */
+    public StageLatency getLatency(DecodeStage stage) {
+        return latencies[stage.ordinal()];
+    }
+
+    /**
+     * 交给解码线程处理过的帧数
+     */
+    public long getDecodedFrameCount() {
+        return decodedFrameCount;
+    }
+
+    /**
+     * 没有识别出条形码的帧数，包含未通过质量检查的帧
+     */
+    public long getFailedFrameCount() {
+        return failedFrameCount;
+    }
+
+    /**
+     * 解码线程都忙、等待队列已满时被丢弃的帧数
+     */
+    public long getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    /**
+     * 因模糊或空白未通过质量检查、没有交给解码器的帧数
+     */
+    public long getGatedFrameCount() {
+        return gatedFrameCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("DecodeStageStats{decoded=").append(decodedFrameCount)
+                .append(", failed=").append(failedFrameCount)
+                .append(", dropped=").append(droppedFrameCount)
+                .append(", gated=").append(gatedFrameCount);
+        for (DecodeStage stage : DecodeStage.values()) {
+            builder.append(", ").append(stage).append('=').append(latencies[stage.ordinal()]);
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -1,98 +0,0 @@
-/*
- * Copyright (C) 2008 ZXing authors
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package com.coderchoy.barcodereaderview.decode;
-
-import android.os.Handler;
-import android.os.Looper;
-
-import com.coderchoy.barcodereaderview.util.LogEx;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.DecodeHintType;
-import com.google.zxing.ResultPointCallback;
-
-import java.util.Collection;
-import java.util.EnumMap;
-import java.util.EnumSet;
-import java.util.Map;
-import java.util.concurrent.CountDownLatch;
-
-/**
- * This thread does all the heavy lifting of decoding the images.
- *
- * @author dswitkin@google.com (Daniel Switkin)
- *         <p>
- *         Modified by CoderChoy on 2017/03/14
- */
-final class DecodeThread extends Thread {
-
-    public static final String BARCODE_BITMAP = "barcode_bitmap";
-    public static final String BARCODE_SCALED_FACTOR = "barcode_scaled_factor";
-
-    private final BarcodeReaderView barcodeReaderView;
-    private final Map<DecodeHintType, Object> hints;
-    private Handler handler;
-    private final CountDownLatch handlerInitLatch;
-
-    DecodeThread(BarcodeReaderView barcodeReaderView,
-                 Collection<BarcodeFormat> decodeFormats,
-                 Map<DecodeHintType, ?> baseHints,
-                 String characterSet,
-                 ResultPointCallback resultPointCallback) {
-
-        this.barcodeReaderView = barcodeReaderView;
-        handlerInitLatch = new CountDownLatch(1);
-
-        hints = new EnumMap<>(DecodeHintType.class);
-        if (baseHints != null) {
-            hints.putAll(baseHints);
-        }
-
-        // The prefs can't change while the thread is running, so pick them up once here.
-        // 如果没有设置解码格式，则默认解析二维码
-        if (decodeFormats == null || decodeFormats.isEmpty()) {
-            decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
-            decodeFormats.add(BarcodeFormat.QR_CODE);
-        }
-        hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
-
-        if (characterSet != null) {
-            hints.put(DecodeHintType.CHARACTER_SET, characterSet);
-        }
-        if (resultPointCallback != null) {
-            hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, resultPointCallback);
-        }
-        LogEx.i("DecodeThread", "Hints: " + hints);
-    }
-
-    Handler getHandler() {
-        try {
-            handlerInitLatch.await();
-        } catch (InterruptedException ie) {
-            // continue?
-        }
-        return handler;
-    }
-
-    @Override
-    public void run() {
-        Looper.prepare();
-        handler = new DecodeHandler(barcodeReaderView, hints);
-        handlerInitLatch.countDown();
-        Looper.loop();
-    }
-
-}
@@ -0,0 +1,83 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The adaptive parts of the decode path that learn from every frame, shared by all the
+ * {@link FrameDecoder}s of one pipeline: region tracking, quality gate, binarizer choice and
+ * resolution pyramid, each present only when enabled in the {@link ScanOptions}.
+ */
+final class DecodeTuning {
+
+    private final ScanOptions options;
+    private final RoiTracker roiTracker;
+    private final FrameQualityGate frameQualityGate;
+    private final BinarizerSelector binarizerSelector;
+    private final ResolutionPyramid resolutionPyramid;
+    private final AtomicLong overBudgetFrameCount = new AtomicLong();
+
+    DecodeTuning(ScanOptions options) {
+        this.options = options;
+        this.roiTracker = options.isRoiTracking() ? new RoiTracker() : null;
+        this.frameQualityGate = options.isFrameQualityGate() ? new FrameQualityGate() : null;
+        this.binarizerSelector = new BinarizerSelector(options.getBinarizerStrategy());
+        this.resolutionPyramid = options.isResolutionPyramid() ? new ResolutionPyramid() : null;
+    }
+
+    ScanOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return the tracker narrowing decoding to where codes were last seen, or null
+     */
+    RoiTracker getRoiTracker() {
+        return roiTracker;
+    }
+
+    /**
+     * @return the gate rejecting blank and blurry frames before decoding, or null
+     */
+    FrameQualityGate getFrameQualityGate() {
+        return frameQualityGate;
+    }
+
+    BinarizerSelector getBinarizerSelector() {
+        return binarizerSelector;
+    }
+
+    /**
+     * @return the policy trying frames at half resolution first, or null
+     */
+    ResolutionPyramid getResolutionPyramid() {
+        return resolutionPyramid;
+    }
+
+    /**
+     * Called by a decoder that skipped the rest of a frame because it ran out of time.
+     */
+    void onFrameOverBudget() {
+        overBudgetFrameCount.incrementAndGet();
+    }
+
+    long getOverBudgetFrameCount() {
+        return overBudgetFrameCount.get();
+    }
+
+}
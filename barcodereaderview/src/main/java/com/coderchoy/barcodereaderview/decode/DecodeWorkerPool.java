@@ -0,0 +1,619 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.coderchoy.barcodereaderview.util.LogEx;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ResultPointCallback;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_CANCEL;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_DECODE;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_DECODE_FAILED;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_DECODE_MULTIPLE_SUCCEEDED;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_DECODE_SUCCEEDED;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_FRAME_RATE;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_QUIT;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_RESUME;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_WATCHDOG;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_WORKER_IDLE;
+
+/**
+ * Runs several decode workers side by side, each a {@link MessageLoop} with a {@link DecodeHandler}.
+ * Frames requested with {@link #requestFrame()} arrive on a small dispatch loop: a frame goes to an
+ * idle worker if there is one, otherwise it waits in a pending queue governed by a
+ * {@link PendingFramePolicy}. Outcomes are sent to the scan loop of the {@link ScanStateMachine}.
+ * <p>
+ * Frames are decoded within a generation. {@link #cancel()} starts a new one, so that once a result
+ * has won, results still being computed from older frames are suppressed by the workers.
+ * <p>
+ * In pipelined mode the dispatch thread requests the next frame as soon as there is a free worker
+ * or a free pending slot, so the camera captures while the workers decode, and failed frames never
+ * go through the scan loop.
+ * <p>
+ * A decode cannot be interrupted, so with a stall timeout set a watchdog on the dispatch thread
+ * replaces a worker busy for longer with a fresh one, and scanning goes on with the next frame. The
+ * stuck thread quits once its decode returns and whatever it reports then is ignored.
+ */
+final class DecodeWorkerPool {
+
+    private static final String TAG = DecodeWorkerPool.class.getSimpleName();
+
+    private static final long QUIT_TIMEOUT_MS = 500L;
+
+    private final MessageLoop scanLoop;
+    private final MessageLoop.Factory loopFactory;
+    private final FrameSource frameSource;
+    private final Collection<BarcodeFormat> decodeFormats;
+    private final Map<DecodeHintType, ?> baseHints;
+    private final String characterSet;
+    private final ResultPointCallback resultPointCallback;
+    private final ScanOptions options;
+    // Replaced by the watchdog on the dispatch thread, hence both guarded by workers.
+    private final MessageLoop[] workers;
+    private final DecodeHandler[] decodeHandlers;
+    private final PendingFramePolicy pendingFramePolicy;
+    private final int pendingFrameCapacity;
+    private final boolean pipelined;
+    private final DuplicateFilter duplicateFilter;
+    private final DecodeTuning tuning;
+    private final AtomicInteger generation;
+    private final DispatchHandler dispatchHandler;
+    private final FrameSource.FrameCallback frameCallback;
+    private MessageLoop dispatchLoop;
+    private volatile boolean active;
+
+    // Written on the dispatch thread only, read by getStats() from any thread.
+    private final AtomicLongArray idleSinceNanos;
+    private volatile long receivedFrameCount;
+    private volatile long decodedFrameCount;
+    private volatile long droppedFrameCount;
+    private volatile long decoderIdleNanos;
+    private volatile long activeNanos;
+    private volatile long activeSinceNanos;
+    private volatile long stalledWorkerCount;
+    private volatile long failedFrameCount;
+    // Recorded into from every thread of the pipeline.
+    private final LatencyHistogram[] stageLatencies;
+    private final StartupTracker startupTracker;
+    // Null unless the frame rate adapts to the decoders; used on the dispatch thread only.
+    private final FrameRateController frameRateController;
+    // Null unless the frame source focuses by what the decoders see; called from the workers.
+    private final FocusControl focusControl;
+
+    /**
+     * @param scanLoop    Where outcomes are sent: MESSAGE_DECODE_SUCCEEDED or
+     *                    MESSAGE_DECODE_MULTIPLE_SUCCEEDED with a {@link DecodeResult}, and
+     *                    MESSAGE_DECODE_FAILED when the next frame should be requested.
+     * @param loopFactory Starts the dispatch loop and the workers.
+     */
+    DecodeWorkerPool(MessageLoop scanLoop,
+                     MessageLoop.Factory loopFactory,
+                     FrameSource frameSource,
+                     Collection<BarcodeFormat> decodeFormats,
+                     Map<DecodeHintType, ?> baseHints,
+                     String characterSet,
+                     ResultPointCallback resultPointCallback,
+                     ScanOptions options,
+                     StartupTracker startupTracker) {
+        this.scanLoop = scanLoop;
+        this.loopFactory = loopFactory;
+        this.frameSource = frameSource;
+        this.decodeFormats = decodeFormats;
+        this.baseHints = baseHints;
+        this.characterSet = characterSet;
+        this.resultPointCallback = resultPointCallback;
+        this.options = options;
+        this.startupTracker = startupTracker;
+        this.pipelined = options.isPipelinedDecode();
+        this.pendingFramePolicy = options.getPendingFramePolicy();
+        this.pendingFrameCapacity = pendingFramePolicy == PendingFramePolicy.KEEP_LATEST ?
+                1 : Math.max(1, options.getPendingFrameCapacity());
+        this.duplicateFilter = options.isContinuousScan() ? new DuplicateFilter(options.getDuplicateTtlMs()) : null;
+        this.tuning = new DecodeTuning(options);
+        this.generation = new AtomicInteger();
+
+        int workerCount = options.getDecodeWorkerCount();
+        workers = new MessageLoop[workerCount];
+        decodeHandlers = new DecodeHandler[workerCount];
+        frameRateController = options.isAdaptiveFrameRate() && frameSource instanceof FrameRateControl ?
+                new FrameRateController((FrameRateControl) frameSource, workerCount, options.isAdaptiveFrameSize()) :
+                null;
+        focusControl = frameSource instanceof FocusControl ? (FocusControl) frameSource : null;
+        idleSinceNanos = new AtomicLongArray(workerCount);
+        stageLatencies = new LatencyHistogram[DecodeStage.values().length];
+        for (int i = 0; i < stageLatencies.length; i++) {
+            stageLatencies[i] = new LatencyHistogram();
+        }
+        dispatchHandler = new DispatchHandler();
+        frameCallback = new FrameSource.FrameCallback() {
+            @Override
+            public void onPreviewFrame(byte[] data, int width, int height) {
+                dispatchLoop.send(MESSAGE_DECODE, width, height, data);
+            }
+        };
+    }
+
+    /**
+     * Starts the loop of the worker of the index and makes it current, caller holding workers.
+     *
+     * @return the loop it replaces, or null
+     */
+    private MessageLoop startWorker(int workerIndex) {
+        // Readers keep state between decodes, so every worker gets its own copy of the hints.
+        Map<DecodeHintType, Object> hints = FrameDecoder.buildHints(decodeFormats, baseHints, characterSet,
+                resultPointCallback);
+        DecodeHandler decodeHandler = new DecodeHandler(this, workerIndex, hints);
+        MessageLoop previous = workers[workerIndex];
+        workers[workerIndex] = loopFactory.start("DecodeThread-" + workerIndex, decodeHandler);
+        decodeHandlers[workerIndex] = decodeHandler;
+        return previous;
+    }
+
+    void start() {
+        synchronized (workers) {
+            for (int i = 0; i < workers.length; i++) {
+                startWorker(i);
+            }
+        }
+        dispatchLoop = loopFactory.start("DecodeDispatchThread", dispatchHandler);
+    }
+
+    /**
+     * Asks the frame source for the next frame, which is dispatched once it arrives.
+     */
+    void requestFrame() {
+        frameSource.requestPreviewFrame(frameCallback);
+    }
+
+    int getWorkerCount() {
+        return workers.length;
+    }
+
+    FrameSource getFrameSource() {
+        return frameSource;
+    }
+
+    ScanOptions getOptions() {
+        return options;
+    }
+
+    boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * @return the filter suppressing repeated codes in continuous mode, or null
+     */
+    DuplicateFilter getDuplicateFilter() {
+        return duplicateFilter;
+    }
+
+    DecodeTuning getTuning() {
+        return tuning;
+    }
+
+    /**
+     * @return frame rate and decoder idle time over the time spent scanning so far
+     */
+    DecodePipelineStats getStats() {
+        long now = System.nanoTime();
+        long active = activeNanos;
+        long activeSince = activeSinceNanos;
+        if (activeSince != 0L) {
+            active += now - activeSince;
+        }
+        long idle = decoderIdleNanos;
+        for (int i = 0; i < idleSinceNanos.length(); i++) {
+            long idleSince = idleSinceNanos.get(i);
+            if (idleSince != 0L) {
+                idle += now - idleSince;
+            }
+        }
+        FrameQualityGate frameQualityGate = tuning.getFrameQualityGate();
+        long gated = frameQualityGate == null ? 0L : frameQualityGate.getGatedCount();
+        ResolutionPyramid pyramid = tuning.getResolutionPyramid();
+        return new DecodePipelineStats(workers.length, pipelined, active / 1000000L, idle / 1000000L,
+                receivedFrameCount, decodedFrameCount, droppedFrameCount, gated,
+                tuning.getOverBudgetFrameCount(), stalledWorkerCount,
+                pyramid == null ? 0L : pyramid.getSmallPassCount(), pyramid == null ? 0L : pyramid.getSmallHitCount(),
+                pyramid == null ? 0L : pyramid.getFullPassCount(), pyramid == null ? 0L : pyramid.getFullHitCount());
+    }
+
+    /**
+     * @return the latencies of the decode stages and the frame counts so far
+     */
+    DecodeStageStats getStageStats() {
+        StageLatency[] latencies = new StageLatency[stageLatencies.length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = stageLatencies[i].snapshot();
+        }
+        FrameQualityGate frameQualityGate = tuning.getFrameQualityGate();
+        return new DecodeStageStats(latencies, decodedFrameCount, failedFrameCount, droppedFrameCount,
+                frameQualityGate == null ? 0L : frameQualityGate.getGatedCount());
+    }
+
+    /**
+     * Safe to call from any thread.
+     */
+    void recordLatency(DecodeStage stage, long nanos) {
+        stageLatencies[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * Accept frames again after {@link #cancel()}.
+     */
+    void resume() {
+        RoiTracker roiTracker = tuning.getRoiTracker();
+        if (roiTracker != null) {
+            // The next code may be anywhere.
+            roiTracker.reset();
+        }
+        active = true;
+        dispatchLoop.send(MESSAGE_RESUME, 0, 0, null);
+    }
+
+    /**
+     * Stop accepting frames, drop the pending ones and suppress results from frames already being
+     * decoded.
+     */
+    void cancel() {
+        active = false;
+        generation.incrementAndGet();
+        dispatchLoop.send(MESSAGE_CANCEL, 0, 0, null);
+    }
+
+    int getGeneration() {
+        return generation.get();
+    }
+
+    boolean isCurrent(int frameGeneration) {
+        return generation.get() == frameGeneration;
+    }
+
+    /**
+     * Called by a worker with the new codes found in a frame of the current generation.
+     */
+    void onDecodeSucceeded(DecodeResult decodeResult, boolean multiple) {
+        scanLoop.send(multiple ? MESSAGE_DECODE_MULTIPLE_SUCCEEDED : MESSAGE_DECODE_SUCCEEDED, 0, 0, decodeResult);
+    }
+
+    /**
+     * Called by a worker when nothing new was found and the next frame is up to the scan loop.
+     */
+    void onDecodeFailed() {
+        scanLoop.send(MESSAGE_DECODE_FAILED, 0, 0, null);
+    }
+
+    /**
+     * Called by a worker once it is done with its frame, including giving the preview buffer back.
+     *
+     * @param found Whether a code was found in the frame, new or not.
+     */
+    void onWorkerIdle(DecodeHandler decodeHandler, int workerIndex, boolean found) {
+        // The worker tells the dispatcher whether the report comes from one it has since replaced.
+        dispatchLoop.send(MESSAGE_WORKER_IDLE, workerIndex, found ? 1 : 0, decodeHandler);
+    }
+
+    /**
+     * @return false once the watchdog has replaced the calling thread as the worker of the index
+     */
+    boolean isCurrentWorker(int workerIndex) {
+        synchronized (workers) {
+            return workers[workerIndex].isLoopThread();
+        }
+    }
+
+    /**
+     * Called by a worker with what its frame says about focus, before {@link #onWorkerIdle}.
+     */
+    void onFocusSignal(int frameGeneration, FocusSignal signal) {
+        // Frames of a cancelled generation may predate a refocus or the code leaving the view.
+        if (focusControl != null && isCurrent(frameGeneration)) {
+            focusControl.onFocusSignal(signal);
+        }
+    }
+
+    void quitSynchronously() {
+        active = false;
+        generation.incrementAndGet();
+        dispatchLoop.send(MESSAGE_QUIT, 0, 0, null);
+        dispatchLoop.quit();
+        MessageLoop[] current;
+        synchronized (workers) {
+            current = workers.clone();
+        }
+        for (MessageLoop worker : current) {
+            worker.quit();
+        }
+        // Wait at most half a second in total; should be enough time, and onPause() will timeout quickly
+        long deadline = uptimeMillis() + QUIT_TIMEOUT_MS;
+        try {
+            for (MessageLoop worker : current) {
+                long remaining = deadline - uptimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                worker.join(remaining);
+            }
+        } catch (InterruptedException e) {
+            // continue
+        }
+    }
+
+    private static long uptimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    private void releaseFrame(Frame frame) {
+        frameSource.releasePreviewBuffer(frame.data);
+    }
+
+    /**
+     * A preview frame waiting for a worker.
+     */
+    private static final class Frame {
+
+        final byte[] data;
+        final int width;
+        final int height;
+
+        Frame(byte[] data, int width, int height) {
+            this.data = data;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Owns the worker busy flags and the pending queue; everything here runs on the dispatch thread.
+     */
+    private final class DispatchHandler implements MessageLoop.Callback {
+
+        private final boolean[] busy;
+        private final long[] busySinceNanos;
+        private final ArrayDeque<Frame> pendingFrames;
+        private final WorkerWatchdog watchdog;
+
+        DispatchHandler() {
+            busy = new boolean[workers.length];
+            busySinceNanos = new long[workers.length];
+            pendingFrames = new ArrayDeque<>(pendingFrameCapacity + 1);
+            watchdog = new WorkerWatchdog(workers.length, options.getStallTimeoutMs());
+        }
+
+        @Override
+        public void handleMessage(int what, int arg1, int arg2, Object obj) {
+            switch (what) {
+                case MESSAGE_DECODE:
+                    onFrame(new Frame((byte[]) obj, arg1, arg2));
+                    break;
+                case MESSAGE_WORKER_IDLE:
+                    if (obj == decodeHandlers[arg1]) {
+                        onWorkerIdle(arg1, arg2 != 0);
+                    }
+                    break;
+                case MESSAGE_WATCHDOG:
+                    checkStalledWorkers();
+                    break;
+                case MESSAGE_FRAME_RATE:
+                    adjustFrameRate();
+                    break;
+                case MESSAGE_RESUME:
+                    onResume();
+                    break;
+                case MESSAGE_CANCEL:
+                    onCancel();
+                    break;
+                case MESSAGE_QUIT:
+                    // The loop quits right after; its delayed messages are dropped with it.
+                    onCancel();
+                    break;
+            }
+        }
+
+        private void onFrame(Frame frame) {
+            startupTracker.mark(StartupStep.FIRST_FRAME);
+            if (!active) {
+                releaseFrame(frame);
+                return;
+            }
+            receivedFrameCount++;
+            int idleWorker = findIdleWorker();
+            if (idleWorker >= 0) {
+                dispatch(idleWorker, frame);
+                if (pipelined || findIdleWorker() >= 0) {
+                    // Keep the other idle workers fed rather than waiting for a decode to fail,
+                    // and when pipelining, capture the next frame while this one is decoded.
+                    requestFrame();
+                }
+                return;
+            }
+            if (pendingFrames.size() >= pendingFrameCapacity) {
+                switch (pendingFramePolicy) {
+                    case KEEP_LATEST:
+                    case DROP_OLDEST:
+                        releaseFrame(pendingFrames.poll());
+                        break;
+                    case BOUNDED_QUEUE:
+                        droppedFrameCount++;
+                        releaseFrame(frame);
+                        return;
+                }
+                droppedFrameCount++;
+            }
+            pendingFrames.offer(frame);
+            if (pipelined && pendingFrames.size() < pendingFrameCapacity) {
+                requestFrame();
+            }
+        }
+
+        private void onWorkerIdle(int workerIndex, boolean found) {
+            watchdog.onIdle(workerIndex);
+            decodedFrameCount++;
+            if (frameRateController != null) {
+                // Measured before the worker takes the next pending frame.
+                frameRateController.onFrameDecoded(System.nanoTime() - busySinceNanos[workerIndex],
+                        pendingFrames.size() >= pendingFrameCapacity);
+            }
+            startupTracker.mark(StartupStep.FIRST_DECODE);
+            if (!found) {
+                failedFrameCount++;
+            }
+            freeWorker(workerIndex);
+        }
+
+        /**
+         * Hands the worker the next pending frame, or marks it idle.
+         */
+        private void freeWorker(int workerIndex) {
+            busy[workerIndex] = false;
+            Frame next = pendingFrames.poll();
+            if (next != null) {
+                dispatch(workerIndex, next);
+            } else if (activeSinceNanos != 0L) {
+                idleSinceNanos.set(workerIndex, System.nanoTime());
+            }
+            if (pipelined && active) {
+                // A worker or a pending slot just became free.
+                requestFrame();
+            }
+        }
+
+        private void onResume() {
+            long now = System.nanoTime();
+            activeSinceNanos = now;
+            if (frameRateController != null && !dispatchLoop.hasMessages(MESSAGE_FRAME_RATE)) {
+                dispatchLoop.sendDelayed(MESSAGE_FRAME_RATE, FrameRateController.CONTROL_INTERVAL_MS);
+            }
+            for (int i = 0; i < busy.length; i++) {
+                if (!busy[i]) {
+                    idleSinceNanos.set(i, now);
+                }
+            }
+        }
+
+        private void onCancel() {
+            clearPendingFrames();
+            dispatchLoop.removeMessages(MESSAGE_FRAME_RATE);
+            long now = System.nanoTime();
+            if (activeSinceNanos != 0L) {
+                activeNanos += now - activeSinceNanos;
+                activeSinceNanos = 0L;
+            }
+            // Workers are not starving while nothing is being scanned.
+            for (int i = 0; i < busy.length; i++) {
+                long idleSince = idleSinceNanos.getAndSet(i, 0L);
+                if (idleSince != 0L) {
+                    decoderIdleNanos += now - idleSince;
+                }
+            }
+        }
+
+        /**
+         * Replaces the workers busy for longer than the stall timeout, then checks again while any
+         * worker is busy.
+         */
+        private void checkStalledWorkers() {
+            long now = uptimeMillis();
+            int stalled;
+            while ((stalled = watchdog.takeStalled(now)) >= 0) {
+                replaceWorker(stalled);
+            }
+            scheduleWatchdog();
+        }
+
+        private void replaceWorker(int workerIndex) {
+            LogEx.w(TAG, "Decode worker " + workerIndex + " stuck for over " + options.getStallTimeoutMs() +
+                    " ms, replacing it");
+            stalledWorkerCount++;
+            MessageLoop stuck;
+            synchronized (workers) {
+                stuck = startWorker(workerIndex);
+            }
+            // Queued behind the stuck decode, so the old thread ends as soon as it returns.
+            stuck.quit();
+            // The abandoned frame is neither a decode sample nor an outcome: the stall would skew
+            // the frame rate control and the failure counts the watchdog is there to protect.
+            freeWorker(workerIndex);
+            if (!pipelined && active && !busy[workerIndex]) {
+                // Only the stuck worker would have asked the scan loop for the next frame, once its
+                // decode returned; it is ignored from now on, so ask on its behalf.
+                onDecodeFailed();
+            }
+        }
+
+        private void adjustFrameRate() {
+            if (!active) {
+                return;
+            }
+            if (frameRateController.evaluate()) {
+                // The preview restarted at the new size and forgot the outstanding request.
+                requestFrame();
+            }
+            dispatchLoop.sendDelayed(MESSAGE_FRAME_RATE, FrameRateController.CONTROL_INTERVAL_MS);
+        }
+
+        private void scheduleWatchdog() {
+            long delayMs = watchdog.getCheckDelayMs();
+            if (delayMs >= 0L && !dispatchLoop.hasMessages(MESSAGE_WATCHDOG)) {
+                dispatchLoop.sendDelayed(MESSAGE_WATCHDOG, delayMs);
+            }
+        }
+
+        private void dispatch(int workerIndex, Frame frame) {
+            busy[workerIndex] = true;
+            busySinceNanos[workerIndex] = System.nanoTime();
+            if (watchdog.isEnabled()) {
+                watchdog.onBusy(workerIndex, uptimeMillis());
+                scheduleWatchdog();
+            }
+            long idleSince = idleSinceNanos.getAndSet(workerIndex, 0L);
+            long waitNanos = idleSince != 0L ? System.nanoTime() - idleSince : 0L;
+            decoderIdleNanos += waitNanos;
+            if (activeSinceNanos != 0L) {
+                // A worker handed a frame that was already waiting did not wait at all.
+                stageLatencies[DecodeStage.FRAME_WAIT.ordinal()].record(waitNanos);
+            }
+            workers[workerIndex].send(MESSAGE_DECODE, frame.width, frame.height, frame.data);
+        }
+
+        private int findIdleWorker() {
+            for (int i = 0; i < busy.length; i++) {
+                if (!busy[i]) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void clearPendingFrames() {
+            Frame frame;
+            while ((frame = pendingFrames.poll()) != null) {
+                droppedFrameCount++;
+                releaseFrame(frame);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.google.zxing.Result;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers recently read codes, keyed on format and text, so that continuous scanning reports
+ * each code once. A code seen again within the time-to-live is suppressed and its timer restarts,
+ * so a label left under the scanner stays quiet. The cache is bounded; the least recently seen
+ * code is evicted first. Shared by all decode workers.
+ */
+final class DuplicateFilter {
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final long ttlMs;
+    private final int capacity;
+    private final LinkedHashMap<String, Long> lastSeen;
+
+    DuplicateFilter(long ttlMs) {
+        this(ttlMs, DEFAULT_CAPACITY);
+    }
+
+    DuplicateFilter(long ttlMs, final int capacity) {
+        this.ttlMs = ttlMs;
+        this.capacity = capacity;
+        // Access order: a repeated sighting moves the code to the tail, the head is the stalest.
+        this.lastSeen = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > DuplicateFilter.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param result A decoded code.
+     * @param nowMs  Current time, e.g. {@link System#nanoTime()} in milliseconds.
+     * @return true if the code was not seen within the time-to-live and should be reported
+     */
+    synchronized boolean accept(Result result, long nowMs) {
+        evictExpired(nowMs);
+        String key = result.getBarcodeFormat() + ":" + result.getText();
+        Long previous = lastSeen.put(key, nowMs);
+        return previous == null;
+    }
+
+    synchronized void clear() {
+        lastSeen.clear();
+    }
+
+    private void evictExpired(long nowMs) {
+        Iterator<Long> it = lastSeen.values().iterator();
+        while (it.hasNext()) {
+            if (nowMs - it.next() < ttlMs) {
+                // Entries are ordered by last sighting, so the rest are younger.
+                return;
+            }
+            it.remove();
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.coderchoy.barcodereaderview.util.LogEx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+
+/**
+ * 从文件中依次读取帧，文件为首尾相接、大小相同的原始帧（如NV21），默认循环播放。
+ * <p>
+ * <p>帧在产生帧的线程上读入少量可重用的缓冲区，读文件不占用解码时间；缓冲区都在解码时到来的帧被丢弃，与相机一致。
+ */
+public class FileFrameSource extends TimedFrameSource {
+
+    private static final String TAG = FileFrameSource.class.getSimpleName();
+
+    private static final int DEFAULT_BUFFER_COUNT = 3;
+
+    private final File file;
+    private final int frameSize;
+    private final long frameCount;
+    private final ArrayDeque<byte[]> freeBuffers;
+    private volatile boolean looping = true;
+    private int bufferCount = DEFAULT_BUFFER_COUNT;
+    private int allocatedCount;
+    private RandomAccessFile input;
+    private long nextFrame;
+    private boolean failed;
+
+    /**
+     * 读取NV21帧
+     *
+     * @param file   帧文件
+     * @param width  帧的宽度
+     * @param height 帧的高度
+     */
+    public FileFrameSource(File file, int width, int height) {
+        this(file, width, height, PlaneLayout.packed(width), width * height * 3 / 2);
+    }
+
+    /**
+     * @param layout    Y分量在每一帧中的排列方式
+     * @param frameSize 每一帧的字节数
+     * @see #FileFrameSource(File, int, int)
+     */
+    public FileFrameSource(File file, int width, int height, PlaneLayout layout, int frameSize) {
+        super(width, height, layout);
+        if (frameSize < layout.getRequiredSize(width, height)) {
+            throw new IllegalArgumentException("Frame size " + frameSize + " too small for " + width + "x" + height +
+                    " with " + layout);
+        }
+        this.file = file;
+        this.frameSize = frameSize;
+        this.frameCount = file.length() / frameSize;
+        this.freeBuffers = new ArrayDeque<>();
+    }
+
+    /**
+     * 是否在最后一帧之后从头播放，默认true
+     */
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    /**
+     * 设置可同时被解码的帧数，即缓冲区的个数，默认{@value #DEFAULT_BUFFER_COUNT}。在{@link #startPreview()}之前调用。
+     */
+    public synchronized void setBufferCount(int bufferCount) {
+        if (bufferCount <= 0) {
+            throw new IllegalArgumentException("Bad buffer count: " + bufferCount);
+        }
+        this.bufferCount = bufferCount;
+    }
+
+    /**
+     * 文件中的帧数
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public void releasePreviewBuffer(byte[] data) {
+        synchronized (this) {
+            if (data == null || data.length != frameSize || freeBuffers.size() >= allocatedCount) {
+                return;
+            }
+            freeBuffers.offer(data);
+        }
+        onFrameAvailable();
+    }
+
+    @Override
+    protected boolean hasNextFrame() {
+        return !failed && frameCount > 0 && (looping || nextFrame < frameCount);
+    }
+
+    @Override
+    protected byte[] nextFrame() {
+        byte[] buffer = obtainBuffer();
+        if (buffer == null) {
+            if (!isOnDemand()) {
+                skipFrame();
+            }
+            return null;
+        }
+        try {
+            if (input == null) {
+                input = new RandomAccessFile(file, "r");
+            }
+            input.seek(nextFrame % frameCount * frameSize);
+            input.readFully(buffer);
+        } catch (IOException e) {
+            LogEx.w(TAG, "Cannot read frame " + nextFrame + " of " + file, e);
+            failed = true;
+            releasePreviewBuffer(buffer);
+            return null;
+        }
+        nextFrame++;
+        return buffer;
+    }
+
+    @Override
+    protected void skipFrame() {
+        nextFrame++;
+    }
+
+    @Override
+    protected void onStopped() {
+        if (input != null) {
+            try {
+                input.close();
+            } catch (IOException e) {
+                LogEx.w(TAG, e);
+            }
+            input = null;
+        }
+    }
+
+    private synchronized byte[] obtainBuffer() {
+        byte[] buffer = freeBuffers.poll();
+        if (buffer == null && allocatedCount < bufferCount) {
+            buffer = new byte[frameSize];
+            allocatedCount++;
+        }
+        return buffer;
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * 可以按解码情况安排对焦的{@link FrameSource}。解码线程池每解码完一帧就报告一次，由实现决定
+ * 何时对焦，识别顺利时不应对焦。可以在任意线程调用，不能阻塞。
+ */
+public interface FocusControl {
+
+    /**
+     * @param signal 一帧解码后对对焦的提示
+     */
+    void onFocusSignal(FocusSignal signal);
+
+}
@@ -0,0 +1,51 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * 一帧解码后对对焦的提示，由解码线程通过{@link FocusControl}报告给相机
+ */
+public enum FocusSignal {
+
+    /**
+     * 识别出了条形码，包括连续扫描时被去重的条形码；焦点无需调整
+     */
+    DECODED,
+
+    /**
+     * 画面模糊：对比度足够但清晰度明显低于近期水平
+     */
+    BLURRY,
+
+    /**
+     * 之前跟踪到的条形码区域已丢失
+     */
+    TRACKING_LOST,
+
+    /**
+     * 看到了定位图形等候选点，但未能识别
+     */
+    CANDIDATE,
+
+    /**
+     * 画面清晰，但未发现条形码的迹象
+     */
+    MISSED
+
+}
@@ -0,0 +1,163 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import android.content.SharedPreferences;
+
+import com.coderchoy.barcodereaderview.util.LogEx;
+import com.google.zxing.BarcodeFormat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Decides in which order the readers of the enabled formats are tried on a frame. Every attempt is
+ * recorded with its outcome and the time it took; formats are then tried in decreasing order of
+ * hits per nanosecond, which minimises the expected time to the first hit. Formats that make up
+ * only a small share of the hits are tried on one frame in {@value #COLD_SAMPLE_INTERVAL} only, on
+ * every pass of that frame.
+ * <p>
+ * Counters are halved once enough codes have been read, so the order follows a change of labels.
+ * The statistics can be saved to and restored from {@link SharedPreferences}. Shared by all decode
+ * workers and kept by {@link BarcodeReaderView} across sessions.
+ */
+final class FormatScheduler {
+
+    private static final String TAG = FormatScheduler.class.getSimpleName();
+
+    private static final int COLD_SAMPLE_INTERVAL = 8;
+    private static final long MIN_HITS_FOR_COLD = 20L;
+    private static final double COLD_HIT_SHARE = 0.02;
+    private static final long DECAY_HITS = 1000L;
+    // Assumed cost of a reader that has not been timed yet, so it is tried early on.
+    private static final long DEFAULT_COST_NANOS = 1000000L;
+    private static final String KEY_PREFIX = "format_stats_";
+
+    private final long[] attempts;
+    private final long[] hits;
+    private final long[] nanos;
+    private long totalHits;
+    private long frameCount;
+
+    FormatScheduler() {
+        int count = BarcodeFormat.values().length;
+        attempts = new long[count];
+        hits = new long[count];
+        nanos = new long[count];
+    }
+
+    /**
+     * @param formats The enabled formats.
+     * @return the formats to try on the next frame, most promising first
+     */
+    synchronized List<BarcodeFormat> nextPlan(Collection<BarcodeFormat> formats) {
+        boolean sampleCold = frameCount++ % COLD_SAMPLE_INTERVAL == 0;
+        List<BarcodeFormat> plan = new ArrayList<>(formats.size());
+        for (BarcodeFormat format : formats) {
+            if (sampleCold || !isCold(format)) {
+                plan.add(format);
+            }
+        }
+        final double[] score = new double[attempts.length];
+        for (BarcodeFormat format : plan) {
+            score[format.ordinal()] = score(format);
+        }
+        Collections.sort(plan, new Comparator<BarcodeFormat>() {
+            @Override
+            public int compare(BarcodeFormat lhs, BarcodeFormat rhs) {
+                return Double.compare(score[rhs.ordinal()], score[lhs.ordinal()]);
+            }
+        });
+        return plan;
+    }
+
+    /**
+     * @param format    The format whose reader ran.
+     * @param costNanos Time spent in the reader.
+     * @param hit       Whether the reader found a code.
+     */
+    synchronized void record(BarcodeFormat format, long costNanos, boolean hit) {
+        int i = format.ordinal();
+        attempts[i]++;
+        nanos[i] += costNanos;
+        if (hit) {
+            hits[i]++;
+            if (++totalHits >= DECAY_HITS) {
+                decay();
+            }
+        }
+    }
+
+    synchronized void load(SharedPreferences prefs) {
+        for (BarcodeFormat format : BarcodeFormat.values()) {
+            String value = prefs.getString(KEY_PREFIX + format.name(), null);
+            if (value == null) {
+                continue;
+            }
+            String[] fields = value.split(",");
+            try {
+                int i = format.ordinal();
+                attempts[i] = Long.parseLong(fields[0]);
+                hits[i] = Long.parseLong(fields[1]);
+                nanos[i] = Long.parseLong(fields[2]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                LogEx.w(TAG, "Bad format stats for " + format + ": " + value);
+            }
+        }
+        totalHits = 0L;
+        for (long h : hits) {
+            totalHits += h;
+        }
+    }
+
+    synchronized void save(SharedPreferences prefs) {
+        SharedPreferences.Editor editor = prefs.edit();
+        for (BarcodeFormat format : BarcodeFormat.values()) {
+            int i = format.ordinal();
+            if (attempts[i] > 0L) {
+                editor.putString(KEY_PREFIX + format.name(), attempts[i] + "," + hits[i] + "," + nanos[i]);
+            }
+        }
+        editor.apply();
+    }
+
+    private boolean isCold(BarcodeFormat format) {
+        // Until enough codes have been read every format is treated alike.
+        return totalHits >= MIN_HITS_FOR_COLD && hits[format.ordinal()] < totalHits * COLD_HIT_SHARE;
+    }
+
+    private double score(BarcodeFormat format) {
+        int i = format.ordinal();
+        // Laplace smoothing keeps untried formats from scoring zero.
+        double hitRate = (hits[i] + 1.0) / (attempts[i] + 2.0);
+        double cost = attempts[i] == 0L ? DEFAULT_COST_NANOS : Math.max(1.0, (double) nanos[i] / attempts[i]);
+        return hitRate / cost;
+    }
+
+    private void decay() {
+        for (int i = 0; i < attempts.length; i++) {
+            attempts[i] >>= 1;
+            hits[i] >>= 1;
+            nanos[i] >>= 1;
+        }
+        totalHits >>= 1;
+    }
+
+}
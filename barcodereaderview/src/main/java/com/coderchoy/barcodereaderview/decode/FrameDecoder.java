@@ -0,0 +1,578 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.coderchoy.barcodereaderview.util.LogEx;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes the framing rect crop of a frame: quality gate, region of interest, resolution pyramid,
+ * binarizer tiers and format readers, within the frame budget. The readers keep state between
+ * decodes, so an instance must be used by one thread at a time; what is learned across frames
+ * lives in the shared {@link DecodeTuning}.
+ * <p>
+ * Plain Java with no View, Context or Handler, so that the camera pipeline and the headless
+ * {@link BarcodeScannerEngine} run exactly the same code.
+ */
+final class FrameDecoder {
+
+    private static final String TAG = FrameDecoder.class.getSimpleName();
+
+    private final DecodeTuning tuning;
+    private final Map<DecodeHintType, Object> hints;
+    private final MultiFormatReader multiFormatReader;
+    private final MultipleBarcodeReader multipleBarcodeReader;
+    // For the hybrid pass after a global one. HybridBinarizer inherits getBlackRow from
+    // GlobalHistogramBinarizer, so the 1D readers would scan the very same rows again: only the 2D
+    // readers run. Null if no 2D format is enabled, and the pass is skipped.
+    private final MultiFormatReader matrixReader;
+    private final MultipleBarcodeReader matrixMultipleReader;
+    private final FormatScheduler formatScheduler;
+    private final Map<BarcodeFormat, MultiFormatReader> formatReaders;
+    private final RoiTracker roiTracker;
+    private final ResolutionPyramid resolutionPyramid;
+    private final FramePointCallback framePointCallback;
+    private final long frameBudgetNanos;
+    private long frameDeadlineNanos;
+    private boolean overBudget;
+    // Where the time of the last frame went.
+    private long preprocessNanos;
+    private long binarizeNanos;
+    private long decodeNanos;
+    // Decided once per frame and kept for all of its passes, so the schedulers count frames.
+    private boolean tryGlobal;
+    private List<BarcodeFormat> plan;
+    private FocusSignal focusSignal = FocusSignal.MISSED;
+
+    /**
+     * @param tuning The components shared with the other decoders of the pipeline.
+     * @param hints  This decoder's own hints, see {@link #buildHints}; the result point callback in
+     *               it is replaced.
+     */
+    FrameDecoder(DecodeTuning tuning, Map<DecodeHintType, Object> hints) {
+        this.tuning = tuning;
+        this.hints = hints;
+        ScanOptions options = tuning.getOptions();
+        roiTracker = tuning.getRoiTracker();
+        resolutionPyramid = tuning.getResolutionPyramid();
+        // The hints are this decoder's own copy, so the callback can be swapped before any reader sees it.
+        framePointCallback = new FramePointCallback(
+                (ResultPointCallback) hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK));
+        hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, framePointCallback);
+        multiFormatReader = new MultiFormatReader();
+        multiFormatReader.setHints(hints);
+        multipleBarcodeReader = options.isDecodeMultiple() ? buildMultipleBarcodeReader(multiFormatReader) : null;
+        matrixReader = buildMatrixReader();
+        if (multipleBarcodeReader == null || matrixReader == null) {
+            matrixMultipleReader = null;
+        } else if (matrixReader == multiFormatReader) {
+            matrixMultipleReader = multipleBarcodeReader;
+        } else {
+            matrixMultipleReader = buildMultipleBarcodeReader(matrixReader);
+        }
+        formatReaders = multipleBarcodeReader == null ? buildFormatReaders() : null;
+        formatScheduler = formatReaders != null ? options.getFormatScheduler() : null;
+        frameBudgetNanos = options.getFrameBudgetMs() * 1000000L;
+    }
+
+    static Map<DecodeHintType, Object> buildHints(Collection<BarcodeFormat> decodeFormats,
+                                                  Map<DecodeHintType, ?> baseHints,
+                                                  String characterSet,
+                                                  ResultPointCallback resultPointCallback) {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        if (baseHints != null) {
+            hints.putAll(baseHints);
+        }
+
+        // The prefs can't change while the thread is running, so pick them up once here.
+        // 如果没有设置解码格式，则默认解析二维码
+        if (decodeFormats == null || decodeFormats.isEmpty()) {
+            decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
+            decodeFormats.add(BarcodeFormat.QR_CODE);
+        }
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
+
+        if (characterSet != null) {
+            hints.put(DecodeHintType.CHARACTER_SET, characterSet);
+        }
+        if (resultPointCallback != null) {
+            hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, resultPointCallback);
+        }
+        LogEx.i(TAG, "Hints: " + hints);
+        return hints;
+    }
+
+    /**
+     * @return one reader per enabled format for the scheduler to order, or null if there is nothing to order
+     */
+    @SuppressWarnings("unchecked")
+    private Map<BarcodeFormat, MultiFormatReader> buildFormatReaders() {
+        Collection<BarcodeFormat> formats = (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        if (tuning.getOptions().getFormatScheduler() == null || formats == null || formats.size() < 2) {
+            return null;
+        }
+        Map<BarcodeFormat, MultiFormatReader> readers = new EnumMap<>(BarcodeFormat.class);
+        for (BarcodeFormat format : formats) {
+            Map<DecodeHintType, Object> formatHints = new EnumMap<>(hints);
+            formatHints.put(DecodeHintType.POSSIBLE_FORMATS, EnumSet.of(format));
+            MultiFormatReader reader = new MultiFormatReader();
+            reader.setHints(formatHints);
+            readers.put(format, reader);
+        }
+        return readers;
+    }
+
+    /**
+     * @return a reader of the enabled 2D formats only; the main reader if those are all there are,
+     * null if there are none
+     */
+    @SuppressWarnings("unchecked")
+    private MultiFormatReader buildMatrixReader() {
+        Collection<BarcodeFormat> formats = (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        // No formats hinted means every reader, 1D ones included.
+        Collection<BarcodeFormat> candidates = formats != null ? formats : EnumSet.allOf(BarcodeFormat.class);
+        EnumSet<BarcodeFormat> matrixFormats = EnumSet.noneOf(BarcodeFormat.class);
+        for (BarcodeFormat format : candidates) {
+            if (isMatrixFormat(format)) {
+                matrixFormats.add(format);
+            }
+        }
+        if (matrixFormats.isEmpty()) {
+            return null;
+        }
+        if (formats != null && matrixFormats.size() == formats.size()) {
+            return multiFormatReader;
+        }
+        Map<DecodeHintType, Object> matrixHints = new EnumMap<>(hints);
+        matrixHints.put(DecodeHintType.POSSIBLE_FORMATS, matrixFormats);
+        MultiFormatReader reader = new MultiFormatReader();
+        reader.setHints(matrixHints);
+        return reader;
+    }
+
+    @SuppressWarnings("unchecked")
+    private MultipleBarcodeReader buildMultipleBarcodeReader(final MultiFormatReader reader) {
+        Collection<BarcodeFormat> formats = (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        if (reader == multiFormatReader && formats != null && formats.size() == 1 &&
+                formats.contains(BarcodeFormat.QR_CODE)) {
+            // Finds every finder pattern triple in one pass instead of cropping around each hit.
+            return new QRCodeMultiReader();
+        }
+        // MultiFormatReader.decode(image, hints) would rebuild its readers for every sub-image.
+        return new GenericMultipleBarcodeReader(new Reader() {
+            @Override
+            public Result decode(BinaryBitmap image) throws NotFoundException {
+                return reader.decodeWithState(image);
+            }
+
+            @Override
+            public Result decode(BinaryBitmap image, Map<DecodeHintType, ?> hints) throws NotFoundException {
+                return reader.decodeWithState(image);
+            }
+
+            @Override
+            public void reset() {
+                reader.reset();
+            }
+        });
+    }
+
+    /**
+     * @return true if a frame may yield several codes at once
+     */
+    boolean isDecodeMultiple() {
+        return multipleBarcodeReader != null;
+    }
+
+    /**
+     * Decode the crop. For efficiency, reuse the same reader objects from one decode to the next.
+     *
+     * @param source The framing rect crop, rotated to the display orientation.
+     * @return the codes found, with their points relative to the crop, or null
+     */
+    Result[] decode(RotatedPlanarYUVLuminanceSource source) {
+        long start = System.nanoTime();
+        frameDeadlineNanos = frameBudgetNanos > 0L ? start + frameBudgetNanos : Long.MAX_VALUE;
+        overBudget = false;
+        binarizeNanos = 0L;
+        decodeNanos = 0L;
+        Result[] results = null;
+        boolean trackingLost = false;
+        FrameQualityGate frameQualityGate = tuning.getFrameQualityGate();
+        FrameQuality quality = frameQualityGate != null ? frameQualityGate.check(source) : null;
+        // Blank and blurry frames fail anyway; the gate tells in microseconds instead of milliseconds.
+        if (quality == null || quality.isAccepted()) {
+            CropRegion region = roiTracker != null ? roiTracker.nextRegion(source.getWidth(), source.getHeight()) : null;
+            RotatedPlanarYUVLuminanceSource regionSource = region != null ?
+                    source.crop(region.left, region.top, region.width, region.height) : source;
+            int dx = region != null ? region.left : 0;
+            int dy = region != null ? region.top : 0;
+            framePointCallback.startFrame();
+            tryGlobal = tuning.getBinarizerSelector().tryGlobalFirst(quality);
+            plan = formatScheduler != null ? formatScheduler.nextPlan(formatReaders.keySet()) : null;
+            preprocessNanos = System.nanoTime() - start;
+            if (resolutionPyramid != null &&
+                    resolutionPyramid.covers(regionSource.getWidth(), regionSource.getHeight())) {
+                if (resolutionPyramid.useSmallLevel()) {
+                    results = decodePass(regionSource.downsample(), 2, dx, dy);
+                    if (resolutionPyramid.onSmallPass(results != null, framePointCallback.hasPoints()) && !isPastDeadline()) {
+                        results = decodePass(regionSource, 1, dx, dy);
+                        resolutionPyramid.onFullPass(results != null);
+                    }
+                } else {
+                    results = decodePass(regionSource, 1, dx, dy);
+                    resolutionPyramid.onFullPass(results != null);
+                }
+            } else {
+                results = decodePass(regionSource, 1, dx, dy);
+            }
+            if (roiTracker != null) {
+                trackingLost = roiTracker.update(region, framePointCallback.finishFrame(results));
+            }
+        } else {
+            preprocessNanos = System.nanoTime() - start;
+        }
+        if (overBudget) {
+            tuning.onFrameOverBudget();
+        }
+        focusSignal = toFocusSignal(results, quality, trackingLost);
+        return results;
+    }
+
+    private FocusSignal toFocusSignal(Result[] results, FrameQuality quality, boolean trackingLost) {
+        if (results != null) {
+            return FocusSignal.DECODED;
+        }
+        FrameQualityGate frameQualityGate = tuning.getFrameQualityGate();
+        if (quality != null && frameQualityGate.isBlurry(quality)) {
+            return FocusSignal.BLURRY;
+        }
+        if (trackingLost) {
+            return FocusSignal.TRACKING_LOST;
+        }
+        // Gated frames never reach the readers, so they have no candidate points.
+        if ((quality == null || quality.isAccepted()) && framePointCallback.hasPoints()) {
+            return FocusSignal.CANDIDATE;
+        }
+        return FocusSignal.MISSED;
+    }
+
+    /**
+     * @return what the last frame says about focus
+     */
+    FocusSignal getFocusSignal() {
+        return focusSignal;
+    }
+
+    /**
+     * @return time the last frame spent before binarizing: quality gate and region of interest
+     */
+    long getPreprocessNanos() {
+        return preprocessNanos;
+    }
+
+    /**
+     * @return time the last frame spent binarizing, over all passes; 0 if it was gated
+     */
+    long getBinarizeNanos() {
+        return binarizeNanos;
+    }
+
+    /**
+     * @return time the readers spent on the binarized last frame, over all passes; 0 if it was gated
+     */
+    long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    /**
+     * Decodes one level of the crop, trying the binarizer tiers in turn.
+     *
+     * @param source The crop, or a region or a downsampled copy of it.
+     * @param scale  Size of a source pixel in crop pixels.
+     * @param dx     Left of the source in the crop.
+     * @param dy     Top of the source in the crop.
+     * @return the codes found, with their points in crop coordinates, or null
+     */
+    private Result[] decodePass(LuminanceSource source, int scale, int dx, int dy) {
+        framePointCallback.setTransform(scale, dx, dy);
+        boolean byGlobal = false;
+        Result[] results = null;
+        if (tryGlobal) {
+            // One threshold for the whole crop is enough in good light, and much cheaper.
+            results = decodeBitmap(new BinaryBitmap(new TimedBinarizer(new GlobalHistogramBinarizer(source))), false);
+            byGlobal = results != null;
+        }
+        // After a global pass the hybrid one only helps the 2D readers.
+        if (results == null && !isPastDeadline() && (!tryGlobal || matrixReader != null)) {
+            results = decodeBitmap(new BinaryBitmap(new TimedBinarizer(new HybridBinarizer(source))), tryGlobal);
+        }
+        if (tryGlobal && results != null) {
+            tuning.getBinarizerSelector().recordHit(byGlobal);
+        }
+        if (results == null || (scale == 1 && dx == 0 && dy == 0)) {
+            return results;
+        }
+        return transform(results, scale, dx, dy);
+    }
+
+    /**
+     * @param matrixOnly Run the 2D readers only.
+     * @return the codes found in the binarized crop, or null
+     */
+    private Result[] decodeBitmap(BinaryBitmap bitmap, boolean matrixOnly) {
+        long start = System.nanoTime();
+        long binarizedBefore = binarizeNanos;
+        try {
+            if (multipleBarcodeReader != null) {
+                return (matrixOnly ? matrixMultipleReader : multipleBarcodeReader).decodeMultiple(bitmap, hints);
+            } else if (formatScheduler != null) {
+                return new Result[]{decodeScheduled(bitmap, matrixOnly)};
+            } else {
+                return new Result[]{(matrixOnly ? matrixReader : multiFormatReader).decodeWithState(bitmap)};
+            }
+        } catch (ReaderException re) {
+            return null;
+        } finally {
+            multiFormatReader.reset();
+            if (matrixReader != null && matrixReader != multiFormatReader) {
+                matrixReader.reset();
+            }
+            // Readers binarize lazily, row by row or all at once; the binarizer has timed its share.
+            decodeNanos += System.nanoTime() - start - (binarizeNanos - binarizedBefore);
+        }
+    }
+
+    /**
+     * Runs the format readers one at a time in the order the scheduler gave for the frame, timing each one.
+     */
+    private Result decodeScheduled(BinaryBitmap bitmap, boolean matrixOnly) throws NotFoundException {
+        if (containsMatrixFormat(plan)) {
+            // Binarize up front so the cost is not charged to whichever 2D reader happens to run first.
+            bitmap.getBlackMatrix();
+        }
+        for (BarcodeFormat format : plan) {
+            if (isPastDeadline()) {
+                break;
+            }
+            if (matrixOnly && !isMatrixFormat(format)) {
+                continue;
+            }
+            MultiFormatReader reader = formatReaders.get(format);
+            long start = System.nanoTime();
+            try {
+                Result result = reader.decodeWithState(bitmap);
+                formatScheduler.record(format, System.nanoTime() - start, true);
+                return result;
+            } catch (ReaderException re) {
+                formatScheduler.record(format, System.nanoTime() - start, false);
+            } finally {
+                reader.reset();
+            }
+        }
+        throw NotFoundException.getNotFoundInstance();
+    }
+
+    /**
+     * @return the results with their points scaled and moved into crop coordinates
+     */
+    private static Result[] transform(Result[] results, int scale, int dx, int dy) {
+        Result[] transformed = new Result[results.length];
+        for (int i = 0; i < results.length; i++) {
+            Result result = results[i];
+            ResultPoint[] points = result.getResultPoints();
+            ResultPoint[] moved = null;
+            if (points != null) {
+                moved = new ResultPoint[points.length];
+                for (int j = 0; j < points.length; j++) {
+                    moved[j] = points[j] == null ? null : transform(points[j], scale, dx, dy);
+                }
+            }
+            transformed[i] = new Result(result.getText(), result.getRawBytes(), moved,
+                    result.getBarcodeFormat(), result.getTimestamp());
+            transformed[i].putAllMetadata(result.getResultMetadata());
+        }
+        return transformed;
+    }
+
+    private static ResultPoint transform(ResultPoint point, int scale, int dx, int dy) {
+        return new ResultPoint(point.getX() * scale + dx, point.getY() * scale + dy);
+    }
+
+    /**
+     * A reader cannot be interrupted, so the budget is checked between passes: once it is spent the
+     * remaining passes are skipped and the caller moves on to a fresher frame.
+     */
+    private boolean isPastDeadline() {
+        if (!overBudget && System.nanoTime() > frameDeadlineNanos) {
+            overBudget = true;
+        }
+        return overBudget;
+    }
+
+    private static boolean containsMatrixFormat(List<BarcodeFormat> formats) {
+        for (BarcodeFormat format : formats) {
+            if (isMatrixFormat(format)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the format's reader works on the black matrix rather than on single rows
+     */
+    private static boolean isMatrixFormat(BarcodeFormat format) {
+        switch (format) {
+            case AZTEC:
+            case DATA_MATRIX:
+            case MAXICODE:
+            case PDF_417:
+            case QR_CODE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Adds the time spent thresholding to the frame's binarize time. Crops and rotations the
+     * readers ask for are timed as well.
+     */
+    private final class TimedBinarizer extends Binarizer {
+
+        private final Binarizer delegate;
+
+        TimedBinarizer(Binarizer delegate) {
+            super(delegate.getLuminanceSource());
+            this.delegate = delegate;
+        }
+
+        @Override
+        public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+            long start = System.nanoTime();
+            try {
+                return delegate.getBlackRow(y, row);
+            } finally {
+                binarizeNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public BitMatrix getBlackMatrix() throws NotFoundException {
+            long start = System.nanoTime();
+            try {
+                return delegate.getBlackMatrix();
+            } finally {
+                binarizeNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public Binarizer createBinarizer(LuminanceSource source) {
+            return new TimedBinarizer(delegate.createBinarizer(source));
+        }
+    }
+
+    /**
+     * Collects the points reported while decoding a frame, for the {@link RoiTracker}, the
+     * {@link ResolutionPyramid} and the {@link FocusSignal} of the frame. Points found in a region or
+     * at half resolution are moved into crop coordinates before they reach the tracker and the view.
+     */
+    private static final class FramePointCallback implements ResultPointCallback {
+
+        private final ResultPointCallback delegate;
+        private final List<ResultPoint> points = new ArrayList<>();
+        private int scale = 1;
+        private int dx;
+        private int dy;
+
+        FramePointCallback(ResultPointCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        void startFrame() {
+            points.clear();
+        }
+
+        void setTransform(int scale, int dx, int dy) {
+            this.scale = scale;
+            this.dx = dx;
+            this.dy = dy;
+        }
+
+        boolean hasPoints() {
+            return !points.isEmpty();
+        }
+
+        /**
+         * @param results The transformed results of the frame, or null.
+         * @return the candidate points of the frame, plus the points of the results if any
+         */
+        List<ResultPoint> finishFrame(Result[] results) {
+            if (results != null) {
+                for (Result result : results) {
+                    ResultPoint[] resultPoints = result.getResultPoints();
+                    if (resultPoints != null) {
+                        for (ResultPoint point : resultPoints) {
+                            if (point != null) {
+                                points.add(point);
+                            }
+                        }
+                    }
+                }
+            }
+            return points;
+        }
+
+        @Override
+        public void foundPossibleResultPoint(ResultPoint point) {
+            ResultPoint moved = scale == 1 && dx == 0 && dy == 0 ? point : transform(point, scale, dx, dy);
+            points.add(moved);
+            if (delegate != null) {
+                delegate.foundPossibleResultPoint(moved);
+            }
+        }
+    }
+
+}
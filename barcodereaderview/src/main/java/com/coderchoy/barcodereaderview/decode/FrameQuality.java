@@ -0,0 +1,62 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * 一帧图像（取景框内）的质量评分，在解码前通过降采样的灰度数据计算。
+ */
+public final class FrameQuality {
+
+    private final float sharpness;
+    private final float contrast;
+    private final boolean accepted;
+
+    FrameQuality(float sharpness, float contrast, boolean accepted) {
+        this.sharpness = sharpness;
+        this.contrast = contrast;
+        this.accepted = accepted;
+    }
+
+    /**
+     * 清晰度：相邻像素灰度差的平均值与对比度之比，与光照强弱无关，越大越清晰
+     */
+    public float getSharpness() {
+        return sharpness;
+    }
+
+    /**
+     * 对比度：灰度的标准差，0~127，接近0表示画面一片空白
+     */
+    public float getContrast() {
+        return contrast;
+    }
+
+    /**
+     * 是否通过质量检查并交给解码器
+     */
+    public boolean isAccepted() {
+        return accepted;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameQuality{sharpness=" + sharpness +
+                ", contrast=" + contrast +
+                ", accepted=" + accepted +
+                '}';
+    }
+}
@@ -0,0 +1,113 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * Rejects frames that cannot decode before they reach the binarizer: blank frames, and frames
+ * much blurrier than the recent ones, as happens during a focus sweep or while the hand moves.
+ * <p>
+ * Both scores come from a grid of at most {@value #SAMPLES_PER_SIDE} x {@value #SAMPLES_PER_SIDE}
+ * pixels of the crop. Contrast is the standard deviation of the samples; sharpness is the mean
+ * absolute difference between neighbouring samples divided by the contrast, so that it does not
+ * depend on the lighting. A frame must reach {@value #RELATIVE_SHARPNESS} of the moving average
+ * sharpness. The average follows every frame, so a scene that stays blurry is let through after a
+ * while, and no more than {@value #MAX_CONSECUTIVE_REJECTS} frames are ever rejected in a row.
+ * Shared by all decode workers.
+ */
+final class FrameQualityGate {
+
+    private static final int SAMPLES_PER_SIDE = 64;
+    private static final float MIN_CONTRAST = 8f;
+    private static final float RELATIVE_SHARPNESS = 0.6f;
+    private static final float AVERAGE_WEIGHT = 0.1f;
+    private static final int MAX_CONSECUTIVE_REJECTS = 8;
+
+    private float averageSharpness = -1f;
+    private int consecutiveRejects;
+    private long gatedCount;
+    private volatile FrameQuality lastQuality;
+
+    /**
+     * Scores the frame and decides whether it is worth decoding.
+     */
+    FrameQuality check(RotatedPlanarYUVLuminanceSource source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int step = Math.max(1, Math.max(width, height) / SAMPLES_PER_SIDE);
+        long sum = 0L;
+        long sumOfSquares = 0L;
+        long gradient = 0L;
+        int count = 0;
+        for (int y = 0; y + step < height; y += step) {
+            for (int x = 0; x + step < width; x += step) {
+                int luminance = source.getLuminance(x, y);
+                sum += luminance;
+                sumOfSquares += luminance * luminance;
+                gradient += Math.abs(source.getLuminance(x + step, y) - luminance) +
+                        Math.abs(source.getLuminance(x, y + step) - luminance);
+                count++;
+            }
+        }
+        if (count == 0) {
+            return record(new FrameQuality(0f, 0f, true));
+        }
+        float mean = (float) sum / count;
+        float contrast = (float) Math.sqrt(Math.max(0f, (float) sumOfSquares / count - mean * mean));
+        float sharpness = contrast < 1f ? 0f : gradient / (2f * count) / contrast;
+        return record(new FrameQuality(sharpness, contrast, accept(sharpness, contrast)));
+    }
+
+    synchronized long getGatedCount() {
+        return gatedCount;
+    }
+
+    /**
+     * @return the scores of the last frame checked, or null
+     */
+    FrameQuality getLastQuality() {
+        return lastQuality;
+    }
+
+    private synchronized boolean accept(float sharpness, float contrast) {
+        float average = averageSharpness;
+        averageSharpness = average < 0f ? sharpness : average + AVERAGE_WEIGHT * (sharpness - average);
+        boolean accepted = consecutiveRejects >= MAX_CONSECUTIVE_REJECTS ||
+                (contrast >= MIN_CONTRAST && (average < 0f || sharpness >= RELATIVE_SHARPNESS * average));
+        if (accepted) {
+            consecutiveRejects = 0;
+        } else {
+            consecutiveRejects++;
+            gatedCount++;
+        }
+        return accepted;
+    }
+
+    /**
+     * @return whether the frame has enough contrast to show a code but is clearly less sharp than
+     * recent frames, as when the lens has lost focus
+     */
+    synchronized boolean isBlurry(FrameQuality quality) {
+        return quality.getContrast() >= MIN_CONTRAST && averageSharpness > 0f &&
+                quality.getSharpness() < RELATIVE_SHARPNESS * averageSharpness;
+    }
+
+    private FrameQuality record(FrameQuality quality) {
+        lastQuality = quality;
+        return quality;
+    }
+
+}
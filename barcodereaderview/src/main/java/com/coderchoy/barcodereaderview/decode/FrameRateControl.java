@@ -0,0 +1,55 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import java.util.List;
+
+/**
+ * 可以调节出帧速度和帧尺寸的{@link FrameSource}，供解码线程池按解码速度调节相机，见
+ * {@link BarcodeReaderView#setAdaptiveFrameRate(boolean, boolean)}。可以在任意线程调用。
+ * <p>
+ * <p>帧率的单位与{@link android.hardware.Camera.Parameters#setPreviewFpsRange(int, int)}相同，为每秒帧数乘以1000。
+ */
+public interface FrameRateControl {
+
+    /**
+     * @return 支持的帧率范围，每项为{最低帧率, 最高帧率}；尚不能确定或不能调节时返回null
+     */
+    List<int[]> getSupportedFpsRanges();
+
+    /**
+     * @return 当前的帧率范围{最低帧率, 最高帧率}，尚不能确定时返回null
+     */
+    int[] getFpsRange();
+
+    /**
+     * 设置帧率范围，取值须为{@link #getSupportedFpsRanges()}中的一项
+     *
+     * @return 是否设置成功
+     */
+    boolean setFpsRange(int minFps, int maxFps);
+
+    /**
+     * 切换到比例相同的下一档较小的帧尺寸，需要重新开始预览，未满足的帧请求随之丢弃
+     *
+     * @return 是否已切换；已是最小一档或无法切换时返回false
+     */
+    boolean stepDownFrameSize();
+
+}
@@ -0,0 +1,168 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.coderchoy.barcodereaderview.util.LogEx;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keeps the camera producing frames at about the rate the decoders can take them, so it does not
+ * spend power and heat on frames that are only dropped. Every {@value #CONTROL_INTERVAL_MS} ms it
+ * estimates the decoders' capacity from their service times and picks the supported FPS range
+ * with the lowest maximum that still covers {@value #HEADROOM} times that capacity. At that rate a
+ * worker waits about half a frame interval for its next frame, at most a quarter of a decode, so
+ * scan latency stays where it was.
+ * <p>
+ * When the decoders cannot take even the slowest supported range, and stepping down is allowed, the
+ * frame size is reduced one step, which makes every decode cheaper. The decoders count as behind when
+ * their estimated capacity falls well short of that range, or when most decodes end with the pending
+ * queue full. Only with pipelining does the queue fill, since otherwise a frame is captured on request
+ * only; the capacity estimate covers that case. The size is not stepped back up within a session.
+ * Runs on the dispatch thread only.
+ */
+final class FrameRateController {
+
+    private static final String TAG = FrameRateController.class.getSimpleName();
+
+    static final long CONTROL_INTERVAL_MS = 1000L;
+    private static final float HEADROOM = 2f;
+    // Fewer frames than this in an interval say too little about the decoders.
+    private static final int MIN_SAMPLES = 5;
+    // Intervals to wait after a change, so the measurements reflect it.
+    private static final int SETTLE_INTERVALS = 2;
+    // Intervals in a row the decoders must fall behind the slowest range before the size steps down.
+    private static final int OVERLOAD_INTERVALS = 3;
+    // How far the decoders' capacity must fall short of the slowest range, as a share of its rate.
+    private static final float OVERLOAD_SHORTFALL = 0.3f;
+    // Share of the decodes in an interval that must end with the pending queue full.
+    private static final float OVERLOAD_BACKLOG_SHARE = 0.8f;
+    private static final float EWMA_WEIGHT = 0.3f;
+
+    private final FrameRateControl control;
+    private final int workerCount;
+    private final boolean stepDownAllowed;
+
+    private double serviceNanosEwma;
+    private int samples;
+    private int backloggedSamples;
+    private int settleIntervals;
+    private int overloadIntervals;
+
+    FrameRateController(FrameRateControl control, int workerCount, boolean stepDownAllowed) {
+        this.control = control;
+        this.workerCount = workerCount;
+        this.stepDownAllowed = stepDownAllowed;
+    }
+
+    /**
+     * @param serviceNanos Time from handing the frame to a worker until it was idle again.
+     * @param queueFull    Whether the pending queue was full when the worker became idle.
+     */
+    void onFrameDecoded(long serviceNanos, boolean queueFull) {
+        serviceNanosEwma = serviceNanosEwma == 0.0 ? serviceNanos :
+                serviceNanosEwma + EWMA_WEIGHT * (serviceNanos - serviceNanosEwma);
+        samples++;
+        if (queueFull) {
+            backloggedSamples++;
+        }
+    }
+
+    /**
+     * Called every {@value #CONTROL_INTERVAL_MS} ms while scanning.
+     *
+     * @return whether the frame size changed, dropping any outstanding frame request
+     */
+    boolean evaluate() {
+        int intervalSamples = samples;
+        int intervalBacklogged = backloggedSamples;
+        samples = 0;
+        backloggedSamples = 0;
+        if (settleIntervals > 0) {
+            settleIntervals--;
+            return false;
+        }
+        if (intervalSamples < MIN_SAMPLES || serviceNanosEwma <= 0.0) {
+            return false;
+        }
+        List<int[]> ranges = control.getSupportedFpsRanges();
+        int[] current = control.getFpsRange();
+        if (ranges == null || ranges.isEmpty() || current == null) {
+            return false;
+        }
+
+        double capacityFps = workerCount * 1e9 / serviceNanosEwma;
+        int targetFps1000 = (int) Math.min(Integer.MAX_VALUE, capacityFps * HEADROOM * 1000.0);
+        boolean backlog = intervalBacklogged >= intervalSamples * OVERLOAD_BACKLOG_SHARE;
+        if (backlog) {
+            // Frames already wait for a worker, whatever the estimate says; a faster range would be dropped.
+            targetFps1000 = Math.min(targetFps1000, current[1]);
+        }
+        int[] chosen = chooseRange(ranges, targetFps1000);
+        int[] slowest = chooseRange(ranges, 0);
+
+        // Against the range's maximum: the rate the camera runs at whenever the light allows.
+        boolean shortfall = capacityFps * 1000.0 < slowest[1] * (1f - OVERLOAD_SHORTFALL);
+        if (stepDownAllowed && Arrays.equals(current, slowest) && (shortfall || backlog)) {
+            if (++overloadIntervals >= OVERLOAD_INTERVALS) {
+                overloadIntervals = 0;
+                if (control.stepDownFrameSize()) {
+                    LogEx.i(TAG, String.format(Locale.US, "Decoding %.1f fps at %s, stepped the frame size down",
+                            capacityFps, Arrays.toString(current)));
+                    settleIntervals = SETTLE_INTERVALS;
+                    serviceNanosEwma = 0.0;
+                    return true;
+                }
+            }
+        } else {
+            overloadIntervals = 0;
+        }
+
+        if (!Arrays.equals(chosen, current) && control.setFpsRange(chosen[0], chosen[1])) {
+            LogEx.i(TAG, String.format(Locale.US, "Decoding %.1f fps, FPS range %s -> %s", capacityFps,
+                    Arrays.toString(current), Arrays.toString(chosen)));
+            settleIntervals = SETTLE_INTERVALS;
+        }
+        return false;
+    }
+
+    /**
+     * @return the range with the lowest maximum at or above the target, preferring the lower
+     * minimum, which leaves the exposure more room; the fastest range if none reaches the target
+     */
+    static int[] chooseRange(List<int[]> ranges, int targetFps1000) {
+        int[] best = null;
+        int[] fastest = null;
+        for (int[] range : ranges) {
+            if (fastest == null || range[1] > fastest[1] || (range[1] == fastest[1] && range[0] < fastest[0])) {
+                fastest = range;
+            }
+            if (range[1] < targetFps1000) {
+                continue;
+            }
+            if (best == null || range[1] < best[1] || (range[1] == best[1] && range[0] < best[0])) {
+                best = range;
+            }
+        }
+        return best != null ? best : fastest;
+    }
+
+}
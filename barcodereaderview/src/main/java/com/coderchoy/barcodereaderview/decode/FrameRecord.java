@@ -0,0 +1,259 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 一帧的拍摄信息与解码结果，由{@link FrameRecorder}随帧一起记录，由{@link RecordedFrameSource}回放。
+ * <p>
+ * <p>为安全起见只记录识别出的条码个数和第一个条码的格式，不记录条码内容。
+ */
+public final class FrameRecord {
+
+    public static final int FOCUS_UNKNOWN = 0;
+    /**
+     * 固定焦距或连续对焦，不由扫码界面触发对焦
+     */
+    public static final int FOCUS_FIXED = 1;
+    public static final int FOCUS_FOCUSING = 2;
+    public static final int FOCUS_FOCUSED = 3;
+    public static final int FOCUS_FAILED = 4;
+
+    /**
+     * 尚未解码
+     */
+    public static final int RESULT_COUNT_UNKNOWN = -1;
+
+    // On-disk form: a fixed header, big-endian, followed by the packed Y plane.
+    static final int MAGIC = 0x46524D45; // "FRME"
+    static final int HEADER_SIZE = 72;
+
+    private final int width;
+    private final int height;
+    private final int rotation;
+    private final int framingLeft;
+    private final int framingTop;
+    private final int framingWidth;
+    private final int framingHeight;
+    private final int focusState;
+    private final long timestampNanos;
+    private final long wallTimeMs;
+    private final int resultCount;
+    private final BarcodeFormat format;
+    // Only used while recording, to find the Y plane in the delivered frame; the file holds it packed.
+    private final PlaneLayout layout;
+
+    /**
+     * @param width          帧的宽度
+     * @param height         帧的高度
+     * @param layout         Y分量在帧中的排列方式
+     * @param rotation       解码时将帧顺时针旋转的角度
+     * @param framingLeft    解码区域的左边，旋转后的坐标
+     * @param framingTop     解码区域的上边，旋转后的坐标
+     * @param framingWidth   解码区域的宽度
+     * @param framingHeight  解码区域的高度
+     * @param focusState     对焦状态，FOCUS_*
+     * @param timestampNanos 拍摄时间，{@link System#nanoTime()}
+     * @param wallTimeMs     拍摄时间，{@link System#currentTimeMillis()}
+     */
+    public FrameRecord(int width, int height, PlaneLayout layout, int rotation,
+                       int framingLeft, int framingTop, int framingWidth, int framingHeight,
+                       int focusState, long timestampNanos, long wallTimeMs) {
+        this(width, height, layout, rotation, framingLeft, framingTop, framingWidth, framingHeight, focusState,
+                timestampNanos, wallTimeMs, RESULT_COUNT_UNKNOWN, null);
+    }
+
+    private FrameRecord(int width, int height, PlaneLayout layout, int rotation,
+                        int framingLeft, int framingTop, int framingWidth, int framingHeight,
+                        int focusState, long timestampNanos, long wallTimeMs, int resultCount, BarcodeFormat format) {
+        this.width = width;
+        this.height = height;
+        this.layout = layout;
+        this.rotation = rotation;
+        this.framingLeft = framingLeft;
+        this.framingTop = framingTop;
+        this.framingWidth = framingWidth;
+        this.framingHeight = framingHeight;
+        this.focusState = focusState;
+        this.timestampNanos = timestampNanos;
+        this.wallTimeMs = wallTimeMs;
+        this.resultCount = resultCount;
+        this.format = format;
+    }
+
+    /**
+     * @param results The codes found in the frame, or null.
+     * @return this record with the decode outcome filled in
+     */
+    FrameRecord withResults(Result[] results) {
+        int count = results == null ? 0 : results.length;
+        return new FrameRecord(width, height, layout, rotation, framingLeft, framingTop, framingWidth,
+                framingHeight, focusState, timestampNanos, wallTimeMs, count,
+                count == 0 ? null : results[0].getBarcodeFormat());
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public int getFramingLeft() {
+        return framingLeft;
+    }
+
+    public int getFramingTop() {
+        return framingTop;
+    }
+
+    public int getFramingWidth() {
+        return framingWidth;
+    }
+
+    public int getFramingHeight() {
+        return framingHeight;
+    }
+
+    /**
+     * 对焦状态，FOCUS_*
+     */
+    public int getFocusState() {
+        return focusState;
+    }
+
+    /**
+     * 拍摄时间，{@link System#nanoTime()}，只用于计算帧间隔
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * 拍摄时间，{@link System#currentTimeMillis()}
+     */
+    public long getWallTimeMs() {
+        return wallTimeMs;
+    }
+
+    /**
+     * 识别出的条码个数，尚未解码时为{@link #RESULT_COUNT_UNKNOWN}
+     */
+    public int getResultCount() {
+        return resultCount;
+    }
+
+    /**
+     * 第一个条码的格式，未识别出条码时为null
+     */
+    public BarcodeFormat getFormat() {
+        return format;
+    }
+
+    PlaneLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return bytes of the packed Y plane following the header
+     */
+    int getDataLength() {
+        return width * height;
+    }
+
+    void writeHeader(ByteBuffer out) {
+        out.putInt(MAGIC);
+        out.putInt(HEADER_SIZE);
+        out.putInt(getDataLength());
+        out.putInt(width);
+        out.putInt(height);
+        out.putInt(rotation);
+        out.putInt(framingLeft);
+        out.putInt(framingTop);
+        out.putInt(framingWidth);
+        out.putInt(framingHeight);
+        out.putInt(focusState);
+        out.putInt(resultCount);
+        out.putInt(format == null ? -1 : format.ordinal());
+        out.putInt(0); // reserved
+        out.putLong(timestampNanos);
+        out.putLong(wallTimeMs);
+    }
+
+    /**
+     * Reads a header written by {@link #writeHeader(ByteBuffer)} at the position of {@code in}, and
+     * leaves the position on the Y plane.
+     *
+     * @return the record, or null if there is no valid header there
+     */
+    static FrameRecord readHeader(ByteBuffer in) {
+        if (in.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int start = in.position();
+        if (in.getInt() != MAGIC) {
+            return null;
+        }
+        int headerSize = in.getInt();
+        int dataLength = in.getInt();
+        int width = in.getInt();
+        int height = in.getInt();
+        if (headerSize < HEADER_SIZE || start + headerSize > in.limit() ||
+                width <= 0 || height <= 0 || dataLength != width * height) {
+            return null;
+        }
+        int rotation = in.getInt();
+        int framingLeft = in.getInt();
+        int framingTop = in.getInt();
+        int framingWidth = in.getInt();
+        int framingHeight = in.getInt();
+        int focusState = in.getInt();
+        int resultCount = in.getInt();
+        int formatOrdinal = in.getInt();
+        in.getInt();
+        long timestampNanos = in.getLong();
+        long wallTimeMs = in.getLong();
+        // Later versions may append fields to the header.
+        in.position(start + headerSize);
+        BarcodeFormat[] formats = BarcodeFormat.values();
+        BarcodeFormat format = formatOrdinal >= 0 && formatOrdinal < formats.length ? formats[formatOrdinal] : null;
+        return new FrameRecord(width, height, PlaneLayout.packed(width), rotation, framingLeft, framingTop,
+                framingWidth, framingHeight, focusState, timestampNanos, wallTimeMs, resultCount, format);
+    }
+
+    @Override
+    public String toString() {
+        return "FrameRecord{" + width + "x" + height +
+                ", rotation=" + rotation +
+                ", framing=" + framingLeft + "," + framingTop + " " + framingWidth + "x" + framingHeight +
+                ", focusState=" + focusState +
+                ", timestampNanos=" + timestampNanos +
+                ", resultCount=" + resultCount +
+                ", format=" + format +
+                '}';
+    }
+}
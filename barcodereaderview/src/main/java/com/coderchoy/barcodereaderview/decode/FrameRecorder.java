@@ -0,0 +1,352 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+
+import com.coderchoy.barcodereaderview.util.LogEx;
+import com.google.zxing.Result;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 记录解码器实际收到的帧（Y分量）及其拍摄信息与解码结果（{@link FrameRecord}），用于分析现场“扫不出来”的问题，
+ * 记录的文件可以用{@link RecordedFrameSource}回放。通过{@link BarcodeReaderView#setFrameRecorder(FrameRecorder)}启用。
+ * <p>
+ * <p>帧被复制到少量预先分配的缓冲区后由单独的线程写入文件，解码线程从不等待磁盘；缓冲区都在等待写入时该帧不被记录。
+ * 文件按大小分段，只保留最近的若干段，因此可以长期开启。
+ */
+public final class FrameRecorder {
+
+    private static final String TAG = FrameRecorder.class.getSimpleName();
+
+    static final String SEGMENT_PREFIX = "frames-";
+    static final String SEGMENT_SUFFIX = ".rec";
+    static final int SEGMENT_MAGIC = 0x42525652; // "BRVR"
+    static final int SEGMENT_VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = 16;
+
+    private final File directory;
+    private final long segmentSize;
+    private final int maxSegments;
+    private final int recordInterval;
+    private final int bufferCount;
+    private final ArrayDeque<byte[]> freeBuffers;
+    private int allocatedCount;
+    private final AtomicLong frameCounter = new AtomicLong();
+    private final AtomicLong skippedFrameCount = new AtomicLong();
+    private volatile long recordedFrameCount;
+    private volatile boolean closed;
+    private final HandlerThread writerThread;
+    private final Handler writer;
+
+    // Written on the writer thread only.
+    private FileOutputStream output;
+    private long outputSize;
+    private int nextSegmentIndex = -1;
+    private final ByteBuffer header = ByteBuffer.allocate(Math.max(FrameRecord.HEADER_SIZE, SEGMENT_HEADER_SIZE));
+
+    private FrameRecorder(Builder builder) {
+        directory = builder.directory;
+        segmentSize = builder.segmentSize;
+        maxSegments = builder.maxSegments;
+        recordInterval = builder.recordInterval;
+        bufferCount = builder.bufferCount;
+        freeBuffers = new ArrayDeque<>(bufferCount);
+        writerThread = new HandlerThread("FrameRecorder");
+        writerThread.start();
+        writer = new Handler(writerThread.getLooper()) {
+            @Override
+            public void handleMessage(Message message) {
+                PendingFrame frame = (PendingFrame) message.obj;
+                write(frame);
+                recycleBuffer(frame.data);
+            }
+        };
+    }
+
+    /**
+     * 记录文件所在的目录
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 已写入文件的帧数
+     */
+    public long getRecordedFrameCount() {
+        return recordedFrameCount;
+    }
+
+    /**
+     * 因缓冲区都在等待写入而未记录的帧数
+     */
+    public long getSkippedFrameCount() {
+        return skippedFrameCount.get();
+    }
+
+    /**
+     * 停止记录，已复制的帧写入完毕后关闭文件
+     */
+    public void close() {
+        closed = true;
+        writer.post(new Runnable() {
+            @Override
+            public void run() {
+                closeSegment();
+                writerThread.quit();
+            }
+        });
+    }
+
+    /**
+     * Called by a decode worker for every frame; cheap.
+     *
+     * @return true if the current frame is to be recorded
+     */
+    boolean shouldRecord() {
+        return !closed && frameCounter.getAndIncrement() % recordInterval == 0;
+    }
+
+    /**
+     * Copies the Y plane of a frame and queues it for writing. Never blocks on the disk.
+     *
+     * @param data    The frame as delivered by the {@link FrameSource}.
+     * @param frame   Where and how it was taken.
+     * @param results What the decoder found in it, or null.
+     */
+    void record(byte[] data, FrameRecord frame, Result[] results) {
+        PlaneLayout layout = frame.getLayout();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        if (closed || layout == null || data.length < layout.getRequiredSize(width, height)) {
+            return;
+        }
+        byte[] buffer = obtainBuffer(frame.getDataLength());
+        if (buffer == null) {
+            // The writer is behind; better to lose a frame than to hold up the decoder.
+            skippedFrameCount.incrementAndGet();
+            return;
+        }
+        int offset = layout.getOffset();
+        int rowStride = layout.getRowStride();
+        int pixelStride = layout.getPixelStride();
+        for (int y = 0; y < height; y++) {
+            int input = offset + y * rowStride;
+            if (pixelStride == 1) {
+                System.arraycopy(data, input, buffer, y * width, width);
+            } else {
+                int output = y * width;
+                for (int x = 0; x < width; x++) {
+                    buffer[output + x] = data[input + x * pixelStride];
+                }
+            }
+        }
+        writer.obtainMessage(0, new PendingFrame(buffer, frame.withResults(results))).sendToTarget();
+    }
+
+    private synchronized byte[] obtainBuffer(int size) {
+        byte[] buffer = freeBuffers.poll();
+        if (buffer == null) {
+            if (allocatedCount >= bufferCount) {
+                return null;
+            }
+            allocatedCount++;
+            return new byte[size];
+        }
+        // The preview size changed since the buffer was allocated.
+        return buffer.length == size ? buffer : new byte[size];
+    }
+
+    private synchronized void recycleBuffer(byte[] buffer) {
+        freeBuffers.offer(buffer);
+    }
+
+    private void write(PendingFrame frame) {
+        int recordSize = FrameRecord.HEADER_SIZE + frame.data.length;
+        try {
+            if (output == null || outputSize + recordSize > segmentSize) {
+                openSegment();
+            }
+            header.clear();
+            frame.record.writeHeader(header);
+            output.write(header.array(), 0, FrameRecord.HEADER_SIZE);
+            output.write(frame.data);
+            outputSize += recordSize;
+            recordedFrameCount++;
+        } catch (IOException e) {
+            // Most likely the disk is full; recording is a diagnostic, scanning goes on without it.
+            LogEx.w(TAG, "Cannot record frame, recording stopped", e);
+            closed = true;
+            closeSegment();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        closeSegment();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File[] segments = listSegments(directory);
+        if (nextSegmentIndex < 0) {
+            nextSegmentIndex = segments.length == 0 ? 0 : parseSegmentIndex(segments[segments.length - 1]) + 1;
+        }
+        // Make room for the new segment.
+        for (int i = 0; i <= segments.length - maxSegments; i++) {
+            if (!segments[i].delete()) {
+                LogEx.w(TAG, "Cannot delete " + segments[i]);
+            }
+        }
+        File file = new File(directory, String.format(Locale.US, "%s%06d%s", SEGMENT_PREFIX, nextSegmentIndex++,
+                SEGMENT_SUFFIX));
+        output = new FileOutputStream(file);
+        header.clear();
+        header.putInt(SEGMENT_MAGIC);
+        header.putInt(SEGMENT_VERSION);
+        header.putLong(System.currentTimeMillis());
+        output.write(header.array(), 0, SEGMENT_HEADER_SIZE);
+        outputSize = SEGMENT_HEADER_SIZE;
+        LogEx.i(TAG, "Recording frames to " + file);
+    }
+
+    private void closeSegment() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                LogEx.w(TAG, e);
+            }
+            output = null;
+        }
+    }
+
+    /**
+     * @return the segment files in the directory, oldest first
+     */
+    static File[] listSegments(File directory) {
+        File[] segments = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX) &&
+                        parseSegmentIndex(new File(dir, name)) >= 0;
+            }
+        });
+        if (segments == null) {
+            return new File[0];
+        }
+        // Indices are zero-padded, so names sort in recording order.
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private static int parseSegmentIndex(File segment) {
+        String name = segment.getName();
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final class PendingFrame {
+
+        final byte[] data;
+        final FrameRecord record;
+
+        PendingFrame(byte[] data, FrameRecord record) {
+            this.data = data;
+            this.record = record;
+        }
+    }
+
+    public static final class Builder {
+
+        private final File directory;
+        private long segmentSize = 32L * 1024 * 1024;
+        private int maxSegments = 8;
+        private int recordInterval = 1;
+        private int bufferCount = 2;
+
+        /**
+         * @param directory 记录文件所在的目录，不存在时自动创建
+         */
+        public Builder(File directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * 每段文件的最大字节数，默认32MB
+         */
+        public Builder setSegmentSize(long segmentSize) {
+            if (segmentSize <= SEGMENT_HEADER_SIZE) {
+                throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * 最多保留的段数，超出时删除最早的一段，默认8
+         */
+        public Builder setMaxSegments(int maxSegments) {
+            if (maxSegments <= 0) {
+                throw new IllegalArgumentException("Bad segment count: " + maxSegments);
+            }
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        /**
+         * 每隔几帧记录一帧，默认1，即记录每一帧
+         */
+        public Builder setRecordInterval(int recordInterval) {
+            if (recordInterval <= 0) {
+                throw new IllegalArgumentException("Bad record interval: " + recordInterval);
+            }
+            this.recordInterval = recordInterval;
+            return this;
+        }
+
+        /**
+         * 等待写入的帧最多占用几个缓冲区，默认2
+         */
+        public Builder setBufferCount(int bufferCount) {
+            if (bufferCount <= 0) {
+                throw new IllegalArgumentException("Bad buffer count: " + bufferCount);
+            }
+            this.bufferCount = bufferCount;
+            return this;
+        }
+
+        public FrameRecorder build() {
+            return new FrameRecorder(this);
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * 解码流水线的帧来源。扫码的状态机（{@link BarcodeReaderHandler}和解码线程池）只通过这个接口获取帧，
+ * 因此同一套流程既可以运行在相机上（{@link com.google.zxing.client.android.camera.CameraManager}），
+ * 也可以运行在内存或文件中的帧上（{@link TimedFrameSource}），无需相机即可测试吞吐量和延迟。
+ * <p>
+ * <p>帧是逐个请求的：调用{@link #requestPreviewFrame(FrameCallback)}之后，下一帧只交给该回调一次。
+ * 可以在任意线程请求帧。
+ */
+public interface FrameSource {
+
+    /**
+     * 开始产生帧
+     */
+    void startPreview();
+
+    /**
+     * 停止产生帧，并丢弃尚未满足的请求
+     */
+    void stopPreview();
+
+    /**
+     * 将下一帧交给callback，只交一次
+     */
+    void requestPreviewFrame(FrameCallback callback);
+
+    /**
+     * 归还解码完毕的帧，以便重用其缓冲区
+     */
+    void releasePreviewBuffer(byte[] data);
+
+    /**
+     * @param data   收到的帧，未旋转
+     * @param width  帧的宽度
+     * @param height 帧的高度
+     * @return 需要解码的区域，已按显示方向旋转；尚不能确定时返回null
+     */
+    RotatedPlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height);
+
+    /**
+     * 描述一帧的拍摄信息（旋转角度、解码区域、对焦状态等），供{@link FrameRecorder}记录，只在记录时调用
+     *
+     * @param data   收到的帧，未旋转
+     * @param width  帧的宽度
+     * @param height 帧的高度
+     * @return 该帧的拍摄信息；无法提供时返回null，该帧不被记录
+     */
+    FrameRecord describeFrame(byte[] data, int width, int height);
+
+    /**
+     * 接收请求的帧
+     */
+    interface FrameCallback {
+
+        /**
+         * 在帧来源的线程上调用，应尽快返回
+         *
+         * @param data   帧数据，未旋转
+         * @param width  帧的宽度
+         * @param height 帧的高度
+         */
+        void onPreviewFrame(byte[] data, int width, int height);
+    }
+
+}
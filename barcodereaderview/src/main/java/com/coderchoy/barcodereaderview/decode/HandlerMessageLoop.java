@@ -0,0 +1,106 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_QUIT_LOOP;
+
+/**
+ * A {@link MessageLoop} on an Android Looper: a {@link HandlerThread} started by {@link #FACTORY},
+ * or the Looper of an existing Handler.
+ */
+final class HandlerMessageLoop implements MessageLoop {
+
+    static final Factory FACTORY = new Factory() {
+        @Override
+        public MessageLoop start(String name, Callback callback) {
+            HandlerThread thread = new HandlerThread(name);
+            thread.start();
+            return new HandlerMessageLoop(new CallbackHandler(thread.getLooper(), callback));
+        }
+    };
+
+    private final Handler handler;
+
+    /**
+     * @param handler Receives the messages; quitting is left to its owner.
+     */
+    HandlerMessageLoop(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void send(int what, int arg1, int arg2, Object obj) {
+        handler.obtainMessage(what, arg1, arg2, obj).sendToTarget();
+    }
+
+    @Override
+    public void sendDelayed(int what, long delayMs) {
+        handler.sendEmptyMessageDelayed(what, delayMs);
+    }
+
+    @Override
+    public boolean hasMessages(int what) {
+        return handler.hasMessages(what);
+    }
+
+    @Override
+    public void removeMessages(int what) {
+        handler.removeMessages(what);
+    }
+
+    @Override
+    public boolean isLoopThread() {
+        return handler.getLooper().getThread() == Thread.currentThread();
+    }
+
+    @Override
+    public void quit() {
+        // Behind the messages already due; Looper.quitSafely() needs API 18.
+        handler.sendEmptyMessage(MESSAGE_QUIT_LOOP);
+    }
+
+    @Override
+    public void join(long timeoutMs) throws InterruptedException {
+        handler.getLooper().getThread().join(timeoutMs);
+    }
+
+    private static final class CallbackHandler extends Handler {
+
+        // Not Handler.Callback, which the name would otherwise resolve to in here.
+        private final MessageLoop.Callback callback;
+
+        CallbackHandler(Looper looper, MessageLoop.Callback callback) {
+            super(looper);
+            this.callback = callback;
+        }
+
+        @Override
+        public void handleMessage(Message message) {
+            if (message.what == MESSAGE_QUIT_LOOP) {
+                getLooper().quit();
+                return;
+            }
+            callback.handleMessage(message.what, message.arg1, message.arg2, message.obj);
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies that any number of threads record into without locking, and that can
+ * be read at any time without holding them up.
+ * <p>
+ * Buckets are log-linear in microseconds: below {@value #SUB_BUCKET_COUNT} µs every value has its
+ * own bucket, above that every power of two is split into {@value #SUB_BUCKET_COUNT} buckets, so
+ * a percentile read back is within 1/{@value #SUB_BUCKET_COUNT} of the recorded value. Values
+ * beyond the last bucket, about two minutes, land in it.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // Highest power of two of microseconds with buckets of its own.
+    private static final int MAX_EXPONENT = 26;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void record(long nanos) {
+        long micros = Math.max(0L, nanos / 1000L);
+        counts.incrementAndGet(bucketOf(micros));
+        totalMicros.addAndGet(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    /**
+     * @return the counts as they are now; buckets are read one by one, so a value recorded
+     * meanwhile may or may not be in it
+     */
+    StageLatency snapshot() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return new StageLatency(snapshot, totalMicros.get(), maxMicros.get());
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        int bucket = (shift + 1) * SUB_BUCKET_COUNT + (int) ((micros >> shift) & (SUB_BUCKET_COUNT - 1));
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @return the smallest value in microseconds that falls into the bucket
+     */
+    static long lowerBoundOf(int bucket) {
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        if (shift < 0) {
+            return bucket;
+        }
+        return (long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT) << shift;
+    }
+
+    /**
+     * @return the number of values in microseconds that fall into the bucket
+     */
+    static long widthOf(int bucket) {
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        return shift < 0 ? 1L : 1L << shift;
+    }
+
+}
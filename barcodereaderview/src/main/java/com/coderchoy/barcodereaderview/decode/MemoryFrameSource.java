@@ -0,0 +1,77 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 依次提供内存中的一组帧，默认循环播放。帧数据直接交给解码流程，不复制，解码期间不要修改。
+ */
+public class MemoryFrameSource extends TimedFrameSource {
+
+    private final List<byte[]> frames;
+    private volatile boolean looping = true;
+    private int nextIndex;
+
+    /**
+     * @param frames Y分量紧密排列在前的帧（NV21等），大小相同
+     * @param width  帧的宽度
+     * @param height 帧的高度
+     */
+    public MemoryFrameSource(List<byte[]> frames, int width, int height) {
+        this(frames, width, height, PlaneLayout.packed(width));
+    }
+
+    /**
+     * @param layout Y分量在帧中的排列方式
+     * @see #MemoryFrameSource(List, int, int)
+     */
+    public MemoryFrameSource(List<byte[]> frames, int width, int height, PlaneLayout layout) {
+        super(width, height, layout);
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("No frames");
+        }
+        this.frames = new ArrayList<>(frames);
+    }
+
+    /**
+     * 是否在最后一帧之后从头播放，默认true
+     */
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    @Override
+    protected boolean hasNextFrame() {
+        return looping || nextIndex < frames.size();
+    }
+
+    @Override
+    protected byte[] nextFrame() {
+        byte[] frame = frames.get(nextIndex % frames.size());
+        nextIndex++;
+        return frame;
+    }
+
+    @Override
+    protected void skipFrame() {
+        nextIndex++;
+    }
+
+}
@@ -7,12 +7,26 @@ package com.coderchoy.barcodereaderview.decode;
 
 class MessageId {
 
-    //BarcodeReaderHandler
+    //ScanStateMachine
     public static final int MESSAGE_RESTART_PREVIEW = 0x01;
     public static final int MESSAGE_DECODE_SUCCEEDED = 0x02;
     public static final int MESSAGE_DECODE_FAILED = 0x03;
+    public static final int MESSAGE_DECODE_MULTIPLE_SUCCEEDED = 0x09;
 
     //DecodeHandler
     public static final int MESSAGE_DECODE = 0x04;
     public static final int MESSAGE_QUIT = 0x05;
+
+    //DecodeWorkerPool
+    public static final int MESSAGE_WORKER_IDLE = 0x06;
+    public static final int MESSAGE_CANCEL = 0x07;
+    public static final int MESSAGE_RESUME = 0x08;
+    public static final int MESSAGE_WATCHDOG = 0x0A;
+    public static final int MESSAGE_FRAME_RATE = 0x0C;
+
+    //TimedFrameSource
+    public static final int MESSAGE_NEXT_FRAME = 0x0B;
+
+    //HandlerMessageLoop
+    public static final int MESSAGE_QUIT_LOOP = 0x0D;
 }
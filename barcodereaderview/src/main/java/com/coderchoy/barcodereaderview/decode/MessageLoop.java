@@ -0,0 +1,69 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * A thread that handles the messages sent to it one at a time, in the order they are due: the part
+ * of a Looper and its Handler the scan pipeline uses. On the device every loop is a
+ * {@link HandlerMessageLoop}; any other implementation runs the pipeline on a plain JVM, without
+ * Android, e.g. to test it on recorded frames.
+ */
+interface MessageLoop {
+
+    /**
+     * Handles the messages of a loop, on its thread.
+     */
+    interface Callback {
+
+        void handleMessage(int what, int arg1, int arg2, Object obj);
+    }
+
+    /**
+     * Starts loops on threads of their own.
+     */
+    interface Factory {
+
+        MessageLoop start(String name, Callback callback);
+    }
+
+    /**
+     * Safe to call from any thread; once the loop has quit the message is dropped.
+     */
+    void send(int what, int arg1, int arg2, Object obj);
+
+    void sendDelayed(int what, long delayMs);
+
+    boolean hasMessages(int what);
+
+    void removeMessages(int what);
+
+    /**
+     * @return whether the calling thread is the one the loop handles its messages on
+     */
+    boolean isLoopThread();
+
+    /**
+     * Stops the loop once the messages already due are handled; delayed ones are dropped.
+     */
+    void quit();
+
+    /**
+     * Waits for the thread of a loop that has quit to end.
+     */
+    void join(long timeoutMs) throws InterruptedException;
+
+}
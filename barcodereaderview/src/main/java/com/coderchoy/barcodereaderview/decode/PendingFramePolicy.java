@@ -0,0 +1,39 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * 所有解码线程都忙时，新到达的预览帧的处理策略
+ */
+public enum PendingFramePolicy {
+
+    /**
+     * 只保留最新的一帧，之前等待中的帧全部丢弃
+     */
+    KEEP_LATEST,
+
+    /**
+     * 有界队列，队列满时丢弃最旧的帧
+     */
+    DROP_OLDEST,
+
+    /**
+     * 有界队列，队列满时丢弃新到达的帧
+     */
+    BOUNDED_QUEUE
+
+}
@@ -0,0 +1,100 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * 帧数据中Y分量（亮度）的排列方式：起始偏移、行距和像素间距，单位均为字节。
+ * <p>
+ * 像素(x, y)位于{@code offset + y * rowStride + x * pixelStride}。NV21、NV12、I420以及只有灰度数据的数组使用
+ * {@link #packed(int)}，Camera的YV12预览帧使用{@link #yv12(int)}，{@code android.media.Image}的平面或
+ * 其他来源使用{@link #of(int, int, int)}。
+ */
+public final class PlaneLayout {
+
+    private static final int YV12_STRIDE_ALIGNMENT = 16;
+
+    private final int offset;
+    private final int rowStride;
+    private final int pixelStride;
+
+    private PlaneLayout(int offset, int rowStride, int pixelStride) {
+        if (offset < 0 || rowStride <= 0 || pixelStride <= 0) {
+            throw new IllegalArgumentException("Bad plane layout: offset " + offset + ", row stride " + rowStride +
+                    ", pixel stride " + pixelStride);
+        }
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.pixelStride = pixelStride;
+    }
+
+    /**
+     * Y分量紧密排列在最前面，如NV21、NV12、I420
+     *
+     * @param width 帧的宽度
+     */
+    public static PlaneLayout packed(int width) {
+        return new PlaneLayout(0, width, 1);
+    }
+
+    /**
+     * {@code ImageFormat.YV12}：Y分量的行距按16字节对齐
+     *
+     * @param width 帧的宽度
+     */
+    public static PlaneLayout yv12(int width) {
+        return new PlaneLayout(0, align(width, YV12_STRIDE_ALIGNMENT), 1);
+    }
+
+    /**
+     * @param offset      第一个像素的偏移
+     * @param rowStride   相邻两行的字节距离
+     * @param pixelStride 同一行相邻两个像素的字节距离
+     */
+    public static PlaneLayout of(int offset, int rowStride, int pixelStride) {
+        return new PlaneLayout(offset, rowStride, pixelStride);
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getRowStride() {
+        return rowStride;
+    }
+
+    public int getPixelStride() {
+        return pixelStride;
+    }
+
+    /**
+     * @return 容纳width x height的Y分量至少需要的字节数，从数据的开头算起
+     */
+    public int getRequiredSize(int width, int height) {
+        return offset + (height - 1) * rowStride + (width - 1) * pixelStride + 1;
+    }
+
+    static int align(int value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    @Override
+    public String toString() {
+        return "PlaneLayout(offset " + offset + ", row stride " + rowStride + ", pixel stride " + pixelStride + ")";
+    }
+
+}
@@ -0,0 +1,309 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.coderchoy.barcodereaderview.util.LogEx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 回放{@link FrameRecorder}记录的帧。记录文件以内存映射的方式读取，每一帧按记录时的分辨率、旋转角度和解码区域交给解码流程。
+ * <p>
+ * <p>默认按记录时的帧间隔回放，与现场一样，解码不及时的帧被丢弃；{@link #setOriginalSpeed(boolean)}设为false时
+ * 则每次请求立即提供下一帧，所有帧按顺序逐一解码，结果可重复，也可用于测量最大吞吐量。
+ */
+public class RecordedFrameSource extends TimedFrameSource {
+
+    private static final String TAG = RecordedFrameSource.class.getSimpleName();
+
+    private static final int DEFAULT_BUFFER_COUNT = 3;
+
+    private final List<RecordedFrame> frames;
+    private final long durationMs;
+    private volatile boolean originalSpeed = true;
+    private volatile boolean looping;
+    private int bufferCount = DEFAULT_BUFFER_COUNT;
+    private int allocatedCount;
+    private final ArrayDeque<byte[]> freeBuffers = new ArrayDeque<>();
+    // Frames handed to the decoder, to look up how each is to be read.
+    private final Map<byte[], FrameRecord> checkedOut = new IdentityHashMap<>();
+    private int nextIndex;
+
+    /**
+     * @param file {@link FrameRecorder}的记录目录，或其中的一段文件
+     * @throws IOException 文件无法读取或其中没有帧
+     */
+    public RecordedFrameSource(File file) throws IOException {
+        this(index(file));
+    }
+
+    private RecordedFrameSource(List<RecordedFrame> frames) {
+        super(frames.get(0).record.getWidth(), frames.get(0).record.getHeight(),
+                PlaneLayout.packed(frames.get(0).record.getWidth()));
+        this.frames = frames;
+        long first = frames.get(0).record.getTimestampNanos();
+        long last = frames.get(frames.size() - 1).record.getTimestampNanos();
+        // One more average frame interval, so a loop does not show its last and first frame at once.
+        this.durationMs = (last - first) / 1000000L * frames.size() / Math.max(1, frames.size() - 1);
+    }
+
+    /**
+     * 是否按记录时的帧间隔回放，默认true。下次{@link #startPreview()}时生效。
+     */
+    public void setOriginalSpeed(boolean originalSpeed) {
+        this.originalSpeed = originalSpeed;
+    }
+
+    /**
+     * 是否在最后一帧之后从头播放，默认false
+     */
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    /**
+     * 设置可同时被解码的帧数，即缓冲区的个数，默认{@value #DEFAULT_BUFFER_COUNT}。在{@link #startPreview()}之前调用。
+     */
+    public synchronized void setBufferCount(int bufferCount) {
+        if (bufferCount <= 0) {
+            throw new IllegalArgumentException("Bad buffer count: " + bufferCount);
+        }
+        this.bufferCount = bufferCount;
+    }
+
+    /**
+     * 记录中的帧数
+     */
+    public int getFrameCount() {
+        return frames.size();
+    }
+
+    /**
+     * 记录中所有帧的拍摄信息和解码结果，按记录顺序
+     */
+    public List<FrameRecord> getFrameRecords() {
+        List<FrameRecord> records = new ArrayList<>(frames.size());
+        for (RecordedFrame frame : frames) {
+            records.add(frame.record);
+        }
+        return Collections.unmodifiableList(records);
+    }
+
+    /**
+     * 读取第index帧的Y分量，紧密排列，大小见{@link #getFrameRecords()}。与回放无关，可在任意线程调用。
+     */
+    public byte[] readFrame(int index) {
+        RecordedFrame frame = frames.get(index);
+        byte[] data = new byte[frame.record.getDataLength()];
+        ByteBuffer view = frame.data.duplicate();
+        view.position(frame.dataOffset);
+        view.get(data);
+        return data;
+    }
+
+    @Override
+    public RotatedPlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height) {
+        FrameRecord record = getCheckedOut(data);
+        if (record == null) {
+            return super.buildLuminanceSource(data, width, height);
+        }
+        return new RotatedPlanarYUVLuminanceSource(data, record.getLayout(), record.getWidth(), record.getHeight(),
+                record.getRotation(), record.getFramingLeft(), record.getFramingTop(),
+                record.getFramingWidth(), record.getFramingHeight());
+    }
+
+    /**
+     * @return 记录时的拍摄信息，因此回放时再次记录的帧与原来的一致
+     */
+    @Override
+    public FrameRecord describeFrame(byte[] data, int width, int height) {
+        FrameRecord record = getCheckedOut(data);
+        return record != null ? record : super.describeFrame(data, width, height);
+    }
+
+    @Override
+    public void releasePreviewBuffer(byte[] data) {
+        synchronized (this) {
+            if (checkedOut.remove(data) == null) {
+                return;
+            }
+            freeBuffers.offer(data);
+        }
+        onFrameAvailable();
+    }
+
+    @Override
+    protected long getFrameTimeMs(long frameIndex) {
+        if (!originalSpeed) {
+            return -1L;
+        }
+        int count = frames.size();
+        long first = frames.get(0).record.getTimestampNanos();
+        long offset = (frames.get((int) (frameIndex % count)).record.getTimestampNanos() - first) / 1000000L;
+        return frameIndex / count * durationMs + offset;
+    }
+
+    @Override
+    protected int getFrameWidth(byte[] frame) {
+        FrameRecord record = getCheckedOut(frame);
+        return record != null ? record.getWidth() : super.getFrameWidth(frame);
+    }
+
+    @Override
+    protected int getFrameHeight(byte[] frame) {
+        FrameRecord record = getCheckedOut(frame);
+        return record != null ? record.getHeight() : super.getFrameHeight(frame);
+    }
+
+    @Override
+    protected boolean hasNextFrame() {
+        return looping || nextIndex < frames.size();
+    }
+
+    @Override
+    protected byte[] nextFrame() {
+        RecordedFrame frame = frames.get(nextIndex % frames.size());
+        byte[] buffer = obtainBuffer(frame.record.getDataLength());
+        if (buffer == null) {
+            if (!isOnDemand()) {
+                // Like a camera with every buffer out, the frame passes by.
+                nextIndex++;
+            }
+            // Otherwise the same frame is offered again once a buffer comes back.
+            return null;
+        }
+        nextIndex++;
+        // Mapped pages are copied on this thread, never on the decoder's.
+        frame.data.position(frame.dataOffset);
+        frame.data.get(buffer, 0, frame.record.getDataLength());
+        synchronized (this) {
+            checkedOut.put(buffer, frame.record);
+        }
+        return buffer;
+    }
+
+    @Override
+    protected void skipFrame() {
+        nextIndex++;
+    }
+
+    private synchronized FrameRecord getCheckedOut(byte[] data) {
+        return checkedOut.get(data);
+    }
+
+    private synchronized byte[] obtainBuffer(int size) {
+        byte[] buffer = freeBuffers.poll();
+        if (buffer == null) {
+            if (allocatedCount >= bufferCount) {
+                return null;
+            }
+            allocatedCount++;
+            return new byte[size];
+        }
+        // The recording changed resolution.
+        return buffer.length == size ? buffer : new byte[size];
+    }
+
+    private static List<RecordedFrame> index(File file) throws IOException {
+        File[] segments = file.isDirectory() ? FrameRecorder.listSegments(file) : new File[]{file};
+        List<RecordedFrame> frames = new ArrayList<>();
+        for (File segment : segments) {
+            indexSegment(segment, frames);
+        }
+        if (frames.isEmpty()) {
+            throw new IOException("No recorded frames in " + file);
+        }
+        return frames;
+    }
+
+    private static void indexSegment(File segment, List<RecordedFrame> frames) throws IOException {
+        ByteBuffer mapped;
+        RandomAccessFile input = new RandomAccessFile(segment, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            // The mapping stays valid once the file is closed.
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        } finally {
+            input.close();
+        }
+        if (mapped.remaining() < FrameRecorder.SEGMENT_HEADER_SIZE ||
+                mapped.getInt() != FrameRecorder.SEGMENT_MAGIC || mapped.getInt() > FrameRecorder.SEGMENT_VERSION) {
+            LogEx.w(TAG, "Not a frame recording: " + segment);
+            return;
+        }
+        mapped.position(FrameRecorder.SEGMENT_HEADER_SIZE);
+        // Read from the producer thread only, through a view of its own.
+        ByteBuffer data = mapped.duplicate();
+        FrameRecord record;
+        while ((record = FrameRecord.readHeader(mapped)) != null) {
+            int dataOffset = mapped.position();
+            if (mapped.remaining() < record.getDataLength()) {
+                // Recording cut short, e.g. the app was killed while writing.
+                LogEx.w(TAG, "Truncated frame at the end of " + segment);
+                return;
+            }
+            mapped.position(dataOffset + record.getDataLength());
+            if (isReadable(record)) {
+                frames.add(new RecordedFrame(record, data, dataOffset));
+            } else {
+                LogEx.w(TAG, "Skipping unreadable frame " + record + " in " + segment);
+            }
+        }
+        if (mapped.hasRemaining()) {
+            LogEx.w(TAG, "Garbage after frame " + frames.size() + " in " + segment);
+        }
+    }
+
+    private static boolean isReadable(FrameRecord record) {
+        int rotation = record.getRotation();
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            return false;
+        }
+        boolean swapped = rotation == 90 || rotation == 270;
+        int rotatedWidth = swapped ? record.getHeight() : record.getWidth();
+        int rotatedHeight = swapped ? record.getWidth() : record.getHeight();
+        return record.getFramingLeft() >= 0 && record.getFramingTop() >= 0 &&
+                record.getFramingWidth() > 0 && record.getFramingHeight() > 0 &&
+                record.getFramingLeft() + record.getFramingWidth() <= rotatedWidth &&
+                record.getFramingTop() + record.getFramingHeight() <= rotatedHeight;
+    }
+
+    private static final class RecordedFrame {
+
+        final FrameRecord record;
+        final ByteBuffer data;
+        final int dataOffset;
+
+        RecordedFrame(FrameRecord record, ByteBuffer data, int dataOffset) {
+            this.record = record;
+            this.data = data;
+            this.dataOffset = dataOffset;
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * Decides per frame whether a half resolution pass runs before the full resolution one. Most
+ * codes filling a good part of a large framing rect read fine at half scale, at a quarter of the
+ * binarization and detection cost.
+ * <p>
+ * The full resolution pass runs only when the small pass failed but reported candidate points,
+ * i.e. a code is probably there but too fine to read, or after {@value #MAX_SMALL_MISSES} frames
+ * in a row on which the small pass alone found nothing. Crops whose shorter side is under
+ * {@value #MIN_SIDE} pixels are always decoded at full resolution.
+ * <p>
+ * 1D readers report no points on failure, so a linear code too fine for half scale would only be
+ * read on every {@value #MAX_SMALL_MISSES}th frame. Once a full pass reads what the small pass
+ * missed, the next {@value #FULL_HOLD_FRAMES} frames therefore skip the small pass, after which it
+ * is probed again. Shared by all decode workers.
+ */
+final class ResolutionPyramid {
+
+    private static final int MIN_SIDE = 400;
+    private static final int MAX_SMALL_MISSES = 4;
+    private static final int FULL_HOLD_FRAMES = 16;
+
+    private int smallMisses;
+    private boolean escalated;
+    private int fullHold;
+    private long smallPassCount;
+    private long smallHitCount;
+    private long fullPassCount;
+    private long fullHitCount;
+
+    /**
+     * @return true if the crop is large enough for the pyramid to decide its resolution
+     */
+    boolean covers(int width, int height) {
+        return Math.min(width, height) >= MIN_SIDE;
+    }
+
+    /**
+     * @return true if the next frame should be tried at half resolution first, false to go
+     * straight to full resolution; only asked for crops the pyramid {@link #covers(int, int)}
+     */
+    synchronized boolean useSmallLevel() {
+        if (fullHold > 0) {
+            fullHold--;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param hit           Whether the small pass found a code.
+     * @param sawCandidates Whether the small pass reported any result point.
+     * @return true if the frame should be decoded again at full resolution
+     */
+    synchronized boolean onSmallPass(boolean hit, boolean sawCandidates) {
+        smallPassCount++;
+        if (hit) {
+            smallHitCount++;
+            smallMisses = 0;
+            return false;
+        }
+        if (sawCandidates || ++smallMisses >= MAX_SMALL_MISSES) {
+            smallMisses = 0;
+            escalated = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param hit Whether the full pass found a code.
+     */
+    synchronized void onFullPass(boolean hit) {
+        fullPassCount++;
+        if (hit) {
+            fullHitCount++;
+            if (escalated) {
+                // Full resolution read what half resolution could not; stay there for a while.
+                fullHold = FULL_HOLD_FRAMES;
+            }
+        }
+        escalated = false;
+    }
+
+    synchronized long getSmallPassCount() {
+        return smallPassCount;
+    }
+
+    synchronized long getSmallHitCount() {
+        return smallHitCount;
+    }
+
+    synchronized long getFullPassCount() {
+        return fullPassCount;
+    }
+
+    synchronized long getFullHitCount() {
+        return fullHitCount;
+    }
+
+}
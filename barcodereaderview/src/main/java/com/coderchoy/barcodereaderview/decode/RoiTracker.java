@@ -0,0 +1,142 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.google.zxing.ResultPoint;
+
+import java.util.List;
+
+/**
+ * Narrows decoding to the part of the framing rect where a code was last seen. The result points
+ * of a frame, decoded or merely candidate finder points, become a region around them with some
+ * margin, and the following frames decode only that region.
+ * <p>
+ * When {@value #MISS_TOLERANCE} frames in a row show nothing in the region it grows by
+ * {@value #GROW_FACTOR} per frame until it covers the framing rect again. Every
+ * {@value #FULL_FRAME_INTERVAL}th frame is decoded whole regardless, so a second code elsewhere,
+ * e.g. while the tracked one is suppressed as a duplicate, is not missed for long.
+ * <p>
+ * All coordinates are relative to the framing rect crop. Shared by all decode workers.
+ */
+final class RoiTracker {
+
+    private static final int MIN_POINTS = 2;
+    private static final int MISS_TOLERANCE = 2;
+    private static final float GROW_FACTOR = 1.5f;
+    private static final int FULL_FRAME_INTERVAL = 10;
+    // Below this saving the crop is not worth it.
+    private static final float MAX_AREA_RATIO = 0.6f;
+    // A region is never narrower than this fraction of the crop's shorter side.
+    private static final int MIN_SIZE_DIVISOR = 4;
+
+    private int width;
+    private int height;
+    private CropRegion region;
+    private int misses;
+    private long frameCount;
+
+    /**
+     * @param width  Width of the framing rect crop of the coming frame.
+     * @param height Height of the framing rect crop of the coming frame.
+     * @return the region to decode, or null for the whole crop
+     */
+    synchronized CropRegion nextRegion(int width, int height) {
+        if (width != this.width || height != this.height) {
+            // The framing rect changed, old coordinates mean nothing.
+            this.width = width;
+            this.height = height;
+            reset();
+        }
+        frameCount++;
+        if (region == null || frameCount % FULL_FRAME_INTERVAL == 0) {
+            return null;
+        }
+        return region;
+    }
+
+    /**
+     * @param decodedRegion The region that was decoded, as returned by {@link #nextRegion(int, int)}.
+     * @param points        Result points found in it, relative to the crop.
+     * @return whether the tracked region was given up with this frame, having grown back to the whole crop
+     */
+    synchronized boolean update(CropRegion decodedRegion, List<ResultPoint> points) {
+        if (points.size() >= MIN_POINTS) {
+            region = fit(points);
+            misses = 0;
+            return false;
+        }
+        if (region == null || decodedRegion == null) {
+            // Nothing tracked, or a whole-crop frame that says nothing about the region.
+            return false;
+        }
+        if (++misses >= MISS_TOLERANCE) {
+            grow();
+            return region == null;
+        }
+        return false;
+    }
+
+    synchronized void reset() {
+        region = null;
+        misses = 0;
+    }
+
+    private CropRegion fit(List<ResultPoint> points) {
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (ResultPoint point : points) {
+            minX = Math.min(minX, point.getX());
+            minY = Math.min(minY, point.getY());
+            maxX = Math.max(maxX, point.getX());
+            maxY = Math.max(maxY, point.getY());
+        }
+        // Linear codes report points on a line only, so the margin follows the longer side.
+        float margin = Math.max(maxX - minX, maxY - minY) / 2;
+        int minHalf = Math.min(width, height) / (2 * MIN_SIZE_DIVISOR);
+        int halfWidth = Math.max((int) ((maxX - minX) / 2 + margin), minHalf);
+        int halfHeight = Math.max((int) ((maxY - minY) / 2 + margin), minHalf);
+        int centerX = (int) ((minX + maxX) / 2);
+        int centerY = (int) ((minY + maxY) / 2);
+        return clamp(centerX - halfWidth, centerY - halfHeight, centerX + halfWidth, centerY + halfHeight);
+    }
+
+    private void grow() {
+        int halfWidth = (int) (region.width * GROW_FACTOR / 2);
+        int halfHeight = (int) (region.height * GROW_FACTOR / 2);
+        int centerX = region.centerX();
+        int centerY = region.centerY();
+        region = clamp(centerX - halfWidth, centerY - halfHeight, centerX + halfWidth, centerY + halfHeight);
+    }
+
+    /**
+     * @return the rectangle clipped to the crop, or null if that leaves too little to gain
+     */
+    private CropRegion clamp(int left, int top, int right, int bottom) {
+        left = Math.max(0, left);
+        top = Math.max(0, top);
+        right = Math.min(width, right);
+        bottom = Math.min(height, bottom);
+        if (right <= left || bottom <= top || (float) (right - left) * (bottom - top) > MAX_AREA_RATIO * width * height) {
+            misses = 0;
+            return null;
+        }
+        return new CropRegion(left, top, right - left, bottom - top);
+    }
+
+}
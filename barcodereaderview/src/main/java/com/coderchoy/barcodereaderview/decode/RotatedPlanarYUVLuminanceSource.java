@@ -0,0 +1,295 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.google.zxing.LuminanceSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link com.google.zxing.PlanarYUVLuminanceSource} that reads the Y plane of an unrotated
+ * preview frame as if it had been rotated clockwise by 0, 90, 180 or 270 degrees. Only the crop
+ * is ever read, and the rotation is applied through index arithmetic, so no rotated copy of the
+ * frame is made.
+ * <p>
+ * The plane is read in place from a byte array or a heap or direct {@link ByteBuffer}, laid out as
+ * described by a {@link PlaneLayout}, so padded rows, interleaved pixels and frames inside a larger
+ * buffer need no packing copy either. A direct buffer is read through a private view of it; like
+ * any LuminanceSource, a source and those derived from it belong to one thread at a time.
+ * <p>
+ * Each pixel (x, y) of this source lives at {@code origin + (x * xStep + y * yStep) * sampleSize}
+ * in the data. A {@link #downsample()}d source has a sample size above 1 and averages each pixel
+ * over the 2x2 block starting there.
+ */
+public final class RotatedPlanarYUVLuminanceSource extends LuminanceSource {
+
+    private static final int THUMBNAIL_SCALE_FACTOR = 2;
+
+    // Exactly one of the two is set; a heap ByteBuffer is read through its array.
+    private final byte[] yuvData;
+    private final ByteBuffer buffer;
+    private final int origin;
+    private final int xStep;
+    private final int yStep;
+    private final int sampleSize;
+
+    /**
+     * @param yuvData    The unrotated frame, Y plane first and packed (NV21, NV12, I420, ...).
+     * @param dataWidth  Width of the unrotated frame.
+     * @param dataHeight Height of the unrotated frame.
+     * @param rotation   Clockwise rotation to apply: 0, 90, 180 or 270.
+     * @param left       Left of the crop, in rotated coordinates.
+     * @param top        Top of the crop, in rotated coordinates.
+     * @param width      Width of the crop.
+     * @param height     Height of the crop.
+     */
+    public RotatedPlanarYUVLuminanceSource(byte[] yuvData, int dataWidth, int dataHeight, int rotation,
+                                           int left, int top, int width, int height) {
+        this(yuvData, PlaneLayout.packed(dataWidth), dataWidth, dataHeight, rotation, left, top, width, height);
+    }
+
+    /**
+     * @param yuvData The unrotated frame.
+     * @param layout  Where the Y plane lies in yuvData.
+     * @see #RotatedPlanarYUVLuminanceSource(byte[], int, int, int, int, int, int, int)
+     */
+    public RotatedPlanarYUVLuminanceSource(byte[] yuvData, PlaneLayout layout, int dataWidth, int dataHeight,
+                                           int rotation, int left, int top, int width, int height) {
+        this(yuvData, null, 0, yuvData.length, layout, dataWidth, dataHeight, rotation, left, top, width, height);
+    }
+
+    /**
+     * @param buffer The unrotated frame, read from its position on; position and limit are left alone.
+     * @param layout Where the Y plane lies in the buffer, relative to its position.
+     * @see #RotatedPlanarYUVLuminanceSource(byte[], int, int, int, int, int, int, int)
+     */
+    public RotatedPlanarYUVLuminanceSource(ByteBuffer buffer, PlaneLayout layout, int dataWidth, int dataHeight,
+                                           int rotation, int left, int top, int width, int height) {
+        this(buffer.hasArray() ? buffer.array() : null, buffer.hasArray() ? null : buffer.duplicate(),
+                buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : buffer.position(),
+                buffer.remaining(), layout, dataWidth, dataHeight, rotation, left, top, width, height);
+    }
+
+    private RotatedPlanarYUVLuminanceSource(byte[] yuvData, ByteBuffer buffer, int base, int available,
+                                            PlaneLayout layout, int dataWidth, int dataHeight, int rotation,
+                                            int left, int top, int width, int height) {
+        super(width, height);
+
+        boolean swapped = rotation == 90 || rotation == 270;
+        int rotatedWidth = swapped ? dataHeight : dataWidth;
+        int rotatedHeight = swapped ? dataWidth : dataHeight;
+        if (left < 0 || top < 0 || left + width > rotatedWidth || top + height > rotatedHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        if (layout.getRequiredSize(dataWidth, dataHeight) > available) {
+            throw new IllegalArgumentException("Image data too small for " + dataWidth + "x" + dataHeight +
+                    " with " + layout);
+        }
+
+        this.yuvData = yuvData;
+        this.buffer = buffer;
+        int rowStride = layout.getRowStride();
+        int pixelStride = layout.getPixelStride();
+        base += layout.getOffset();
+        switch (rotation) {
+            case 0:
+                origin = base + top * rowStride + left * pixelStride;
+                xStep = pixelStride;
+                yStep = rowStride;
+                break;
+            case 90:
+                origin = base + (dataHeight - 1 - left) * rowStride + top * pixelStride;
+                xStep = -rowStride;
+                yStep = pixelStride;
+                break;
+            case 180:
+                origin = base + (dataHeight - 1 - top) * rowStride + (dataWidth - 1 - left) * pixelStride;
+                xStep = -pixelStride;
+                yStep = -rowStride;
+                break;
+            case 270:
+                origin = base + left * rowStride + (dataWidth - 1 - top) * pixelStride;
+                xStep = rowStride;
+                yStep = -pixelStride;
+                break;
+            default:
+                throw new IllegalArgumentException("Bad rotation: " + rotation);
+        }
+        sampleSize = 1;
+    }
+
+    private RotatedPlanarYUVLuminanceSource(byte[] yuvData, ByteBuffer buffer, int origin, int xStep, int yStep,
+                                            int sampleSize, int width, int height) {
+        super(width, height);
+        this.yuvData = yuvData;
+        this.buffer = buffer;
+        this.origin = origin;
+        this.xStep = xStep;
+        this.yStep = yStep;
+        this.sampleSize = sampleSize;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        readRow(origin + y * yStep * sampleSize, row, 0, width);
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        int width = getWidth();
+        int height = getHeight();
+        byte[] matrix = new byte[width * height];
+        int inputOffset = origin;
+        int rowStep = yStep * sampleSize;
+        for (int y = 0; y < height; y++) {
+            readRow(inputOffset, matrix, y * width, width);
+            inputOffset += rowStep;
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public RotatedPlanarYUVLuminanceSource crop(int left, int top, int width, int height) {
+        if (left < 0 || top < 0 || left + width > getWidth() || top + height > getHeight()) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        return new RotatedPlanarYUVLuminanceSource(yuvData, buffer, origin + (left * xStep + top * yStep) * sampleSize,
+                xStep, yStep, sampleSize, width, height);
+    }
+
+    @Override
+    public boolean isRotateSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource rotateCounterClockwise() {
+        // New (x, y) is old (width - 1 - y, x). Anchor on the last frame column so 2x2 blocks stay aligned.
+        return new RotatedPlanarYUVLuminanceSource(yuvData, buffer, origin + (getWidth() * sampleSize - 1) * xStep,
+                yStep, -xStep, sampleSize, getHeight(), getWidth());
+    }
+
+    /**
+     * @return this source at half the resolution, each pixel the mean of a 2x2 block; nothing is copied
+     */
+    public RotatedPlanarYUVLuminanceSource downsample() {
+        return new RotatedPlanarYUVLuminanceSource(yuvData, buffer, origin, xStep, yStep, sampleSize * 2,
+                getWidth() / 2, getHeight() / 2);
+    }
+
+    /**
+     * @return luminance of pixel (x, y) of the crop, 0-255; no bounds checking
+     */
+    public int getLuminance(int x, int y) {
+        int index = origin + (x * xStep + y * yStep) * sampleSize;
+        if (sampleSize == 1) {
+            return get(index) & 0xff;
+        }
+        return blockAverage(index);
+    }
+
+    /**
+     * @return the crop downscaled by {@value #THUMBNAIL_SCALE_FACTOR}, one luminance byte per pixel
+     */
+    public byte[] renderThumbnailLuminance() {
+        int width = getThumbnailWidth();
+        int height = getThumbnailHeight();
+        byte[] pixels = new byte[width * height];
+        int xThumbStep = xStep * sampleSize * THUMBNAIL_SCALE_FACTOR;
+        int yThumbStep = yStep * sampleSize * THUMBNAIL_SCALE_FACTOR;
+        int inputOffset = origin;
+        for (int y = 0; y < height; y++) {
+            int outputOffset = y * width;
+            int index = inputOffset;
+            for (int x = 0; x < width; x++) {
+                pixels[outputOffset + x] = get(index);
+                index += xThumbStep;
+            }
+            inputOffset += yThumbStep;
+        }
+        return pixels;
+    }
+
+    /**
+     * @return width of image from {@link #renderThumbnailLuminance()}
+     */
+    public int getThumbnailWidth() {
+        return getWidth() / THUMBNAIL_SCALE_FACTOR;
+    }
+
+    /**
+     * @return height of image from {@link #renderThumbnailLuminance()}
+     */
+    public int getThumbnailHeight() {
+        return getHeight() / THUMBNAIL_SCALE_FACTOR;
+    }
+
+    private void readRow(int inputOffset, byte[] output, int outputOffset, int width) {
+        if (sampleSize == 1 && xStep == 1) {
+            if (yuvData != null) {
+                System.arraycopy(yuvData, inputOffset, output, outputOffset, width);
+            } else {
+                buffer.position(inputOffset);
+                buffer.get(output, outputOffset, width);
+            }
+            return;
+        }
+        int index = inputOffset;
+        if (sampleSize == 1) {
+            if (yuvData != null) {
+                for (int x = 0; x < width; x++) {
+                    output[outputOffset + x] = yuvData[index];
+                    index += xStep;
+                }
+            } else {
+                for (int x = 0; x < width; x++) {
+                    output[outputOffset + x] = buffer.get(index);
+                    index += xStep;
+                }
+            }
+            return;
+        }
+        int step = xStep * sampleSize;
+        for (int x = 0; x < width; x++) {
+            output[outputOffset + x] = (byte) blockAverage(index);
+            index += step;
+        }
+    }
+
+    private int blockAverage(int index) {
+        return ((get(index) & 0xff) + (get(index + xStep) & 0xff) +
+                (get(index + yStep) & 0xff) + (get(index + xStep + yStep) & 0xff) + 2) >> 2;
+    }
+
+    private byte get(int index) {
+        return yuvData != null ? yuvData[index] : buffer.get(index);
+    }
+
+}
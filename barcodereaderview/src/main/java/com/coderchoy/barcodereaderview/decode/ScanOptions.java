@@ -0,0 +1,216 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * Tuning options of the scanning pipeline, set on {@link BarcodeReaderView} and copied when a
+ * {@link BarcodeReaderHandler} is created, so changes take effect on the next onResume().
+ */
+final class ScanOptions {
+
+    private int decodeWorkerCount = 1;
+    private PendingFramePolicy pendingFramePolicy = PendingFramePolicy.KEEP_LATEST;
+    private int pendingFrameCapacity = 1;
+    private boolean pipelinedDecode;
+    private boolean continuousScan;
+    private long duplicateTtlMs;
+    private boolean decodeMultiple;
+    private boolean thumbnailEnabled = true;
+    private boolean roiTracking;
+    private boolean frameQualityGate;
+    private BinarizerStrategy binarizerStrategy = BinarizerStrategy.HYBRID;
+    private boolean resolutionPyramid;
+    private long frameBudgetMs;
+    private long stallTimeoutMs;
+    private boolean adaptiveFrameRate;
+    private boolean adaptiveFrameSize;
+    // Shared by the copies: the statistics outlive the sessions they are gathered in.
+    private FormatScheduler formatScheduler;
+    private FrameRecorder frameRecorder;
+
+    ScanOptions() {
+    }
+
+    ScanOptions(ScanOptions other) {
+        this.decodeWorkerCount = other.decodeWorkerCount;
+        this.pendingFramePolicy = other.pendingFramePolicy;
+        this.pendingFrameCapacity = other.pendingFrameCapacity;
+        this.pipelinedDecode = other.pipelinedDecode;
+        this.continuousScan = other.continuousScan;
+        this.duplicateTtlMs = other.duplicateTtlMs;
+        this.decodeMultiple = other.decodeMultiple;
+        this.thumbnailEnabled = other.thumbnailEnabled;
+        this.roiTracking = other.roiTracking;
+        this.frameQualityGate = other.frameQualityGate;
+        this.binarizerStrategy = other.binarizerStrategy;
+        this.resolutionPyramid = other.resolutionPyramid;
+        this.frameBudgetMs = other.frameBudgetMs;
+        this.stallTimeoutMs = other.stallTimeoutMs;
+        this.adaptiveFrameRate = other.adaptiveFrameRate;
+        this.adaptiveFrameSize = other.adaptiveFrameSize;
+        this.formatScheduler = other.formatScheduler;
+        this.frameRecorder = other.frameRecorder;
+    }
+
+    int getDecodeWorkerCount() {
+        return decodeWorkerCount;
+    }
+
+    void setDecodeWorkerCount(int decodeWorkerCount) {
+        this.decodeWorkerCount = decodeWorkerCount;
+    }
+
+    PendingFramePolicy getPendingFramePolicy() {
+        return pendingFramePolicy;
+    }
+
+    int getPendingFrameCapacity() {
+        return pendingFrameCapacity;
+    }
+
+    void setPendingFramePolicy(PendingFramePolicy pendingFramePolicy, int pendingFrameCapacity) {
+        this.pendingFramePolicy = pendingFramePolicy;
+        this.pendingFrameCapacity = pendingFrameCapacity;
+    }
+
+    boolean isPipelinedDecode() {
+        return pipelinedDecode;
+    }
+
+    void setPipelinedDecode(boolean pipelinedDecode) {
+        this.pipelinedDecode = pipelinedDecode;
+    }
+
+    boolean isContinuousScan() {
+        return continuousScan;
+    }
+
+    long getDuplicateTtlMs() {
+        return duplicateTtlMs;
+    }
+
+    void setContinuousScan(boolean continuousScan, long duplicateTtlMs) {
+        this.continuousScan = continuousScan;
+        this.duplicateTtlMs = duplicateTtlMs;
+    }
+
+    boolean isDecodeMultiple() {
+        return decodeMultiple;
+    }
+
+    void setDecodeMultiple(boolean decodeMultiple) {
+        this.decodeMultiple = decodeMultiple;
+    }
+
+    boolean isThumbnailEnabled() {
+        return thumbnailEnabled;
+    }
+
+    void setThumbnailEnabled(boolean thumbnailEnabled) {
+        this.thumbnailEnabled = thumbnailEnabled;
+    }
+
+    boolean isRoiTracking() {
+        return roiTracking;
+    }
+
+    void setRoiTracking(boolean roiTracking) {
+        this.roiTracking = roiTracking;
+    }
+
+    boolean isFrameQualityGate() {
+        return frameQualityGate;
+    }
+
+    void setFrameQualityGate(boolean frameQualityGate) {
+        this.frameQualityGate = frameQualityGate;
+    }
+
+    BinarizerStrategy getBinarizerStrategy() {
+        return binarizerStrategy;
+    }
+
+    void setBinarizerStrategy(BinarizerStrategy binarizerStrategy) {
+        this.binarizerStrategy = binarizerStrategy;
+    }
+
+    boolean isResolutionPyramid() {
+        return resolutionPyramid;
+    }
+
+    void setResolutionPyramid(boolean resolutionPyramid) {
+        this.resolutionPyramid = resolutionPyramid;
+    }
+
+    /**
+     * @return time after which a frame's remaining decode passes are skipped, 0 for no limit
+     */
+    long getFrameBudgetMs() {
+        return frameBudgetMs;
+    }
+
+    /**
+     * @return time after which a busy worker is considered stuck and replaced, 0 for no watchdog
+     */
+    long getStallTimeoutMs() {
+        return stallTimeoutMs;
+    }
+
+    void setDecodeDeadline(long frameBudgetMs, long stallTimeoutMs) {
+        this.frameBudgetMs = frameBudgetMs;
+        this.stallTimeoutMs = stallTimeoutMs;
+    }
+
+    boolean isAdaptiveFrameRate() {
+        return adaptiveFrameRate;
+    }
+
+    /**
+     * @return whether the adaptive frame rate may also step the frame size down
+     */
+    boolean isAdaptiveFrameSize() {
+        return adaptiveFrameSize;
+    }
+
+    void setAdaptiveFrameRate(boolean adaptiveFrameRate, boolean adaptiveFrameSize) {
+        this.adaptiveFrameRate = adaptiveFrameRate;
+        this.adaptiveFrameSize = adaptiveFrameSize;
+    }
+
+    /**
+     * @return the scheduler ordering the format readers, or null to run them all in a fixed order
+     */
+    FormatScheduler getFormatScheduler() {
+        return formatScheduler;
+    }
+
+    void setFormatScheduler(FormatScheduler formatScheduler) {
+        this.formatScheduler = formatScheduler;
+    }
+
+    /**
+     * @return the recorder frames are copied to, or null
+     */
+    FrameRecorder getFrameRecorder() {
+        return frameRecorder;
+    }
+
+    void setFrameRecorder(FrameRecorder frameRecorder) {
+        this.frameRecorder = frameRecorder;
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2008 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ResultPointCallback;
+
+import java.util.Collection;
+import java.util.Map;
+
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_DECODE_FAILED;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_DECODE_MULTIPLE_SUCCEEDED;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_DECODE_SUCCEEDED;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_RESTART_PREVIEW;
+
+
+/**
+ * This class handles all the messaging which comprises the state machine for capture. While in
+ * PREVIEW several frames may be decoded at once by the {@link DecodeWorkerPool}; the first result
+ * moves to SUCCESS and the others are suppressed. In continuous mode it stays in PREVIEW and keeps
+ * delivering new codes.
+ * <p>
+ * It runs on the scan loop, the main thread on the device through {@link BarcodeReaderHandler}, and
+ * knows nothing of the View: codes go to a {@link ScanResultSink}.
+ *
+ * @author dswitkin@google.com (Daniel Switkin)
+ *         <p>
+ *         Modified by CoderChoy on 2017/03/14
+ */
+final class ScanStateMachine implements MessageLoop.Callback {
+
+    private final ScanResultSink resultSink;
+    private final DecodeWorkerPool workerPool;
+    private final ScanOptions options;
+    private State state;
+    private final FrameSource frameSource;
+    private final StartupTracker startupTracker;
+    private boolean started;
+    // When the user started aiming: scanning began, or in continuous mode the last code was delivered.
+    private long aimingSinceNanos;
+
+    private enum State {
+        PREVIEW,
+        SUCCESS,
+        DONE
+    }
+
+    /**
+     * @param scanLoop    The loop this state machine is the callback of; the workers send their
+     *                    outcomes there.
+     * @param loopFactory Starts the loops of the decode workers.
+     */
+    ScanStateMachine(MessageLoop scanLoop,
+                     MessageLoop.Factory loopFactory,
+                     ScanResultSink resultSink,
+                     Collection<BarcodeFormat> decodeFormats,
+                     Map<DecodeHintType, ?> baseHints,
+                     String characterSet,
+                     ResultPointCallback resultPointCallback,
+                     FrameSource frameSource,
+                     ScanOptions options,
+                     StartupTracker startupTracker) {
+        this.resultSink = resultSink;
+        this.options = new ScanOptions(options);
+        this.startupTracker = startupTracker;
+        workerPool = new DecodeWorkerPool(scanLoop, loopFactory, frameSource, decodeFormats, baseHints,
+                characterSet, resultPointCallback, this.options, startupTracker);
+        workerPool.start();
+        startupTracker.mark(StartupStep.DECODER_READY);
+        state = State.SUCCESS;
+        this.frameSource = frameSource;
+    }
+
+    /**
+     * Starts capturing previews and decoding. Separate from construction so the decode threads can
+     * be set up while the camera is still opening.
+     */
+    void start() {
+        if (started || state == State.DONE) {
+            return;
+        }
+        started = true;
+        frameSource.startPreview();
+        startupTracker.mark(StartupStep.PREVIEW_STARTED);
+        restartPreviewAndDecode();
+    }
+
+    @Override
+    public void handleMessage(int what, int arg1, int arg2, Object obj) {
+        switch (what) {
+            case MESSAGE_RESTART_PREVIEW:
+                if (started) {
+                    restartPreviewAndDecode();
+                }
+                break;
+            case MESSAGE_DECODE_SUCCEEDED:
+            case MESSAGE_DECODE_MULTIPLE_SUCCEEDED:
+                if (state != State.PREVIEW) {
+                    // Several frames may be in flight; only the first result counts.
+                    break;
+                }
+                if (options.isContinuousScan()) {
+                    // Keep scanning; workers only report codes not seen within the time-to-live.
+                    if (!options.isPipelinedDecode()) {
+                        workerPool.requestFrame();
+                    }
+                } else {
+                    state = State.SUCCESS;
+                    workerPool.cancel();
+                }
+                DecodeResult decodeResult = (DecodeResult) obj;
+                long now = System.nanoTime();
+                workerPool.recordLatency(DecodeStage.DISPATCH, now - decodeResult.getPostedNanos());
+                workerPool.recordLatency(DecodeStage.END_TO_END, now - aimingSinceNanos);
+                aimingSinceNanos = now;
+                startupTracker.mark(StartupStep.FIRST_RESULT);
+                if (what == MESSAGE_DECODE_MULTIPLE_SUCCEEDED) {
+                    resultSink.handleDecodeMultiple(decodeResult.getResults(), decodeResult.getThumbnail());
+                } else {
+                    resultSink.handleDecode(decodeResult.getResults()[0], decodeResult.getThumbnail());
+                }
+                break;
+            case MESSAGE_DECODE_FAILED:
+                // We're decoding as fast as possible, so when one decode fails, start another.
+                if (state == State.PREVIEW) {
+                    workerPool.requestFrame();
+                }
+                break;
+        }
+    }
+
+    DecodePipelineStats getDecodePipelineStats() {
+        return workerPool.getStats();
+    }
+
+    DecodeStageStats getDecodeStageStats() {
+        return workerPool.getStageStats();
+    }
+
+    FrameQuality getLastFrameQuality() {
+        FrameQualityGate frameQualityGate = workerPool.getTuning().getFrameQualityGate();
+        return frameQualityGate == null ? null : frameQualityGate.getLastQuality();
+    }
+
+    /**
+     * Stops the preview and the workers. Outcomes still queued on the scan loop are ignored, but the
+     * owner of the loop should remove them.
+     */
+    void quitSynchronously() {
+        state = State.DONE;
+        frameSource.stopPreview();
+        workerPool.quitSynchronously();
+    }
+
+    private void restartPreviewAndDecode() {
+        if (state == State.SUCCESS) {
+            state = State.PREVIEW;
+            aimingSinceNanos = System.nanoTime();
+            workerPool.resume();
+            workerPool.requestFrame();
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import java.util.Locale;
+
+/**
+ * 解码流程中某一步耗时的分布，见{@link DecodeStageStats#getLatency(DecodeStage)}。
+ * <p>
+ * <p>耗时按对数分段统计，百分位数的误差在八分之一以内。
+ */
+public final class StageLatency {
+
+    private final long[] counts;
+    private final long count;
+    private final long totalMicros;
+    private final long maxMicros;
+
+    StageLatency(long[] counts, long totalMicros, long maxMicros) {
+        long count = 0L;
+        for (long c : counts) {
+            count += c;
+        }
+        this.counts = counts;
+        this.count = count;
+        this.totalMicros = totalMicros;
+        this.maxMicros = maxMicros;
+    }
+
+    /**
+     * 统计的次数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 平均耗时（毫秒），没有统计时为0
+     */
+    public float getMeanMs() {
+        return count == 0L ? 0f : totalMicros / 1000f / count;
+    }
+
+    /**
+     * 最长耗时（毫秒）
+     */
+    public float getMaxMs() {
+        return maxMicros / 1000f;
+    }
+
+    /**
+     * @param percentile 百分位，0~100，例如50为中位数、99为最慢的1%的起点
+     * @return 该百分位的耗时（毫秒），没有统计时为0
+     */
+    public float getPercentileMs(double percentile) {
+        if (count == 0L) {
+            return 0f;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * count));
+        long seen = 0L;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                // The middle of the bucket, never beyond the slowest value actually seen.
+                long lower = LatencyHistogram.lowerBoundOf(bucket);
+                return Math.min(lower + (LatencyHistogram.widthOf(bucket) - 1) / 2f, maxMicros) / 1000f;
+            }
+        }
+        return getMaxMs();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "{n=%d, mean=%.2fms, p50=%.2fms, p90=%.2fms, p99=%.2fms, max=%.2fms}",
+                count, getMeanMs(), getPercentileMs(50), getPercentileMs(90), getPercentileMs(99), getMaxMs());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+/**
+ * 启动扫描过程中的各个节点，见{@link StartupTimeline}
+ */
+public enum StartupStep {
+
+    /**
+     * 相机已打开
+     */
+    CAMERA_OPENED,
+
+    /**
+     * 相机参数已设置、已绑定预览Surface
+     */
+    CAMERA_CONFIGURED,
+
+    /**
+     * 预览Surface已创建；onResume之前已存在时为开始扫描的时刻
+     */
+    SURFACE_READY,
+
+    /**
+     * 解码线程已启动
+     */
+    DECODER_READY,
+
+    /**
+     * 相机开始预览
+     */
+    PREVIEW_STARTED,
+
+    /**
+     * 第一帧预览画面送达解码器
+     */
+    FIRST_FRAME,
+
+    /**
+     * 第一帧解码完成，无论是否识别出条形码
+     */
+    FIRST_DECODE,
+
+    /**
+     * 第一次回调识别结果
+     */
+    FIRST_RESULT
+
+}
@@ -0,0 +1,67 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import java.util.Locale;
+
+/**
+ * 启动扫描的时间线：从{@link BarcodeReaderView#onResume()}开始到各个节点所用的时间，用于找出启动慢的原因。
+ * <p>
+ * <p>相机在后台线程打开和设置，同时主线程创建预览Surface、启动解码线程，所以各节点的时间可能交错。
+ */
+public final class StartupTimeline {
+
+    private final long[] stepNanos;
+
+    StartupTimeline(long[] stepNanos) {
+        this.stepNanos = stepNanos;
+    }
+
+    /**
+     * 从开始扫描到某一节点的时间（毫秒），尚未到达时返回-1
+     */
+    public float getTimeMs(StartupStep step) {
+        long nanos = stepNanos[step.ordinal()];
+        return nanos < 0L ? -1f : nanos / 1000000f;
+    }
+
+    /**
+     * 是否已到达某一节点
+     */
+    public boolean isReached(StartupStep step) {
+        return stepNanos[step.ordinal()] >= 0L;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("StartupTimeline{");
+        for (StartupStep step : StartupStep.values()) {
+            if (step.ordinal() > 0) {
+                builder.append(", ");
+            }
+            builder.append(step).append('=');
+            if (isReached(step)) {
+                builder.append(String.format(Locale.US, "%.1fms", getTimeMs(step)));
+            } else {
+                builder.append('-');
+            }
+        }
+        return builder.append('}').toString();
+    }
+}
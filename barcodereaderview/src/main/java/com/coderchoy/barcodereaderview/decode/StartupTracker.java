@@ -0,0 +1,58 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records when each {@link StartupStep} is first reached, relative to the moment scanning was
+ * started. Marked from the main, camera, dispatch and decode threads; only the first mark of a
+ * step counts, so the per-frame marks cost one read once startup is over.
+ */
+final class StartupTracker {
+
+    private static final long UNSET = -1L;
+
+    private final long startNanos;
+    private final AtomicLongArray stepNanos;
+
+    StartupTracker() {
+        startNanos = System.nanoTime();
+        stepNanos = new AtomicLongArray(StartupStep.values().length);
+        for (int i = 0; i < stepNanos.length(); i++) {
+            stepNanos.set(i, UNSET);
+        }
+    }
+
+    void mark(StartupStep step) {
+        int index = step.ordinal();
+        if (stepNanos.get(index) == UNSET) {
+            stepNanos.compareAndSet(index, UNSET, System.nanoTime() - startNanos);
+        }
+    }
+
+    StartupTimeline snapshot() {
+        long[] nanos = new long[stepNanos.length()];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = stepNanos.get(i);
+        }
+        return new StartupTimeline(nanos);
+    }
+
+}
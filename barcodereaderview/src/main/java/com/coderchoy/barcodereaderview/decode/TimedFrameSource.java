@@ -0,0 +1,329 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.decode;
+
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_NEXT_FRAME;
+import static com.coderchoy.barcodereaderview.decode.MessageId.MESSAGE_QUIT;
+
+/**
+ * 按时间产生帧的{@link FrameSource}，用于在没有相机的环境中驱动扫码流程、测量吞吐量和延迟。
+ * <p>
+ * <p>与相机一样，帧按设定的帧率（或子类给出的时间，见{@link #getFrameTimeMs(long)}）到来，到来时没有请求等待的帧被丢弃；
+ * 帧率为0时则在每次请求时立即提供下一帧，用于测量流水线的最大吞吐量。帧在单独的线程中准备，请求和归还可以在任意线程进行。
+ */
+public abstract class TimedFrameSource implements FrameSource {
+
+    private final int width;
+    private final int height;
+    private final PlaneLayout layout;
+    private volatile int rotation;
+    private volatile int cropLeft;
+    private volatile int cropTop;
+    private volatile int cropWidth;
+    private volatile int cropHeight;
+    private volatile float frameRate;
+
+    private MessageLoop.Factory loopFactory = HandlerMessageLoop.FACTORY;
+    private MessageLoop producer;
+    private boolean onDemand;
+    // The request waiting for the next frame, like the callback of a camera preview.
+    private FrameCallback consumer;
+    private volatile boolean finished;
+    private volatile long deliveredFrameCount;
+    private volatile long droppedFrameCount;
+
+    /**
+     * @param width  帧的宽度
+     * @param height 帧的高度
+     * @param layout Y分量在帧中的排列方式
+     */
+    protected TimedFrameSource(int width, int height, PlaneLayout layout) {
+        this.width = width;
+        this.height = height;
+        this.layout = layout;
+    }
+
+    /**
+     * 设置帧率，0表示按请求立即提供帧。下次{@link #startPreview()}时生效。
+     */
+    public void setFrameRate(float frameRate) {
+        if (frameRate < 0f) {
+            throw new IllegalArgumentException("Negative frame rate: " + frameRate);
+        }
+        this.frameRate = frameRate;
+    }
+
+    /**
+     * 设置解码前将帧顺时针旋转的角度：0、90、180或270，默认0
+     */
+    public void setRotation(int rotation) {
+        if (rotation % 90 != 0 || rotation < 0 || rotation >= 360) {
+            throw new IllegalArgumentException("Bad rotation: " + rotation);
+        }
+        this.rotation = rotation;
+    }
+
+    /**
+     * 设置解码区域，坐标为旋转之后的坐标。默认解码整帧。
+     */
+    public void setFramingRect(int left, int top, int width, int height) {
+        cropLeft = left;
+        cropTop = top;
+        cropWidth = width;
+        cropHeight = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 已发送给解码流程的帧数
+     */
+    public long getDeliveredFrameCount() {
+        return deliveredFrameCount;
+    }
+
+    /**
+     * 到来时没有请求等待而被丢弃的帧数
+     */
+    public long getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    /**
+     * 所有帧是否都已产生完毕
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Where the frames are prepared; a Looper thread unless the pipeline runs off the device.
+     */
+    synchronized void setMessageLoopFactory(MessageLoop.Factory loopFactory) {
+        this.loopFactory = loopFactory;
+    }
+
+    @Override
+    public synchronized void startPreview() {
+        if (producer != null) {
+            return;
+        }
+        onDemand = isOnDemand();
+        ProducerCallback callback = new ProducerCallback(onDemand);
+        producer = loopFactory.start(getClass().getSimpleName(), callback);
+        callback.loop = producer;
+        if (!onDemand || consumer != null) {
+            producer.send(MESSAGE_NEXT_FRAME, 0, 0, null);
+        }
+    }
+
+    @Override
+    public synchronized void stopPreview() {
+        consumer = null;
+        if (producer != null) {
+            producer.removeMessages(MESSAGE_NEXT_FRAME);
+            // Let a frame being prepared finish before the subclass lets go of its resources.
+            producer.send(MESSAGE_QUIT, 0, 0, null);
+            producer.quit();
+            producer = null;
+        }
+    }
+
+    @Override
+    public synchronized void requestPreviewFrame(FrameCallback callback) {
+        consumer = callback;
+        if (producer != null && onDemand) {
+            producer.send(MESSAGE_NEXT_FRAME, 0, 0, null);
+        }
+    }
+
+    @Override
+    public void releasePreviewBuffer(byte[] data) {
+    }
+
+    @Override
+    public FrameRecord describeFrame(byte[] data, int width, int height) {
+        int rotation = this.rotation;
+        boolean swapped = rotation == 90 || rotation == 270;
+        boolean whole = cropWidth <= 0 || cropHeight <= 0;
+        return new FrameRecord(width, height, layout, rotation, whole ? 0 : cropLeft, whole ? 0 : cropTop,
+                whole ? (swapped ? height : width) : cropWidth, whole ? (swapped ? width : height) : cropHeight,
+                FrameRecord.FOCUS_UNKNOWN, System.nanoTime(), System.currentTimeMillis());
+    }
+
+    @Override
+    public RotatedPlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height) {
+        int rotation = this.rotation;
+        if (cropWidth <= 0 || cropHeight <= 0) {
+            boolean swapped = rotation == 90 || rotation == 270;
+            return new RotatedPlanarYUVLuminanceSource(data, layout, width, height, rotation, 0, 0,
+                    swapped ? height : width, swapped ? width : height);
+        }
+        return new RotatedPlanarYUVLuminanceSource(data, layout, width, height, rotation,
+                cropLeft, cropTop, cropWidth, cropHeight);
+    }
+
+    /**
+     * 子类在无法提供的帧重新可用时（如缓冲区被归还）调用。按请求提供帧时，等待中的请求随即得到满足。
+     */
+    protected synchronized void onFrameAvailable() {
+        // Sent even while no request is waiting: one that is about to be carried over is then served too.
+        if (producer != null && onDemand) {
+            producer.send(MESSAGE_NEXT_FRAME, 0, 0, null);
+        }
+    }
+
+    /**
+     * @return 是否还有下一帧
+     */
+    protected abstract boolean hasNextFrame();
+
+    /**
+     * 在产生帧的线程上调用，取出下一帧
+     *
+     * @return 下一帧；暂时无法提供（如缓冲区都在使用中）时返回null。按时间产生帧时该帧视为丢弃；按请求提供帧时
+     * 不应跳过该帧，{@link #onFrameAvailable()}之后会再次调用
+     */
+    protected abstract byte[] nextFrame();
+
+    /**
+     * 在产生帧的线程上调用，跳过无人请求的下一帧
+     */
+    protected abstract void skipFrame();
+
+    /**
+     * 第frameIndex帧相对于第一帧的到来时间，默认按{@link #setFrameRate(float)}计算
+     *
+     * @return 毫秒数；负数表示按请求立即提供帧
+     */
+    protected long getFrameTimeMs(long frameIndex) {
+        float frameRate = this.frameRate;
+        return frameRate <= 0f ? -1L : (long) (frameIndex * 1000.0 / frameRate);
+    }
+
+    /**
+     * @return 是否按请求立即提供帧，即{@link #getFrameTimeMs(long)}为负数
+     */
+    protected boolean isOnDemand() {
+        return getFrameTimeMs(0L) < 0L;
+    }
+
+    /**
+     * @return 帧的宽度，默认为构造时指定的宽度
+     */
+    protected int getFrameWidth(byte[] frame) {
+        return width;
+    }
+
+    /**
+     * @return 帧的高度，默认为构造时指定的高度
+     */
+    protected int getFrameHeight(byte[] frame) {
+        return height;
+    }
+
+    /**
+     * 在产生帧的线程上调用，帧来源已停止，可在此释放文件等资源
+     */
+    protected void onStopped() {
+    }
+
+    private void onFrameDue(boolean timed) {
+        if (!hasNextFrame()) {
+            finished = true;
+            return;
+        }
+        FrameCallback target;
+        synchronized (this) {
+            target = consumer;
+            consumer = null;
+        }
+        if (target == null) {
+            if (timed) {
+                // Nobody is waiting, the frame passes by as it would on a camera.
+                skipFrame();
+                droppedFrameCount++;
+            }
+            return;
+        }
+        byte[] frame = nextFrame();
+        if (frame == null) {
+            if (timed) {
+                droppedFrameCount++;
+            }
+            synchronized (this) {
+                if (consumer == null) {
+                    // Still waiting; the request carries over to the next frame.
+                    consumer = target;
+                }
+            }
+            return;
+        }
+        deliveredFrameCount++;
+        target.onPreviewFrame(frame, getFrameWidth(frame), getFrameHeight(frame));
+    }
+
+    private final class ProducerCallback implements MessageLoop.Callback {
+
+        private final boolean onDemand;
+        // Set right after the loop starts, before the first message is sent to it.
+        volatile MessageLoop loop;
+        private long startMs;
+        private long tickCount;
+
+        ProducerCallback(boolean onDemand) {
+            this.onDemand = onDemand;
+        }
+
+        @Override
+        public void handleMessage(int what, int arg1, int arg2, Object obj) {
+            if (what == MESSAGE_QUIT) {
+                onStopped();
+                return;
+            }
+            if (what != MESSAGE_NEXT_FRAME) {
+                return;
+            }
+            if (onDemand) {
+                onFrameDue(false);
+                return;
+            }
+            if (tickCount == 0L) {
+                startMs = uptimeMillis();
+            }
+            onFrameDue(true);
+            if (!finished) {
+                // Scheduled from the start time so rounding and late ticks do not drift the rate.
+                tickCount++;
+                long dueMs = startMs + Math.max(0L, getFrameTimeMs(tickCount));
+                loop.sendDelayed(MESSAGE_NEXT_FRAME, Math.max(0L, dueMs - uptimeMillis()));
+            }
+        }
+
+        private long uptimeMillis() {
+            return System.nanoTime() / 1000000L;
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.coderchoy.barcodereaderview.decode;
+
+import java.util.Arrays;
+
+/**
+ * Tells which decode workers have been busy with one frame for longer than the stall timeout, for
+ * {@link DecodeWorkerPool} to replace them. Times are uptime milliseconds passed in by the caller,
+ * so the decisions do not depend on a Looper or a clock. Used on the dispatch thread only.
+ */
+final class WorkerWatchdog {
+
+    private static final long IDLE = -1L;
+
+    private final long stallTimeoutMs;
+    // When each worker was handed its frame, or IDLE.
+    private final long[] busySinceMs;
+
+    /**
+     * @param stallTimeoutMs How long a worker may spend on one frame; 0 disables the watchdog.
+     */
+    WorkerWatchdog(int workerCount, long stallTimeoutMs) {
+        this.stallTimeoutMs = stallTimeoutMs;
+        busySinceMs = new long[workerCount];
+        Arrays.fill(busySinceMs, IDLE);
+    }
+
+    boolean isEnabled() {
+        return stallTimeoutMs > 0L;
+    }
+
+    void onBusy(int workerIndex, long nowMs) {
+        busySinceMs[workerIndex] = nowMs;
+    }
+
+    void onIdle(int workerIndex) {
+        busySinceMs[workerIndex] = IDLE;
+    }
+
+    /**
+     * @return the next worker busy for the stall timeout or longer, which counts as idle from now
+     * on; -1 if there is none
+     */
+    int takeStalled(long nowMs) {
+        if (!isEnabled()) {
+            return -1;
+        }
+        for (int i = 0; i < busySinceMs.length; i++) {
+            if (busySinceMs[i] != IDLE && nowMs - busySinceMs[i] >= stallTimeoutMs) {
+                busySinceMs[i] = IDLE;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return how long to wait before checking again, or -1 while no worker is busy
+     */
+    long getCheckDelayMs() {
+        if (!isEnabled()) {
+            return -1L;
+        }
+        for (long busySince : busySinceMs) {
+            if (busySince != IDLE) {
+                // Twice per timeout, so a stuck worker is replaced at most half a timeout late.
+                return stallTimeoutMs / 2 + 1;
+            }
+        }
+        return -1L;
+    }
+
+}
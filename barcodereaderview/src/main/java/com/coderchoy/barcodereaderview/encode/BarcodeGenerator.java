@@ -24,6 +24,7 @@ import android.support.annotation.Px;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.EncodeHintType;
 import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
 
 import java.util.EnumMap;
@@ -79,6 +80,29 @@ public class BarcodeGenerator {
     }
 
     public Bitmap encodeBarcode() throws Exception {
+        BitMatrix result = encodeMatrix();
+        int width = result.getWidth();
+        int height = result.getHeight();
+        int[] pixels = renderPixels(result);
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+
+        //生成带logo的二维码
+        if (logo != null && barcodeFormat == BarcodeFormat.QR_CODE) {
+            Canvas canvas = new Canvas(bitmap);
+            canvas.drawBitmap(logo, bitmap.getWidth() / 2 - logo.getWidth() / 2,
+                    bitmap.getHeight() / 2 - logo.getHeight() / 2, null);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 只编码，不生成位图，不使用logo
+     *
+     * @return 条形码的点阵，大小一般为width×height
+     */
+    public BitMatrix encodeMatrix() throws WriterException {
         Map<EncodeHintType, Object> hints;
         hints = new EnumMap<>(EncodeHintType.class);
         hints.put(EncodeHintType.MARGIN, 0);
@@ -86,29 +110,25 @@ public class BarcodeGenerator {
         if (errorCorrection != null) {
             hints.put(EncodeHintType.ERROR_CORRECTION, errorCorrection);
         }
+        return new MultiFormatWriter().encode(content, barcodeFormat, width, height, hints);
+    }
 
-        BitMatrix result = new MultiFormatWriter().encode(content, barcodeFormat, width, height, hints);
-
-        int width = result.getWidth();
-        int height = result.getHeight();
+    /**
+     * 将点阵转为ARGB像素，“条”为mainColor，“空”为emptyColor
+     *
+     * @return 按行排列的像素，可用于{@link Bitmap#setPixels(int[], int, int, int, int, int, int)}
+     */
+    public int[] renderPixels(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
         int[] pixels = new int[width * height];
         for (int y = 0; y < height; y++) {
             int offset = y * width;
             for (int x = 0; x < width; x++) {
-                pixels[offset + x] = result.get(x, y) ? mainColor : emptyColor;
+                pixels[offset + x] = matrix.get(x, y) ? mainColor : emptyColor;
             }
         }
-
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
-
-        //生成带logo的二维码
-        if (logo != null && barcodeFormat == BarcodeFormat.QR_CODE) {
-            Canvas canvas = new Canvas(bitmap);
-            canvas.drawBitmap(logo, bitmap.getWidth() / 2 - logo.getWidth() / 2,
-                    bitmap.getHeight() / 2 - logo.getHeight() / 2, null);
-        }
-        return bitmap;
+        return pixels;
     }
 
     public static final class Builder {
@@ -17,23 +17,41 @@
 package com.google.zxing.client.android.camera;
 
 import android.hardware.Camera;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
+import com.coderchoy.barcodereaderview.decode.FocusSignal;
+import com.coderchoy.barcodereaderview.decode.FrameRecord;
 import com.coderchoy.barcodereaderview.util.LogEx;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Modified by CoderChoy on 2017/03/16
+ * <p>
+ * Focuses once on start, then again only when the decoders ask for it through {@link #onFocusSignal}:
+ * {@value #BLURRY_FRAMES} blurry frames in a row, {@value #CANDIDATE_FRAMES} frames in a row with
+ * finder patterns that would not decode, a lost tracked code, or, as a last resort,
+ * {@value #MISSED_FRAMES} sharp frames in a row with nothing in them. While codes decode no cycle
+ * is started.
+ * <p>
+ * Cycles are at least {@value #MIN_INTERVAL_MS} ms apart, and the gap doubles with every cycle up
+ * to {@value #MAX_INTERVAL_MS} ms until a code decodes again. A failed cycle is retried after the
+ * gap. Cycles are started from a Handler on the main looper, so no thread is held while waiting;
+ * {@link #stop()} removes the pending start.
  */
 @SuppressWarnings("deprecation") // camera APIs
 final class AutoFocusManager implements Camera.AutoFocusCallback {
 
     private static final String TAG = AutoFocusManager.class.getSimpleName();
 
-    private static final long AUTO_FOCUS_INTERVAL_MS = 2000L;
+    private static final long MIN_INTERVAL_MS = 500L;
+    private static final long MAX_INTERVAL_MS = 4000L;
+    private static final int BLURRY_FRAMES = 3;
+    private static final int CANDIDATE_FRAMES = 2;
+    private static final int MISSED_FRAMES = 30;
     private static final Collection<String> FOCUS_MODES_CALLING_AF;
 
     static {
@@ -44,14 +62,34 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
 
     private boolean stopped;
     private boolean focusing;
+    // A start is posted to the handler.
+    private boolean scheduled;
+    // Outcome of the last focus cycle, null before the first one ends.
+    private Boolean focused;
     private final boolean useAutoFocus;
     private final Camera camera;
-    private AsyncTask<?, ?, ?> outstandingTask;
+    private final Handler handler;
+    private final Runnable startTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (AutoFocusManager.this) {
+                scheduled = false;
+            }
+            start();
+        }
+    };
+    // Earliest uptime the next cycle may start at.
+    private long nextFocusMs;
+    private long intervalMs = MIN_INTERVAL_MS;
+    private int blurryFrames;
+    private int candidateFrames;
+    private int missedFrames;
 
     AutoFocusManager(Camera camera, boolean useAutoFocus) {
         this.camera = camera;
         String currentFocusMode = camera.getParameters().getFocusMode();
         this.useAutoFocus = useAutoFocus && FOCUS_MODES_CALLING_AF.contains(currentFocusMode);
+        handler = new Handler(Looper.getMainLooper());
         LogEx.i(TAG, "Current focus mode '" + currentFocusMode + "'; use auto focus? " + useAutoFocus);
         start();
     }
@@ -59,24 +97,69 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
     @Override
     public synchronized void onAutoFocus(boolean success, Camera theCamera) {
         focusing = false;
-        autoFocusAgainLater();
+        focused = success;
+        // Frames counted so far were taken before or during the cycle.
+        resetCounts();
+        nextFocusMs = SystemClock.uptimeMillis() + intervalMs;
+        intervalMs = Math.min(intervalMs * 2, MAX_INTERVAL_MS);
+        if (!success) {
+            autoFocusAgainLater();
+        }
+    }
+
+    /**
+     * Called from the decode threads once per decoded frame.
+     */
+    synchronized void onFocusSignal(FocusSignal signal) {
+        if (!useAutoFocus || stopped) {
+            return;
+        }
+        if (signal == FocusSignal.DECODED) {
+            // In focus: forget the backoff and any retry of a failed cycle.
+            resetCounts();
+            intervalMs = MIN_INTERVAL_MS;
+            nextFocusMs = 0L;
+            cancelOutstandingTask();
+            return;
+        }
+        if (focusing || scheduled) {
+            return;
+        }
+        boolean trigger;
+        switch (signal) {
+            case BLURRY:
+                trigger = ++blurryFrames >= BLURRY_FRAMES;
+                break;
+            case TRACKING_LOST:
+                trigger = true;
+                break;
+            case CANDIDATE:
+                blurryFrames = 0;
+                trigger = ++candidateFrames >= CANDIDATE_FRAMES;
+                break;
+            default:
+                blurryFrames = 0;
+                candidateFrames = 0;
+                trigger = ++missedFrames >= MISSED_FRAMES;
+                break;
+        }
+        if (trigger) {
+            LogEx.d(TAG, "Focusing on " + signal);
+            resetCounts();
+            autoFocusAgainLater();
+        }
     }
 
     private synchronized void autoFocusAgainLater() {
-        if (!stopped && outstandingTask == null) {
-            AutoFocusTask newTask = new AutoFocusTask();
-            try {
-                newTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
-                outstandingTask = newTask;
-            } catch (RejectedExecutionException ree) {
-                LogEx.w(TAG, "Could not request auto focus", ree);
-            }
+        if (!stopped && !scheduled) {
+            handler.postAtTime(startTask, Math.max(nextFocusMs, SystemClock.uptimeMillis()));
+            scheduled = true;
         }
     }
 
     synchronized void start() {
         if (useAutoFocus) {
-            outstandingTask = null;
+            cancelOutstandingTask();
             if (!stopped && !focusing) {
                 try {
                     camera.autoFocus(this);
@@ -85,18 +168,40 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
                     // Have heard RuntimeException reported in Android 4.0.x+; continue?
                     LogEx.w(TAG, "Unexpected exception while focusing", re);
                     // Try again later to keep cycle going
+                    nextFocusMs = SystemClock.uptimeMillis() + intervalMs;
+                    intervalMs = Math.min(intervalMs * 2, MAX_INTERVAL_MS);
                     autoFocusAgainLater();
                 }
             }
         }
     }
 
+    /**
+     * @return one of the FOCUS_* states of {@link FrameRecord}
+     */
+    synchronized int getFocusState() {
+        if (!useAutoFocus) {
+            return FrameRecord.FOCUS_FIXED;
+        }
+        if (focusing) {
+            return FrameRecord.FOCUS_FOCUSING;
+        }
+        if (focused == null) {
+            return FrameRecord.FOCUS_UNKNOWN;
+        }
+        return focused ? FrameRecord.FOCUS_FOCUSED : FrameRecord.FOCUS_FAILED;
+    }
+
+    private void resetCounts() {
+        blurryFrames = 0;
+        candidateFrames = 0;
+        missedFrames = 0;
+    }
+
     private synchronized void cancelOutstandingTask() {
-        if (outstandingTask != null) {
-            if (outstandingTask.getStatus() != AsyncTask.Status.FINISHED) {
-                outstandingTask.cancel(true);
-            }
-            outstandingTask = null;
+        if (scheduled) {
+            handler.removeCallbacks(startTask);
+            scheduled = false;
         }
     }
 
@@ -114,17 +219,4 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
         }
     }
 
-    private final class AutoFocusTask extends AsyncTask<Object, Object, Object> {
-        @Override
-        protected Object doInBackground(Object... voids) {
-            try {
-                Thread.sleep(AUTO_FOCUS_INTERVAL_MS);
-            } catch (InterruptedException e) {
-                // continue
-            }
-            start();
-            return null;
-        }
-    }
-
 }
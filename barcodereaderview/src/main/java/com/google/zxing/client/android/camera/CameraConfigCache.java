@@ -0,0 +1,194 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.google.zxing.client.android.camera;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Point;
+import android.hardware.Camera;
+import android.os.Build;
+
+import com.coderchoy.barcodereaderview.util.LogEx;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers how a camera ended up configured, so later sessions can apply that directly instead of
+ * choosing a preview size again and retrying rejected parameters in safe mode. Entries live in
+ * memory for the life of the process and in {@link SharedPreferences} across launches.
+ * <p>
+ * An entry is keyed by camera, view size, display rotation and preview size policy, and carries a
+ * fingerprint of the OS build and of the values the camera reports as supported. An OS update or a
+ * camera that reports different values no longer matches the fingerprint, and its entry is dropped.
+ */
+@SuppressWarnings("deprecation") // camera APIs
+final class CameraConfigCache {
+
+    private static final String TAG = CameraConfigCache.class.getSimpleName();
+
+    private static final String PREFS_NAME = "barcode_reader_camera_config";
+    private static final String[] FINGERPRINT_KEYS = {
+            "preview-size-values", "preview-format-values", "focus-mode-values", "flash-mode-values"
+    };
+    // Guarded by itself; shared by every CameraManager of the process.
+    private static final Map<String, Entry> MEMORY = new HashMap<>();
+
+    private final Context context;
+
+    CameraConfigCache(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * @param policyKey Identifies how the preview size is chosen; sizes chosen differently don't mix.
+     */
+    static String key(int cameraIndex, Point screenResolution, int cwRotationFromNaturalToDisplay, String policyKey) {
+        return "camera_" + cameraIndex + '_' + screenResolution.x + 'x' + screenResolution.y + '_' +
+                cwRotationFromNaturalToDisplay + '_' + policyKey;
+    }
+
+    static String fingerprint(Camera.Parameters parameters) {
+        StringBuilder values = new StringBuilder();
+        for (String key : FINGERPRINT_KEYS) {
+            values.append(parameters.get(key)).append(';');
+        }
+        return Build.FINGERPRINT + '#' + Integer.toHexString(values.toString().hashCode());
+    }
+
+    /**
+     * @return the entry stored under the key, or null if there is none or it is stale
+     */
+    Entry get(String key, String fingerprint) {
+        Entry entry;
+        synchronized (MEMORY) {
+            entry = MEMORY.get(key);
+        }
+        if (entry == null) {
+            String value = getPrefs().getString(key, null);
+            if (value == null) {
+                return null;
+            }
+            entry = Entry.decode(value);
+            if (entry == null) {
+                LogEx.w(TAG, "Bad camera config for " + key + ": " + value);
+            }
+        }
+        if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+            remove(key);
+            return null;
+        }
+        synchronized (MEMORY) {
+            MEMORY.put(key, entry);
+        }
+        return entry;
+    }
+
+    void put(String key, Entry entry) {
+        synchronized (MEMORY) {
+            if (entry.equals(MEMORY.get(key))) {
+                return;
+            }
+            MEMORY.put(key, entry);
+        }
+        getPrefs().edit().putString(key, entry.encode()).apply();
+    }
+
+    void remove(String key) {
+        synchronized (MEMORY) {
+            MEMORY.remove(key);
+        }
+        SharedPreferences prefs = getPrefs();
+        if (prefs.contains(key)) {
+            prefs.edit().remove(key).apply();
+        }
+    }
+
+    private SharedPreferences getPrefs() {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * A configuration the camera accepted.
+     */
+    static final class Entry {
+
+        private static final int FIELD_COUNT = 8;
+
+        final int previewWidth;
+        final int previewHeight;
+        final int cwNeededRotation;
+        final int cwRotationFromDisplayToCamera;
+        // The focus mode chosen for autoFocus; null if none could be set.
+        final String focusMode;
+        final boolean autoFocus;
+        // Only the safe-mode parameters were accepted.
+        final boolean safeMode;
+        final String fingerprint;
+
+        Entry(int previewWidth, int previewHeight, int cwNeededRotation, int cwRotationFromDisplayToCamera,
+              String focusMode, boolean autoFocus, boolean safeMode, String fingerprint) {
+            this.previewWidth = previewWidth;
+            this.previewHeight = previewHeight;
+            this.cwNeededRotation = cwNeededRotation;
+            this.cwRotationFromDisplayToCamera = cwRotationFromDisplayToCamera;
+            this.focusMode = focusMode;
+            this.autoFocus = autoFocus;
+            this.safeMode = safeMode;
+            this.fingerprint = fingerprint;
+        }
+
+        String encode() {
+            // The fingerprint goes last, so whatever it contains cannot shift the other fields.
+            return previewWidth + "," + previewHeight + "," + cwNeededRotation + "," +
+                    cwRotationFromDisplayToCamera + "," + (focusMode == null ? "" : focusMode) + "," +
+                    autoFocus + "," + safeMode + "," + fingerprint;
+        }
+
+        static Entry decode(String value) {
+            String[] fields = value.split(",", FIELD_COUNT);
+            if (fields.length != FIELD_COUNT) {
+                return null;
+            }
+            try {
+                return new Entry(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                        Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+                        fields[4].isEmpty() ? null : fields[4], Boolean.parseBoolean(fields[5]),
+                        Boolean.parseBoolean(fields[6]), fields[7]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry && encode().equals(((Entry) o).encode());
+        }
+
+        @Override
+        public int hashCode() {
+            return encode().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return encode();
+        }
+    }
+
+}
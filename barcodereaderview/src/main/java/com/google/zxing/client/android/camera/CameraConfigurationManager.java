@@ -24,9 +24,13 @@ import android.view.Surface;
 import android.view.WindowManager;
 
 import com.coderchoy.barcodereaderview.util.LogEx;
+import com.google.zxing.BarcodeFormat;
 import com.google.zxing.client.android.camera.open.CameraFacing;
 import com.google.zxing.client.android.camera.open.OpenCamera;
 
+import java.util.Collection;
+import java.util.EnumSet;
+
 /**
  * A class which deals with reading, parsing, and setting the camera parameters which are used to
  * configure the camera hardware.
@@ -39,22 +43,51 @@ final class CameraConfigurationManager {
     private static final String TAG = "CameraConfiguration";
 
     private final Context context;
+    private final CameraConfigCache configCache;
+    private String configKey;
+    private String configFingerprint;
+    // What an earlier session found to work; null if nothing is known.
+    private CameraConfigCache.Entry cachedConfig;
     private int cwNeededRotation;
     private int cwRotationFromDisplayToCamera;
     private Point screenResolution;
     private Point cameraResolution;
     private Point bestPreviewSize;
     private Point previewSizeOnScreen;
+    private PreviewSizePolicy previewSizePolicy = PreviewSizePolicy.MATCH_SCREEN;
+    private Collection<BarcodeFormat> decodeFormats = EnumSet.of(BarcodeFormat.QR_CODE);
+    private float minCodeSize = 0.5f;
+    // What the choice of bestPreviewSize was based on, see getPreviewSizeChoice().
+    private Point screenMatchSize;
+    private Point framingSize;
+    private BarcodeFormat limitingFormat;
 
     CameraConfigurationManager(Context context) {
         this.context = context;
+        this.configCache = new CameraConfigCache(context);
+    }
+
+    /**
+     * @param policy        How to choose the preview size.
+     * @param formats       Formats that will be decoded, for {@link PreviewSizePolicy#DECODE_COST}.
+     * @param minCodeSize   Smallest expected code, as a fraction of the shorter side of the framing rect.
+     */
+    void setPreviewSizePolicy(PreviewSizePolicy policy, Collection<BarcodeFormat> formats, float minCodeSize) {
+        this.previewSizePolicy = policy;
+        this.decodeFormats = formats == null || formats.isEmpty() ? EnumSet.of(BarcodeFormat.QR_CODE) : formats;
+        this.minCodeSize = minCodeSize;
     }
 
     /**
-     * Reads, one time, values from the camera that are needed by the app.
+     * Reads, one time, values from the camera that are needed by the app. A configuration cached
+     * for the same camera, view size, display rotation and preview size requirement is taken over
+     * as is.
+     *
+     * @param parameters  The camera's current parameters; not modified.
+     * @param framingSize Size the framing rect will have on screen.
      */
-    void initFromCameraParameters(OpenCamera camera, int screenWidth, int screenHeight) {
-        Camera.Parameters parameters = camera.getCamera().getParameters();
+    void initFromCameraParameters(OpenCamera camera, Camera.Parameters parameters, int screenWidth, int screenHeight,
+                                  Point framingSize) {
         WindowManager manager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
         Display display = manager.getDefaultDisplay();
 
@@ -83,6 +116,70 @@ final class CameraConfigurationManager {
         }
         LogEx.i(TAG, "Display at: " + cwRotationFromNaturalToDisplay);
 
+//        Point theScreenResolution = new Point();
+//        display.getSize(theScreenResolution);
+        screenResolution = new Point(screenWidth, screenHeight);
+        LogEx.i(TAG, "Screen resolution in current orientation: " + screenResolution);
+
+        // The format that needs the most pixels across its smallest code decides.
+        BarcodeFormat limitingFormat = null;
+        float requiredCodePixels = 0f;
+        for (BarcodeFormat format : decodeFormats) {
+            float codePixels = CameraConfigurationUtils.estimateModules(format) *
+                    CameraConfigurationUtils.getMinPixelsPerModule(format);
+            if (codePixels > requiredCodePixels) {
+                limitingFormat = format;
+                requiredCodePixels = codePixels;
+            }
+        }
+        float requiredFramingPixels = requiredCodePixels / minCodeSize;
+        String policyKey = previewSizePolicy == PreviewSizePolicy.MATCH_SCREEN ? "screen" :
+                "decode" + Math.round(requiredFramingPixels) + '@' + framingSize.x + 'x' + framingSize.y;
+
+        configKey = CameraConfigCache.key(camera.getIndex(), screenResolution, cwRotationFromNaturalToDisplay,
+                policyKey);
+        configFingerprint = CameraConfigCache.fingerprint(parameters);
+        cachedConfig = configCache.get(configKey, configFingerprint);
+        if (cachedConfig != null) {
+            LogEx.i(TAG, "Using cached camera configuration: " + cachedConfig);
+            cwNeededRotation = cachedConfig.cwNeededRotation;
+            cwRotationFromDisplayToCamera = cachedConfig.cwRotationFromDisplayToCamera;
+            bestPreviewSize = new Point(cachedConfig.previewWidth, cachedConfig.previewHeight);
+            screenMatchSize = null;
+        } else {
+            computeRotation(camera, cwRotationFromNaturalToDisplay);
+            screenMatchSize = CameraConfigurationUtils.findBestPreviewSizeValue(parameters, screenResolution);
+            bestPreviewSize = screenMatchSize;
+            if (previewSizePolicy == PreviewSizePolicy.DECODE_COST) {
+                Point cheapest = CameraConfigurationUtils.findCheapestPreviewSizeValue(parameters, screenResolution,
+                        framingSize, requiredFramingPixels);
+                if (cheapest != null) {
+                    bestPreviewSize = cheapest;
+                } else {
+                    LogEx.w(TAG, "No preview size has about the aspect ratio of the screen; matching the screen");
+                }
+            }
+            screenMatchSize = new Point(screenMatchSize);
+            LogEx.i(TAG, "Best available preview size: " + bestPreviewSize);
+        }
+        this.framingSize = framingSize;
+        this.limitingFormat = limitingFormat;
+        // A copy, since the camera may still correct bestPreviewSize when it is set.
+        cameraResolution = new Point(bestPreviewSize);
+        LogEx.i(TAG, "Camera resolution: " + cameraResolution);
+
+        boolean isScreenPortrait = screenResolution.x < screenResolution.y;
+        boolean isPreviewSizePortrait = bestPreviewSize.x < bestPreviewSize.y;
+
+        if (isScreenPortrait == isPreviewSizePortrait) {
+            previewSizeOnScreen = bestPreviewSize;
+        } else {
+            previewSizeOnScreen = new Point(bestPreviewSize.y, bestPreviewSize.x);
+        }
+        LogEx.i(TAG, "Preview size on screen: " + previewSizeOnScreen);
+    }
+
+    private void computeRotation(OpenCamera camera, int cwRotationFromNaturalToDisplay) {
         int cwRotationFromNaturalToCamera = camera.getOrientation();
         LogEx.i(TAG, "Camera at: " + cwRotationFromNaturalToCamera);
 
@@ -102,31 +199,22 @@ final class CameraConfigurationManager {
             cwNeededRotation = cwRotationFromDisplayToCamera;
         }
         LogEx.i(TAG, "Clockwise rotation from display to camera: " + cwNeededRotation);
+    }
 
-//        Point theScreenResolution = new Point();
-//        display.getSize(theScreenResolution);
-        screenResolution = new Point(screenWidth, screenHeight);
-        LogEx.i(TAG, "Screen resolution in current orientation: " + screenResolution);
-        cameraResolution = CameraConfigurationUtils.findBestPreviewSizeValue(parameters, screenResolution);
-        LogEx.i(TAG, "Camera resolution: " + cameraResolution);
-        bestPreviewSize = CameraConfigurationUtils.findBestPreviewSizeValue(parameters, screenResolution);
-        LogEx.i(TAG, "Best available preview size: " + bestPreviewSize);
-
-        boolean isScreenPortrait = screenResolution.x < screenResolution.y;
-        boolean isPreviewSizePortrait = bestPreviewSize.x < bestPreviewSize.y;
-
-        if (isScreenPortrait == isPreviewSizePortrait) {
-            previewSizeOnScreen = bestPreviewSize;
-        } else {
-            previewSizeOnScreen = new Point(bestPreviewSize.y, bestPreviewSize.x);
-        }
-        LogEx.i(TAG, "Preview size on screen: " + previewSizeOnScreen);
+    /**
+     * @return whether an earlier session found that this camera only takes safe-mode parameters
+     */
+    boolean isSafeModeKnownRequired() {
+        return cachedConfig != null && cachedConfig.safeMode;
     }
 
-    void setDesiredCameraParameters(OpenCamera camera, boolean safeMode, boolean autoFocus) {
+    /**
+     * @param parameters The camera's current parameters, modified and set.
+     */
+    void setDesiredCameraParameters(OpenCamera camera, Camera.Parameters parameters, boolean safeMode,
+                                    boolean autoFocus) {
 
         Camera theCamera = camera.getCamera();
-        Camera.Parameters parameters = theCamera.getParameters();
 
         if (parameters == null) {
             LogEx.w(TAG, "Device error: no camera parameters are available. Proceeding without configuration.");
@@ -141,11 +229,17 @@ final class CameraConfigurationManager {
 
         initializeTorch(parameters, safeMode);
 
-        CameraConfigurationUtils.setFocus(
-                parameters,
-                autoFocus,
-                false,
-                safeMode);
+        // A cached entry is only as good as the settings it was made with.
+        boolean cached = cachedConfig != null && cachedConfig.safeMode == safeMode && cachedConfig.autoFocus == autoFocus;
+        if (cached && cachedConfig.focusMode != null) {
+            parameters.setFocusMode(cachedConfig.focusMode);
+        } else {
+            CameraConfigurationUtils.setFocus(
+                    parameters,
+                    autoFocus,
+                    false,
+                    safeMode);
+        }
 
 //        if (!safeMode) {
 //            if (prefs.getBoolean(PreferencesActivity.KEY_INVERT_SCAN, false)) {
@@ -170,6 +264,7 @@ final class CameraConfigurationManager {
 
         theCamera.setDisplayOrientation(cwRotationFromDisplayToCamera);
 
+        // Read back even when cached: the entry is only trusted for what it saves, not for the frame size.
         Camera.Parameters afterParameters = theCamera.getParameters();
         Camera.Size afterSize = afterParameters.getPreviewSize();
         if (afterSize != null && (bestPreviewSize.x != afterSize.width || bestPreviewSize.y != afterSize.height)) {
@@ -177,7 +272,65 @@ final class CameraConfigurationManager {
                     ", but after setting it, preview size is " + afterSize.width + 'x' + afterSize.height);
             bestPreviewSize.x = afterSize.width;
             bestPreviewSize.y = afterSize.height;
+            if (cached) {
+                // The camera no longer takes what it took before; cache what it took this time instead.
+                forgetCachedConfiguration();
+                cached = false;
+            }
+        }
+        if (cached) {
+            // The camera took exactly these values before.
+            return;
+        }
+        if (configKey != null) {
+            configCache.put(configKey, new CameraConfigCache.Entry(bestPreviewSize.x, bestPreviewSize.y,
+                    cwNeededRotation, cwRotationFromDisplayToCamera, afterParameters.getFocusMode(), autoFocus,
+                    safeMode, configFingerprint));
+        }
+    }
+
+    /**
+     * Switches a configured camera to another preview size; the preview must be stopped.
+     *
+     * @param parameters The camera's current parameters, modified and set.
+     * @param size       A supported preview size.
+     */
+    void setPreviewSize(Camera camera, Camera.Parameters parameters, Point size) {
+        parameters.setPreviewSize(size.x, size.y);
+        camera.setParameters(parameters);
+        Camera.Size afterSize = camera.getParameters().getPreviewSize();
+        bestPreviewSize = afterSize == null ? new Point(size) : new Point(afterSize.width, afterSize.height);
+        cameraResolution = new Point(bestPreviewSize);
+        boolean isScreenPortrait = screenResolution.x < screenResolution.y;
+        boolean isPreviewSizePortrait = bestPreviewSize.x < bestPreviewSize.y;
+        previewSizeOnScreen = isScreenPortrait == isPreviewSizePortrait ?
+                bestPreviewSize : new Point(bestPreviewSize.y, bestPreviewSize.x);
+        LogEx.i(TAG, "Preview size changed to " + bestPreviewSize);
+    }
+
+    /**
+     * Drops the cached configuration after the camera rejected it, so the next session starts over.
+     */
+    void forgetCachedConfiguration() {
+        if (cachedConfig != null) {
+            configCache.remove(configKey);
+            cachedConfig = null;
+        }
+    }
+
+    /**
+     * @return how bestPreviewSize was chosen, or null before {@link #initFromCameraParameters}
+     */
+    PreviewSizeChoice getPreviewSizeChoice() {
+        if (bestPreviewSize == null || screenResolution == null) {
+            return null;
         }
+        int modules = CameraConfigurationUtils.estimateModules(limitingFormat);
+        float pixelsPerModule = CameraConfigurationUtils.getFramingPixels(bestPreviewSize, screenResolution,
+                framingSize) * minCodeSize / modules;
+        return new PreviewSizeChoice(previewSizePolicy, bestPreviewSize, screenMatchSize, limitingFormat, modules,
+                CameraConfigurationUtils.getMinPixelsPerModule(limitingFormat), pixelsPerModule,
+                screenMatchSize == null);
     }
 
     Point getBestPreviewSize() {
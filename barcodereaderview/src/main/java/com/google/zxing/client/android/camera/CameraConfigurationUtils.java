@@ -23,6 +23,7 @@ import android.os.Build;
 import android.util.Log;
 
 import com.coderchoy.barcodereaderview.util.LogEx;
+import com.google.zxing.BarcodeFormat;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -52,6 +53,9 @@ public final class CameraConfigurationUtils {
     private static final int MIN_FPS = 10;
     private static final int MAX_FPS = 20;
     private static final int AREA_PER_1000 = 400;
+    // Finder patterns of 2D codes blur away sooner than the edges 1D readers look for.
+    private static final float MIN_PIXELS_PER_MODULE_2D = 3.0f;
+    private static final float MIN_PIXELS_PER_MODULE_1D = 2.0f;
 
     private CameraConfigurationUtils() {
     }
@@ -351,6 +355,154 @@ public final class CameraConfigurationUtils {
         return bestSize;
     }
 
+    /**
+     * Finds the smallest preview size at which a code spanning {@code requiredFramingPixels} preview
+     * pixels along the shorter side of the framing rect fits in it. The preview is stretched to the
+     * screen, so a size that would distort it noticeably is skipped.
+     *
+     * @param framingSize           Size of the framing rect on screen.
+     * @param requiredFramingPixels Preview pixels the shorter side of the framing rect must span.
+     * @return the size, or the one spanning the most pixels if none spans enough; null if no size
+     * has about the screen's aspect ratio
+     */
+    public static Point findCheapestPreviewSizeValue(Camera.Parameters parameters, Point screenResolution,
+                                                     Point framingSize, float requiredFramingPixels) {
+        List<Camera.Size> supportedPreviewSizes = parameters.getSupportedPreviewSizes();
+        if (supportedPreviewSizes == null) {
+            return null;
+        }
+        double screenAspectRatio = screenResolution.x / (double) screenResolution.y;
+        Point cheapest = null;
+        int cheapestPixels = Integer.MAX_VALUE;
+        Point largest = null;
+        float largestFramingPixels = 0f;
+        for (Camera.Size supportedPreviewSize : supportedPreviewSizes) {
+            int realWidth = supportedPreviewSize.width;
+            int realHeight = supportedPreviewSize.height;
+            int pixels = realWidth * realHeight;
+            if (pixels < MIN_PREVIEW_PIXELS) {
+                continue;
+            }
+            boolean isCandidatePortrait = (realWidth > realHeight) ^ (screenResolution.x > screenResolution.y);
+            int maybeFlippedWidth = isCandidatePortrait ? realHeight : realWidth;
+            int maybeFlippedHeight = isCandidatePortrait ? realWidth : realHeight;
+            double aspectRatio = maybeFlippedWidth / (double) maybeFlippedHeight;
+            if (Math.abs(aspectRatio - screenAspectRatio) > MAX_ASPECT_DISTORTION) {
+                continue;
+            }
+            float framingPixels = getFramingPixels(new Point(realWidth, realHeight), screenResolution, framingSize);
+            if (framingPixels >= requiredFramingPixels && pixels < cheapestPixels) {
+                cheapest = new Point(realWidth, realHeight);
+                cheapestPixels = pixels;
+            }
+            if (framingPixels > largestFramingPixels) {
+                largest = new Point(realWidth, realHeight);
+                largestFramingPixels = framingPixels;
+            }
+        }
+        if (cheapest == null && largest != null) {
+            LogEx.w(TAG, "No preview size spans " + requiredFramingPixels + " pixels across the framing rect; using " +
+                    largest);
+            return largest;
+        }
+        LogEx.i(TAG, "Found cheapest decodable preview size: " + cheapest);
+        return cheapest;
+    }
+
+    /**
+     * @return the largest supported size below {@code current} with about the same aspect ratio, or
+     * null if there is none
+     */
+    public static Point findNextSmallerPreviewSizeValue(Camera.Parameters parameters, Point current) {
+        List<Camera.Size> supportedPreviewSizes = parameters.getSupportedPreviewSizes();
+        if (supportedPreviewSizes == null) {
+            return null;
+        }
+        double currentAspectRatio = current.x / (double) current.y;
+        int currentPixels = current.x * current.y;
+        Point next = null;
+        int nextPixels = 0;
+        for (Camera.Size supportedPreviewSize : supportedPreviewSizes) {
+            int pixels = supportedPreviewSize.width * supportedPreviewSize.height;
+            if (pixels >= currentPixels || pixels < MIN_PREVIEW_PIXELS || pixels <= nextPixels) {
+                continue;
+            }
+            double aspectRatio = supportedPreviewSize.width / (double) supportedPreviewSize.height;
+            if (Math.abs(aspectRatio - currentAspectRatio) <= MAX_ASPECT_DISTORTION) {
+                next = new Point(supportedPreviewSize.width, supportedPreviewSize.height);
+                nextPixels = pixels;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @param previewSize A preview size, as the camera delivers it (not rotated).
+     * @return preview pixels along the shorter side of the framing rect at that size
+     */
+    public static float getFramingPixels(Point previewSize, Point screenResolution, Point framingSize) {
+        boolean isCandidatePortrait = (previewSize.x > previewSize.y) ^ (screenResolution.x > screenResolution.y);
+        int maybeFlippedWidth = isCandidatePortrait ? previewSize.y : previewSize.x;
+        int maybeFlippedHeight = isCandidatePortrait ? previewSize.x : previewSize.y;
+        return Math.min(framingSize.x * (float) maybeFlippedWidth / screenResolution.x,
+                framingSize.y * (float) maybeFlippedHeight / screenResolution.y);
+    }
+
+    /**
+     * @return modules across a typical code of the format, quiet zone excluded; a guess for
+     * variable-length formats
+     */
+    public static int estimateModules(BarcodeFormat format) {
+        switch (format) {
+            case QR_CODE:
+                return 33; // Version 4
+            case DATA_MATRIX:
+                return 24;
+            case AZTEC:
+                return 27;
+            case MAXICODE:
+                return 30;
+            case PDF_417:
+                return 120; // Three data columns
+            case EAN_8:
+                return 67;
+            case UPC_E:
+                return 51;
+            case EAN_13:
+            case UPC_A:
+                return 95;
+            case RSS_14:
+                return 96;
+            case UPC_EAN_EXTENSION:
+                return 47;
+            case CODE_93:
+                return 127; // Ten characters
+            case CODE_39:
+            case CODABAR:
+            case ITF:
+            case CODE_128:
+            case RSS_EXPANDED:
+            default:
+                return 150; // About a dozen characters
+        }
+    }
+
+    /**
+     * @return pixels per module the format needs to decode reliably from a preview frame
+     */
+    public static float getMinPixelsPerModule(BarcodeFormat format) {
+        switch (format) {
+            case QR_CODE:
+            case DATA_MATRIX:
+            case AZTEC:
+            case MAXICODE:
+            case PDF_417:
+                return MIN_PIXELS_PER_MODULE_2D;
+            default:
+                return MIN_PIXELS_PER_MODULE_1D;
+        }
+    }
+
     private static String findSettableValue(String name,
                                             Collection<String> supportedValues,
                                             String... desiredValues) {
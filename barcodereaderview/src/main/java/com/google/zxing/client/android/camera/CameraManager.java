@@ -16,20 +16,31 @@
 
 package com.google.zxing.client.android.camera;
 
-import android.content.res.Configuration;
+import android.graphics.ImageFormat;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.hardware.Camera;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.view.SurfaceHolder;
 import android.view.View;
 
+import com.coderchoy.barcodereaderview.decode.FocusControl;
+import com.coderchoy.barcodereaderview.decode.FocusSignal;
+import com.coderchoy.barcodereaderview.decode.FrameRateControl;
+import com.coderchoy.barcodereaderview.decode.FrameRecord;
+import com.coderchoy.barcodereaderview.decode.FrameSource;
+import com.coderchoy.barcodereaderview.decode.PlaneLayout;
+import com.coderchoy.barcodereaderview.decode.RotatedPlanarYUVLuminanceSource;
 import com.coderchoy.barcodereaderview.util.LogEx;
-import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.BarcodeFormat;
 import com.google.zxing.client.android.camera.open.OpenCamera;
 import com.google.zxing.client.android.camera.open.OpenCameraInterface;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * This object wraps the Camera service object and expects to be the only one talking to it. The
@@ -41,7 +52,7 @@ import java.io.IOException;
  *         Modified by CoderChoy on 2017/03/14
  */
 @SuppressWarnings("deprecation") // camera APIs
-public final class CameraManager {
+public final class CameraManager implements FrameSource, FrameRateControl, FocusControl {
 
     private static final String TAG = CameraManager.class.getSimpleName();
 
@@ -49,13 +60,16 @@ public final class CameraManager {
     private static final int MIN_FRAME_HEIGHT = 240;
     private static final int MAX_FRAME_WIDTH = 1200; // = 5/8 * 1920
     private static final int MAX_FRAME_HEIGHT = 675; // = 5/8 * 1080
+    private static final float DEFAULT_MIN_CODE_SIZE = 0.5f;
 
     private View view;
     private final CameraConfigurationManager configManager;
     private OpenCamera camera;
-    private AutoFocusManager autoFocusManager;
+    // Read without the lock by decode workers, see buildLuminanceSource().
+    private volatile AutoFocusManager autoFocusManager;
     private Rect framingRect;
     private Rect framingRectInPreview;
+    private volatile FrameGeometry frameGeometry;
     private boolean initialized;
     private boolean previewing;
     private int requestedCameraId = OpenCameraInterface.NO_REQUESTED_CAMERA;
@@ -67,8 +81,25 @@ public final class CameraManager {
      * clear the handler so it will only receive one message.
      */
     private final PreviewCallback previewCallback;
+    private volatile PreviewBufferPool previewBufferPool;
+    private int previewBufferCount;
+    private volatile int previewFormat = ImageFormat.NV21;
 
     private boolean mUseAutoFocus;
+    private PreviewSizePolicy previewSizePolicy = PreviewSizePolicy.MATCH_SCREEN;
+    private Collection<BarcodeFormat> decodeFormats;
+    private float minCodeSize = DEFAULT_MIN_CODE_SIZE;
+    private List<int[]> supportedFpsRanges;
+    private int[] fpsRange;
+    // Frames of another size may still be in flight after stepDownFrameSize().
+    private boolean frameSizeStepped;
+
+    // Background start, see openDriverAsync().
+    private HandlerThread cameraThread;
+    private Handler cameraHandler;
+    private int startGeneration;
+    // Opened but not yet configured; only touched on the camera thread.
+    private OpenCamera startingCamera;
 
     public CameraManager(View view) {
         this.view = view;
@@ -93,41 +124,176 @@ public final class CameraManager {
             }
             camera = theCamera;
         }
+        configure(theCamera, view.getWidth(), view.getHeight());
+        theCamera.getCamera().setPreviewDisplay(holder);
+    }
 
-        if (!initialized) {
-            initialized = true;
-            configManager.initFromCameraParameters(theCamera, view.getWidth(), view.getHeight());
-            if (requestedFramingRectWidth > 0 && requestedFramingRectHeight > 0) {
-                setManualFramingRect(requestedFramingRectWidth, requestedFramingRectHeight, requestedFramingRectTopOffset);
-                requestedFramingRectWidth = 0;
-                requestedFramingRectHeight = 0;
+    /**
+     * Like {@link #openDriver(SurfaceHolder)}, on a background thread so the caller can create the
+     * surface and set up decoding meanwhile. Opening starts right away; configuring waits for
+     * {@link #configureDriverAsync(SurfaceHolder, int, int)}, since it needs the surface and the
+     * size of the view. Until configured the camera is not visible to the other methods here, so
+     * they neither block on the driver nor touch a half-configured camera.
+     * <p>
+     * The camera delivers its callbacks to the thread that opened it, so preview frames and focus
+     * events then arrive on the camera thread rather than the main thread. The thread lives until
+     * {@link #closeDriver()}.
+     *
+     * @param callback Told about each step, on the camera thread.
+     */
+    public synchronized void openDriverAsync(final StartCallback callback) {
+        if (cameraThread != null || camera != null) {
+            return;
+        }
+        cameraThread = new HandlerThread("CameraThread");
+        cameraThread.start();
+        cameraHandler = new Handler(cameraThread.getLooper());
+        final int generation = startGeneration;
+        final int cameraId = requestedCameraId;
+        cameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isCurrentStart(generation)) {
+                    return;
+                }
+                OpenCamera theCamera = OpenCameraInterface.open(cameraId);
+                if (theCamera == null) {
+                    if (isCurrentStart(generation)) {
+                        callback.onCameraStartFailed(new IOException("Camera.open() failed to return object from driver"));
+                    }
+                    return;
+                }
+                if (!isCurrentStart(generation)) {
+                    theCamera.getCamera().release();
+                    return;
+                }
+                startingCamera = theCamera;
+                callback.onCameraOpened();
             }
+        });
+    }
+
+    /**
+     * Second half of {@link #openDriverAsync(StartCallback)}: sets the camera parameters and the
+     * preview display once the camera is open. The camera becomes visible, and
+     * {@link StartCallback#onCameraConfigured()} is called, when both are done.
+     *
+     * @param holder     The surface object which the camera will draw preview frames into.
+     * @param viewWidth  Width of the view the preview is shown in.
+     * @param viewHeight Height of the view the preview is shown in.
+     */
+    public synchronized void configureDriverAsync(final SurfaceHolder holder, final int viewWidth,
+                                                  final int viewHeight, final StartCallback callback) {
+        if (cameraHandler == null) {
+            return;
         }
+        final int generation = startGeneration;
+        cameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                OpenCamera theCamera = startingCamera;
+                if (theCamera == null) {
+                    // Opening failed, or the camera was closed meanwhile.
+                    return;
+                }
+                try {
+                    configure(theCamera, viewWidth, viewHeight);
+                    theCamera.getCamera().setPreviewDisplay(holder);
+                } catch (IOException | RuntimeException e) {
+                    startingCamera = null;
+                    theCamera.getCamera().release();
+                    if (isCurrentStart(generation)) {
+                        callback.onCameraStartFailed(e);
+                    }
+                    return;
+                }
+                synchronized (CameraManager.this) {
+                    if (generation != startGeneration) {
+                        return;
+                    }
+                    startingCamera = null;
+                    camera = theCamera;
+                }
+                callback.onCameraConfigured();
+            }
+        });
+    }
+
+    private synchronized boolean isCurrentStart(int generation) {
+        return generation == startGeneration;
+    }
 
+    private void configure(OpenCamera theCamera, int viewWidth, int viewHeight) {
         Camera cameraObject = theCamera.getCamera();
+        // Read once; setDesiredCameraParameters() modifies and sets this same object.
         Camera.Parameters parameters = cameraObject.getParameters();
+        synchronized (this) {
+            if (!initialized) {
+                initialized = true;
+                configManager.setPreviewSizePolicy(previewSizePolicy, decodeFormats, minCodeSize);
+                configManager.initFromCameraParameters(theCamera, parameters, viewWidth, viewHeight,
+                        estimateFramingSize(viewWidth, viewHeight));
+                if (requestedFramingRectWidth > 0 && requestedFramingRectHeight > 0) {
+                    setManualFramingRect(requestedFramingRectWidth, requestedFramingRectHeight,
+                            requestedFramingRectTopOffset);
+                    requestedFramingRectWidth = 0;
+                    requestedFramingRectHeight = 0;
+                }
+            }
+        }
+
+        if (configManager.isSafeModeKnownRequired()) {
+            // This camera rejected the full parameters before; don't wait for it to do so again.
+            try {
+                configManager.setDesiredCameraParameters(theCamera, parameters, true, mUseAutoFocus);
+            } catch (RuntimeException re) {
+                LogEx.w(TAG, "Camera rejected even safe-mode parameters! No configuration");
+                configManager.forgetCachedConfiguration();
+            }
+            onConfigured(parameters);
+            return;
+        }
         String parametersFlattened = parameters == null ? null : parameters.flatten(); // Save these, temporarily
         try {
-            configManager.setDesiredCameraParameters(theCamera, false, mUseAutoFocus);
+            configManager.setDesiredCameraParameters(theCamera, parameters, false, mUseAutoFocus);
         } catch (RuntimeException re) {
             // Driver failed
             LogEx.w(TAG, "Camera rejected parameters. Setting only minimal safe-mode parameters");
             LogEx.i(TAG, "Resetting to saved camera params: " + parametersFlattened);
+            configManager.forgetCachedConfiguration();
             // Reset:
             if (parametersFlattened != null) {
                 parameters = cameraObject.getParameters();
                 parameters.unflatten(parametersFlattened);
                 try {
                     cameraObject.setParameters(parameters);
-                    configManager.setDesiredCameraParameters(theCamera, true, mUseAutoFocus);
+                    configManager.setDesiredCameraParameters(theCamera, parameters, true, mUseAutoFocus);
                 } catch (RuntimeException re2) {
                     // Well, darn. Give up
                     LogEx.w(TAG, "Camera rejected even safe-mode parameters! No configuration");
                 }
             }
         }
-        cameraObject.setPreviewDisplay(holder);
+        onConfigured(parameters);
+    }
 
+    /**
+     * The camera may have corrected the preview size while it was configured.
+     */
+    private synchronized void onConfigured(Camera.Parameters parameters) {
+        readFpsRanges(parameters);
+        framingRectInPreview = null;
+        frameGeometry = null;
+    }
+
+    private void readFpsRanges(Camera.Parameters parameters) {
+        if (parameters == null) {
+            return;
+        }
+        supportedFpsRanges = parameters.getSupportedPreviewFpsRange();
+        int[] range = new int[2];
+        parameters.getPreviewFpsRange(range);
+        fpsRange = range;
     }
 
     public synchronized boolean isOpen() {
@@ -138,22 +304,48 @@ public final class CameraManager {
      * Closes the camera driver if still in use.
      */
     public synchronized void closeDriver() {
+        // A start in progress releases what it opened once it sees the generation moved on.
+        startGeneration++;
+        if (cameraThread != null) {
+            final HandlerThread thread = cameraThread;
+            cameraHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (startingCamera != null) {
+                        startingCamera.getCamera().release();
+                        startingCamera = null;
+                    }
+                    thread.quit();
+                }
+            });
+            cameraThread = null;
+            cameraHandler = null;
+        }
         if (camera != null) {
+            if (previewBufferPool != null) {
+                // Buffers released from now on must not go to the released camera.
+                previewBufferPool.onPreviewStopped();
+            }
             camera.getCamera().release();
             camera = null;
+            previewBufferPool = null;
             // Make sure to clear these each time we close the camera, so that any scanning rect
             // requested by intent is forgotten.
             framingRect = null;
             framingRectInPreview = null;
+            frameGeometry = null;
         }
     }
 
     /**
      * Asks the camera hardware to begin drawing preview frames to the screen.
      */
+    @Override
     public synchronized void startPreview() {
         OpenCamera theCamera = camera;
         if (theCamera != null && !previewing) {
+            previewFormat = theCamera.getCamera().getParameters().getPreviewFormat();
+            setUpPreviewBuffers(theCamera.getCamera());
             theCamera.getCamera().startPreview();
             previewing = true;
             autoFocusManager = new AutoFocusManager(theCamera.getCamera(), mUseAutoFocus);
@@ -163,6 +355,7 @@ public final class CameraManager {
     /**
      * Tells the camera to stop drawing preview frames.
      */
+    @Override
     public synchronized void stopPreview() {
         if (autoFocusManager != null) {
             autoFocusManager.stop();
@@ -170,11 +363,92 @@ public final class CameraManager {
         }
         if (camera != null && previewing) {
             camera.getCamera().stopPreview();
-            previewCallback.setHandler(null, 0);
+            previewCallback.setFrameCallback(null);
+            if (previewBufferPool != null) {
+                camera.getCamera().setPreviewCallbackWithBuffer(null);
+                previewCallback.setBufferPool(null);
+                previewBufferPool.onPreviewStopped();
+            }
             previewing = false;
         }
     }
 
+    /**
+     * Sets how many preview buffers are recycled through {@link Camera#addCallbackBuffer(byte[])}.
+     * With a positive count the camera fills buffers from a bounded pool instead of allocating a new
+     * frame for every callback, and the decoder must hand each frame back through
+     * {@link #releasePreviewBuffer(byte[])}. Zero (the default) keeps the one-shot callback.
+     * Takes effect the next time the preview starts.
+     *
+     * @param count number of buffers, at least 2 is needed to keep the camera busy while decoding
+     */
+    public synchronized void setPreviewBufferCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative buffer count: " + count);
+        }
+        previewBufferCount = count;
+    }
+
+    /**
+     * Gives a frame delivered by {@link #requestPreviewFrame(FrameCallback)} back to the camera once
+     * the caller is done reading it. Does nothing in one-shot mode.
+     *
+     * @param data The frame previously delivered in message.obj.
+     */
+    @Override
+    public void releasePreviewBuffer(byte[] data) {
+        PreviewBufferPool pool = previewBufferPool;
+        if (pool != null) {
+            pool.release(data);
+        }
+    }
+
+    /**
+     * @return counters of the preview buffer pool, or null in one-shot mode
+     */
+    public PreviewBufferStats getPreviewBufferStats() {
+        PreviewBufferPool pool = previewBufferPool;
+        return pool == null ? null : pool.getStats();
+    }
+
+    private void setUpPreviewBuffers(Camera theCamera) {
+        if (previewBufferCount <= 0) {
+            previewBufferPool = null;
+            return;
+        }
+        Camera.Parameters parameters = theCamera.getParameters();
+        Camera.Size previewSize = parameters.getPreviewSize();
+        int bufferSize = previewSize == null ? 0 : getFrameSize(parameters.getPreviewFormat(),
+                previewSize.width, previewSize.height);
+        if (bufferSize <= 0) {
+            LogEx.w(TAG, "Unknown preview size or format; falling back to one-shot preview callback");
+            previewBufferPool = null;
+            return;
+        }
+        if (previewBufferPool == null || previewBufferPool.getBufferSize() != bufferSize ||
+                previewBufferPool.getCapacity() != previewBufferCount) {
+            previewBufferPool = new PreviewBufferPool(bufferSize, previewBufferCount);
+            LogEx.i(TAG, "Preview buffer pool: " + previewBufferCount + " x " + bufferSize + " bytes");
+        }
+        previewCallback.setBufferPool(previewBufferPool);
+        theCamera.setPreviewCallbackWithBuffer(previewCallback);
+        previewBufferPool.queueAll(theCamera);
+    }
+
+    /**
+     * @return bytes in a preview frame, or 0 for an unknown format
+     */
+    private static int getFrameSize(int format, int width, int height) {
+        if (format == ImageFormat.YV12) {
+            // Rows are padded, see Camera.Parameters#setPreviewFormat(int).
+            int yStride = PlaneLayout.yv12(width).getRowStride();
+            int uvStride = (yStride / 2 + 15) / 16 * 16;
+            return yStride * height + uvStride * height / 2 * 2;
+        }
+        int bitsPerPixel = ImageFormat.getBitsPerPixel(format);
+        return bitsPerPixel <= 0 ? 0 : width * height * bitsPerPixel / 8;
+    }
+
     /**
      * 设置摄像头的自动对焦功能. 前提：设备需要支持自动对焦，否则无效。
      */
@@ -211,18 +485,20 @@ public final class CameraManager {
     }
 
     /**
-     * A single preview frame will be returned to the handler supplied. The data will arrive as byte[]
-     * in the message.obj field, with width and height encoded as message.arg1 and message.arg2,
-     * respectively.
+     * A single preview frame will be passed to the callback supplied, on the thread the camera
+     * delivers frames on. When preview buffers are in use the frame must be given back with
+     * {@link #releasePreviewBuffer(byte[])}.
      *
-     * @param handler The handler to send the message to.
-     * @param message The what field of the message to be sent.
+     * @param callback The callback to pass the frame to.
      */
-    public synchronized void requestPreviewFrame(Handler handler, int message) {
+    @Override
+    public synchronized void requestPreviewFrame(FrameCallback callback) {
         OpenCamera theCamera = camera;
         if (theCamera != null && previewing) {
-            previewCallback.setHandler(handler, message);
-            theCamera.getCamera().setOneShotPreviewCallback(previewCallback);
+            previewCallback.setFrameCallback(callback);
+            if (previewBufferPool == null) {
+                theCamera.getCamera().setOneShotPreviewCallback(previewCallback);
+            }
         }
     }
 
@@ -255,6 +531,18 @@ public final class CameraManager {
         return framingRect;
     }
 
+    /**
+     * @return the size {@link #getFramingRect()} will have once the camera is configured
+     */
+    private synchronized Point estimateFramingSize(int viewWidth, int viewHeight) {
+        if (requestedFramingRectWidth > 0 && requestedFramingRectHeight > 0) {
+            return new Point(Math.min(requestedFramingRectWidth, viewWidth),
+                    Math.min(requestedFramingRectHeight, viewHeight));
+        }
+        return new Point(findDesiredDimensionInRange(viewWidth, MIN_FRAME_WIDTH, MAX_FRAME_WIDTH),
+                findDesiredDimensionInRange(viewHeight, MIN_FRAME_HEIGHT, MAX_FRAME_HEIGHT));
+    }
+
     private static int findDesiredDimensionInRange(int resolution, int hardMin, int hardMax) {
         int dim = 5 * resolution / 8; // Target 5/8 of each dimension
         if (dim < hardMin) {
@@ -286,7 +574,8 @@ public final class CameraManager {
                 return null;
             }
 
-            if (view.getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
+            // The rect is expressed in the preview as rotated for decoding, see buildLuminanceSource().
+            if (configManager.getCWNeededRotation() % 180 != 0) {
                 rect.left = rect.left * cameraResolution.y / screenResolution.x;
                 rect.right = rect.right * cameraResolution.y / screenResolution.x;
                 rect.top = rect.top * cameraResolution.x / screenResolution.y;
@@ -299,11 +588,106 @@ public final class CameraManager {
             }
 
             framingRectInPreview = rect;
+            Point previewSize = configManager.getBestPreviewSize();
+            frameGeometry = new FrameGeometry(rect, configManager.getCWNeededRotation(), previewSize.x,
+                    previewSize.y, frameSizeStepped);
         }
         return framingRectInPreview;
     }
 
 
+    @Override
+    public synchronized List<int[]> getSupportedFpsRanges() {
+        return camera == null ? null : supportedFpsRanges;
+    }
+
+    @Override
+    public synchronized int[] getFpsRange() {
+        return camera == null || fpsRange == null ? null : fpsRange.clone();
+    }
+
+    @Override
+    public synchronized boolean setFpsRange(int minFps, int maxFps) {
+        OpenCamera theCamera = camera;
+        if (theCamera == null) {
+            return false;
+        }
+        try {
+            Camera.Parameters parameters = theCamera.getCamera().getParameters();
+            parameters.setPreviewFpsRange(minFps, maxFps);
+            theCamera.getCamera().setParameters(parameters);
+        } catch (RuntimeException re) {
+            LogEx.w(TAG, "Camera rejected FPS range " + minFps + '-' + maxFps, re);
+            return false;
+        }
+        fpsRange = new int[]{minFps, maxFps};
+        return true;
+    }
+
+    @Override
+    public synchronized boolean stepDownFrameSize() {
+        OpenCamera theCamera = camera;
+        if (theCamera == null || !previewing) {
+            return false;
+        }
+        Camera cameraObject = theCamera.getCamera();
+        Camera.Parameters parameters = cameraObject.getParameters();
+        Point next = CameraConfigurationUtils.findNextSmallerPreviewSizeValue(parameters,
+                configManager.getBestPreviewSize());
+        if (next == null) {
+            return false;
+        }
+        stopPreview();
+        boolean changed = true;
+        try {
+            configManager.setPreviewSize(cameraObject, parameters, next);
+        } catch (RuntimeException re) {
+            LogEx.w(TAG, "Camera rejected preview size " + next, re);
+            changed = false;
+        }
+        frameSizeStepped = true;
+        // Replaced rather than cleared, so workers never wait for the lock held during the restart.
+        framingRectInPreview = null;
+        if (getFramingRectInPreview() == null) {
+            frameGeometry = null;
+        }
+        startPreview();
+        return changed;
+    }
+
+    @Override
+    public void onFocusSignal(FocusSignal signal) {
+        AutoFocusManager manager = autoFocusManager;
+        if (manager != null) {
+            manager.onFocusSignal(signal);
+        }
+    }
+
+    /**
+     * Sets how the preview size is chosen. Takes effect when the camera is next opened.
+     *
+     * @param policy      How to choose the preview size.
+     * @param formats     Formats that will be decoded; null means QR codes only.
+     * @param minCodeSize Smallest code expected, as a fraction of the shorter side of the framing
+     *                    rect, for {@link PreviewSizePolicy#DECODE_COST}.
+     */
+    public synchronized void setPreviewSizePolicy(PreviewSizePolicy policy, Collection<BarcodeFormat> formats,
+                                                  float minCodeSize) {
+        if (minCodeSize <= 0f || minCodeSize > 1f) {
+            throw new IllegalArgumentException("Code size out of (0, 1]: " + minCodeSize);
+        }
+        this.previewSizePolicy = policy;
+        this.decodeFormats = formats;
+        this.minCodeSize = minCodeSize;
+    }
+
+    /**
+     * @return how the preview size was chosen, or null until the camera is configured
+     */
+    public synchronized PreviewSizeChoice getPreviewSizeChoice() {
+        return camera == null ? null : configManager.getPreviewSizeChoice();
+    }
+
     /**
      * Allows third party apps to specify the camera ID, rather than determine
      * it automatically based on available cameras and their orientation.
@@ -344,6 +728,7 @@ public final class CameraManager {
             framingRect = new Rect(leftOffset, topOffset, leftOffset + width, topOffset + height);
             LogEx.d(TAG, "Calculated manual framing rect: " + framingRect);
             framingRectInPreview = null;
+            frameGeometry = null;
         } else {
             requestedFramingRectWidth = width;
             requestedFramingRectHeight = height;
@@ -353,21 +738,119 @@ public final class CameraManager {
 
     /**
      * A factory method to build the appropriate LuminanceSource object based on the format
-     * of the preview buffers, as described by Camera.Parameters.
+     * of the preview buffers, as described by Camera.Parameters. The frame is read as rotated by
+     * {@link CameraConfigurationManager#getCWNeededRotation()}, and only the framing rect is read.
      *
-     * @param data   A preview frame.
+     * @param data   A preview frame, as delivered by the camera (not rotated).
      * @param width  The width of the image.
      * @param height The height of the image.
-     * @return A PlanarYUVLuminanceSource instance.
+     * @return A RotatedPlanarYUVLuminanceSource instance.
      */
-    public PlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height) {
-        Rect rect = getFramingRectInPreview();
-        if (rect == null) {
+    @Override
+    public RotatedPlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height) {
+        FrameGeometry geometry = getFrameGeometry();
+        if (geometry == null) {
+            return null;
+        }
+        if (geometry.sizeStepped && (width != geometry.previewWidth || height != geometry.previewHeight)) {
+            // Captured before the frame size was stepped down; the framing rect no longer fits it.
             return null;
         }
+        Rect rect = geometry.framingRect;
         // Go ahead and assume it's YUV rather than die.
-        return new PlanarYUVLuminanceSource(data, width, height, rect.left, rect.top,
-                rect.width(), rect.height(), false);
+        return new RotatedPlanarYUVLuminanceSource(data, getPreviewLayout(width), width, height,
+                geometry.rotation, rect.left, rect.top, rect.width(), rect.height());
+    }
+
+    /**
+     * Like {@link #buildLuminanceSource(byte[], int, int)}, for a frame held in a heap, direct or
+     * mapped buffer. The buffer is read in place, from its position on.
+     *
+     * @param data   A frame of the preview size, not rotated.
+     * @param layout Where the Y plane lies in the buffer.
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @return A RotatedPlanarYUVLuminanceSource instance.
+     */
+    public RotatedPlanarYUVLuminanceSource buildLuminanceSource(ByteBuffer data, PlaneLayout layout,
+                                                               int width, int height) {
+        FrameGeometry geometry = getFrameGeometry();
+        if (geometry == null) {
+            return null;
+        }
+        Rect rect = geometry.framingRect;
+        return new RotatedPlanarYUVLuminanceSource(data, layout, width, height,
+                geometry.rotation, rect.left, rect.top, rect.width(), rect.height());
+    }
+
+    @Override
+    public FrameRecord describeFrame(byte[] data, int width, int height) {
+        FrameGeometry geometry = getFrameGeometry();
+        if (geometry == null) {
+            return null;
+        }
+        Rect rect = geometry.framingRect;
+        AutoFocusManager manager = autoFocusManager;
+        int focusState = manager == null ? FrameRecord.FOCUS_UNKNOWN : manager.getFocusState();
+        return new FrameRecord(width, height, getPreviewLayout(width), geometry.rotation,
+                rect.left, rect.top, rect.width(), rect.height(), focusState,
+                System.nanoTime(), System.currentTimeMillis());
+    }
+
+    /**
+     * @return the geometry published by {@link #getFramingRectInPreview()}, computing it under the
+     * lock only the first time after it changed
+     */
+    private FrameGeometry getFrameGeometry() {
+        FrameGeometry geometry = frameGeometry;
+        if (geometry == null) {
+            synchronized (this) {
+                getFramingRectInPreview();
+                geometry = frameGeometry;
+            }
+        }
+        return geometry;
+    }
+
+    /**
+     * @return the layout of the Y plane in preview frames of the given width
+     */
+    public PlaneLayout getPreviewLayout(int width) {
+        return previewFormat == ImageFormat.YV12 ? PlaneLayout.yv12(width) : PlaneLayout.packed(width);
+    }
+
+    /**
+     * How preview frames are read, as of the last configuration. Immutable, so decode workers can read
+     * it without the lock.
+     */
+    private static final class FrameGeometry {
+
+        // In the preview as rotated for decoding; never modified once published.
+        final Rect framingRect;
+        final int rotation;
+        final int previewWidth;
+        final int previewHeight;
+        final boolean sizeStepped;
+
+        FrameGeometry(Rect framingRect, int rotation, int previewWidth, int previewHeight, boolean sizeStepped) {
+            this.framingRect = new Rect(framingRect);
+            this.rotation = rotation;
+            this.previewWidth = previewWidth;
+            this.previewHeight = previewHeight;
+            this.sizeStepped = sizeStepped;
+        }
+    }
+
+    /**
+     * Progress of {@link #openDriverAsync(StartCallback)}. Called on the camera thread.
+     */
+    public interface StartCallback {
+
+        void onCameraOpened();
+
+        void onCameraConfigured();
+
+        void onCameraStartFailed(Exception e);
     }
 
 }
@@ -0,0 +1,133 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.google.zxing.client.android.camera;
+
+import android.hardware.Camera;
+
+import java.util.ArrayDeque;
+
+/**
+ * A bounded pool of preview buffers used with {@link Camera#setPreviewCallbackWithBuffer}. Every
+ * buffer is in exactly one of three places: free in this pool, queued in the camera waiting to be
+ * filled, or checked out to the decoder. Buffers checked out to the decoder must be handed back
+ * through {@link CameraManager#releasePreviewBuffer(byte[])}.
+ */
+@SuppressWarnings("deprecation") // camera APIs
+final class PreviewBufferPool {
+
+    private final int bufferSize;
+    private final int capacity;
+    private final ArrayDeque<byte[]> freeBuffers;
+    // The camera filling the queued buffers; null while the preview is stopped.
+    private Camera camera;
+    private int allocatedCount;
+    private int queuedCount;
+    private long deliveredCount;
+    private long droppedCount;
+    private long exhaustedCount;
+
+    PreviewBufferPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+        this.freeBuffers = new ArrayDeque<>(capacity);
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Hands every buffer not currently checked out to the camera, allocating up to the capacity.
+     */
+    synchronized void queueAll(Camera camera) {
+        this.camera = camera;
+        while (true) {
+            byte[] buffer = freeBuffers.poll();
+            if (buffer == null) {
+                if (allocatedCount >= capacity) {
+                    return;
+                }
+                buffer = new byte[bufferSize];
+                allocatedCount++;
+            }
+            camera.addCallbackBuffer(buffer);
+            queuedCount++;
+        }
+    }
+
+    /**
+     * A filled buffer left the camera and was passed on to the decoder.
+     */
+    synchronized void onFrameDelivered() {
+        queuedCount--;
+        deliveredCount++;
+        if (queuedCount <= 0) {
+            // The camera has nothing left to fill; it drops frames until the decoder gives one back.
+            queuedCount = 0;
+            exhaustedCount++;
+        }
+    }
+
+    /**
+     * A filled buffer left the camera but nobody asked for a frame, so it goes straight back.
+     */
+    synchronized void onFrameDropped(byte[] buffer) {
+        queuedCount--;
+        droppedCount++;
+        requeue(buffer);
+    }
+
+    /**
+     * Returns a buffer checked out by the decoder. If the preview has stopped the buffer is kept in
+     * the pool for the next {@link #queueAll(Camera)}.
+     */
+    synchronized void release(byte[] buffer) {
+        if (buffer == null || buffer.length != bufferSize) {
+            // Not one of ours, e.g. a frame from one-shot mode or a previous preview size.
+            return;
+        }
+        requeue(buffer);
+    }
+
+    /**
+     * The camera forgets its queued buffers once the preview callback is cleared.
+     */
+    synchronized void onPreviewStopped() {
+        camera = null;
+        allocatedCount -= queuedCount;
+        queuedCount = 0;
+    }
+
+    synchronized PreviewBufferStats getStats() {
+        return new PreviewBufferStats(capacity, bufferSize, allocatedCount, freeBuffers.size(), queuedCount,
+                deliveredCount, droppedCount, exhaustedCount);
+    }
+
+    private void requeue(byte[] buffer) {
+        if (camera != null) {
+            camera.addCallbackBuffer(buffer);
+            queuedCount++;
+        } else if (freeBuffers.size() < allocatedCount) {
+            freeBuffers.offer(buffer);
+        }
+    }
+
+}
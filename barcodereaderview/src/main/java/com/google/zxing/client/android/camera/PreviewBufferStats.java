@@ -0,0 +1,110 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+package com.google.zxing.client.android.camera;
+
+/**
+ * A snapshot of the preview buffer pool counters, used to tune the buffer count per device.
+ */
+public final class PreviewBufferStats {
+
+    private final int capacity;
+    private final int bufferSize;
+    private final int allocatedCount;
+    private final int freeCount;
+    private final int queuedCount;
+    private final long deliveredCount;
+    private final long droppedCount;
+    private final long exhaustedCount;
+
+    PreviewBufferStats(int capacity, int bufferSize, int allocatedCount, int freeCount, int queuedCount,
+                       long deliveredCount, long droppedCount, long exhaustedCount) {
+        this.capacity = capacity;
+        this.bufferSize = bufferSize;
+        this.allocatedCount = allocatedCount;
+        this.freeCount = freeCount;
+        this.queuedCount = queuedCount;
+        this.deliveredCount = deliveredCount;
+        this.droppedCount = droppedCount;
+        this.exhaustedCount = exhaustedCount;
+    }
+
+    /**
+     * @return maximum number of buffers the pool may allocate
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return size in bytes of a single preview buffer
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getAllocatedCount() {
+        return allocatedCount;
+    }
+
+    /**
+     * @return buffers idle in the pool, neither queued in the camera nor held by the decoder
+     */
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    /**
+     * @return buffers queued in the camera waiting to be filled
+     */
+    public int getQueuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * @return frames handed to the decoder
+     */
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * @return frames filled by the camera while no decode was requested, returned unread
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return times the camera was left without a buffer to fill because all were held by the decoder
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "PreviewBufferStats{capacity=" + capacity +
+                ", bufferSize=" + bufferSize +
+                ", allocated=" + allocatedCount +
+                ", free=" + freeCount +
+                ", queued=" + queuedCount +
+                ", delivered=" + deliveredCount +
+                ", dropped=" + droppedCount +
+                ", exhausted=" + exhaustedCount +
+                '}';
+    }
+}
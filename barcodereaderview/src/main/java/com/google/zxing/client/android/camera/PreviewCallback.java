@@ -18,9 +18,8 @@ package com.google.zxing.client.android.camera;
 
 import android.graphics.Point;
 import android.hardware.Camera;
-import android.os.Handler;
-import android.os.Message;
 
+import com.coderchoy.barcodereaderview.decode.FrameSource;
 import com.coderchoy.barcodereaderview.util.LogEx;
 
 @SuppressWarnings("deprecation") // camera APIs
@@ -29,29 +28,42 @@ final class PreviewCallback implements Camera.PreviewCallback {
     private static final String TAG = PreviewCallback.class.getSimpleName();
 
     private final CameraConfigurationManager configManager;
-    private Handler previewHandler;
-    private int previewMessage;
+    // Frames may be requested from decode threads as well as the main thread.
+    private volatile FrameSource.FrameCallback frameCallback;
+    private volatile PreviewBufferPool bufferPool;
 
     PreviewCallback(CameraConfigurationManager configManager) {
         this.configManager = configManager;
     }
 
-    void setHandler(Handler previewHandler, int previewMessage) {
-        this.previewHandler = previewHandler;
-        this.previewMessage = previewMessage;
+    void setFrameCallback(FrameSource.FrameCallback frameCallback) {
+        this.frameCallback = frameCallback;
+    }
+
+    /**
+     * @param bufferPool the pool feeding {@link Camera#addCallbackBuffer(byte[])}, or null for one-shot mode
+     */
+    void setBufferPool(PreviewBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
     }
 
     @Override
     public void onPreviewFrame(byte[] data, Camera camera) {
         Point cameraResolution = configManager.getCameraResolution();
-        Handler thePreviewHandler = previewHandler;
-        if (cameraResolution != null && thePreviewHandler != null) {
-            Message message = thePreviewHandler.obtainMessage(previewMessage, cameraResolution.x,
-                    cameraResolution.y, data);
-            message.sendToTarget();
-            previewHandler = null;
+        FrameSource.FrameCallback theFrameCallback = frameCallback;
+        PreviewBufferPool theBufferPool = bufferPool;
+        if (cameraResolution != null && theFrameCallback != null) {
+            // Counted before it is passed on: a worker may decode and release the buffer at once.
+            if (theBufferPool != null) {
+                theBufferPool.onFrameDelivered();
+            }
+            frameCallback = null;
+            theFrameCallback.onPreviewFrame(data, cameraResolution.x, cameraResolution.y);
         } else {
-            LogEx.d(TAG, "Got preview callback, but no handler or resolution available");
+            LogEx.d(TAG, "Got preview callback, but no callback or resolution available");
+            if (theBufferPool != null && data != null) {
+                theBufferPool.onFrameDropped(data);
+            }
         }
     }
 
@@ -0,0 +1,125 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.google.zxing.client.android.camera;
+
+import android.graphics.Point;
+
+import com.google.zxing.BarcodeFormat;
+
+import java.util.Locale;
+
+/**
+ * The preview size a {@link PreviewSizePolicy} settled on, and why.
+ */
+public final class PreviewSizeChoice {
+
+    private final PreviewSizePolicy policy;
+    private final Point previewSize;
+    private final Point screenMatchSize;
+    private final BarcodeFormat limitingFormat;
+    private final int modules;
+    private final float requiredPixelsPerModule;
+    private final float pixelsPerModule;
+    private final boolean fromCache;
+
+    PreviewSizeChoice(PreviewSizePolicy policy, Point previewSize, Point screenMatchSize,
+                      BarcodeFormat limitingFormat, int modules, float requiredPixelsPerModule,
+                      float pixelsPerModule, boolean fromCache) {
+        this.policy = policy;
+        this.previewSize = new Point(previewSize);
+        this.screenMatchSize = screenMatchSize == null ? null : new Point(screenMatchSize);
+        this.limitingFormat = limitingFormat;
+        this.modules = modules;
+        this.requiredPixelsPerModule = requiredPixelsPerModule;
+        this.pixelsPerModule = pixelsPerModule;
+        this.fromCache = fromCache;
+    }
+
+    /**
+     * @return the policy in effect
+     */
+    public PreviewSizePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the chosen preview size, as the camera delivers it (not rotated)
+     */
+    public Point getPreviewSize() {
+        return new Point(previewSize);
+    }
+
+    /**
+     * @return the size {@link PreviewSizePolicy#MATCH_SCREEN} picks, for comparison; null when the
+     * choice was taken from the cache, as nothing was computed then
+     */
+    public Point getScreenMatchSize() {
+        return screenMatchSize == null ? null : new Point(screenMatchSize);
+    }
+
+    /**
+     * @return the format among those decoded that needs the most pixels across a code
+     */
+    public BarcodeFormat getLimitingFormat() {
+        return limitingFormat;
+    }
+
+    /**
+     * @return modules across a typical code of {@link #getLimitingFormat()}, as assumed
+     */
+    public int getModules() {
+        return modules;
+    }
+
+    /**
+     * @return pixels per module {@link #getLimitingFormat()} needs to decode reliably
+     */
+    public float getRequiredPixelsPerModule() {
+        return requiredPixelsPerModule;
+    }
+
+    /**
+     * @return pixels per module the smallest expected code of {@link #getLimitingFormat()} gets at the
+     * chosen size
+     */
+    public float getPixelsPerModule() {
+        return pixelsPerModule;
+    }
+
+    /**
+     * @return whether the chosen size gives the smallest expected code enough pixels per module
+     */
+    public boolean isRequirementMet() {
+        return pixelsPerModule >= requiredPixelsPerModule;
+    }
+
+    /**
+     * @return whether the size was taken from the configuration an earlier session cached
+     */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "PreviewSizeChoice{%s %dx%d%s, %s %d modules, %.1f px/module (need %.1f)%s}",
+                policy, previewSize.x, previewSize.y,
+                screenMatchSize == null || screenMatchSize.equals(previewSize) ? "" : " instead of " + screenMatchSize.x + 'x' + screenMatchSize.y,
+                limitingFormat, modules, pixelsPerModule, requiredPixelsPerModule, fromCache ? ", cached" : "");
+    }
+}
@@ -0,0 +1,38 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.google.zxing.client.android.camera;
+
+/**
+ * How the preview size is chosen among the sizes the camera supports.
+ */
+public enum PreviewSizePolicy {
+
+    /**
+     * The size whose aspect ratio is closest to the view's, an exact match winning outright. Often
+     * the largest stream the camera offers, which then has to be decoded in full.
+     */
+    MATCH_SCREEN,
+
+    /**
+     * The smallest size that still gives the smallest expected code enough pixels per module in the
+     * framing rect, for the formats being decoded. Sizes that would visibly stretch the preview are
+     * left out. If no size is large enough, the one that comes closest is taken.
+     */
+    DECODE_COST
+
+}
@@ -0,0 +1,94 @@
+package com.coderchoy.barcodereaderview.decode;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FormatSchedulerTest {
+
+    private static final List<BarcodeFormat> FORMATS =
+            Arrays.asList(BarcodeFormat.CODE_128, BarcodeFormat.EAN_13, BarcodeFormat.QR_CODE);
+
+    @Test
+    public void nextPlan_withoutStats_keepsEveryFormat() throws Exception {
+        FormatScheduler scheduler = new FormatScheduler();
+        List<BarcodeFormat> plan = scheduler.nextPlan(FORMATS);
+        assertEquals(3, plan.size());
+        assertTrue(plan.containsAll(FORMATS));
+    }
+
+    @Test
+    public void nextPlan_ordersByHitsPerNanosecond() throws Exception {
+        FormatScheduler scheduler = new FormatScheduler();
+        // Same hit rate as QR_CODE but ten times the cost.
+        record(scheduler, BarcodeFormat.CODE_128, 10, 8, 10000000L);
+        // Same cost as QR_CODE but a low hit rate.
+        record(scheduler, BarcodeFormat.EAN_13, 10, 1, 1000000L);
+        record(scheduler, BarcodeFormat.QR_CODE, 10, 8, 1000000L);
+        assertEquals(Arrays.asList(BarcodeFormat.QR_CODE, BarcodeFormat.EAN_13, BarcodeFormat.CODE_128),
+                scheduler.nextPlan(FORMATS));
+    }
+
+    @Test
+    public void nextPlan_triesUntimedFormatEarly() throws Exception {
+        FormatScheduler scheduler = new FormatScheduler();
+        record(scheduler, BarcodeFormat.CODE_128, 10, 1, 20000000L);
+        record(scheduler, BarcodeFormat.QR_CODE, 10, 1, 20000000L);
+        assertEquals(BarcodeFormat.EAN_13, scheduler.nextPlan(FORMATS).get(0));
+    }
+
+    @Test
+    public void nextPlan_samplesColdFormatOncePerInterval() throws Exception {
+        FormatScheduler scheduler = new FormatScheduler();
+        record(scheduler, BarcodeFormat.QR_CODE, 100, 100, 1000000L);
+        record(scheduler, BarcodeFormat.CODE_128, 100, 50, 1000000L);
+        record(scheduler, BarcodeFormat.EAN_13, 100, 1, 1000000L);
+        int sampled = 0;
+        for (int i = 0; i < 16; i++) {
+            List<BarcodeFormat> plan = scheduler.nextPlan(FORMATS);
+            assertTrue(plan.contains(BarcodeFormat.QR_CODE));
+            assertTrue(plan.contains(BarcodeFormat.CODE_128));
+            if (plan.contains(BarcodeFormat.EAN_13)) {
+                // The first plan and every eighth after it.
+                assertEquals(0, i % 8);
+                sampled++;
+            }
+        }
+        assertEquals(2, sampled);
+    }
+
+    @Test
+    public void nextPlan_noColdFormatsUntilEnoughHits() throws Exception {
+        FormatScheduler scheduler = new FormatScheduler();
+        record(scheduler, BarcodeFormat.QR_CODE, 19, 19, 1000000L);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(3, scheduler.nextPlan(FORMATS).size());
+        }
+    }
+
+    @Test
+    public void decay_letsOrderFollowNewLabels() throws Exception {
+        FormatScheduler scheduler = new FormatScheduler();
+        record(scheduler, BarcodeFormat.QR_CODE, 990, 990, 1000000L);
+        record(scheduler, BarcodeFormat.CODE_128, 1000, 0, 1000000L);
+        assertEquals(BarcodeFormat.QR_CODE, scheduler.nextPlan(FORMATS).get(0));
+        // The labels change: halving on every thousandth hit lets the new format catch up.
+        record(scheduler, BarcodeFormat.CODE_128, 2000, 2000, 1000000L);
+        record(scheduler, BarcodeFormat.QR_CODE, 100, 0, 1000000L);
+        assertEquals(BarcodeFormat.CODE_128, scheduler.nextPlan(FORMATS).get(0));
+    }
+
+    private static void record(FormatScheduler scheduler, BarcodeFormat format, int attempts, int hits,
+                               long costNanos) {
+        for (int i = 0; i < attempts; i++) {
+            scheduler.record(format, costNanos, i < hits);
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.coderchoy.barcodereaderview.decode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameRateControllerTest {
+
+    private static final List<int[]> RANGES = Arrays.asList(
+            new int[]{15000, 15000}, new int[]{7500, 30000}, new int[]{15000, 30000}, new int[]{30000, 30000},
+            new int[]{10000, 20000});
+
+    private FakeControl control;
+
+    @Before
+    public void setUp() throws Exception {
+        control = new FakeControl();
+    }
+
+    @Test
+    public void chooseRange_lowestMaximumAtOrAboveTarget() throws Exception {
+        assertArrayEquals(new int[]{15000, 15000}, FrameRateController.chooseRange(RANGES, 12000));
+        assertArrayEquals(new int[]{10000, 20000}, FrameRateController.chooseRange(RANGES, 15001));
+        assertArrayEquals(new int[]{10000, 20000}, FrameRateController.chooseRange(RANGES, 20000));
+    }
+
+    @Test
+    public void chooseRange_prefersLowerMinimumOnTie() throws Exception {
+        assertArrayEquals(new int[]{7500, 30000}, FrameRateController.chooseRange(RANGES, 25000));
+    }
+
+    @Test
+    public void chooseRange_fastestWhenNoneReachesTarget() throws Exception {
+        assertArrayEquals(new int[]{7500, 30000}, FrameRateController.chooseRange(RANGES, 60000));
+    }
+
+    @Test
+    public void chooseRange_slowestForZeroTarget() throws Exception {
+        assertArrayEquals(new int[]{15000, 15000}, FrameRateController.chooseRange(RANGES, 0));
+    }
+
+    @Test
+    public void evaluate_setsRangeCoveringTwiceTheCapacity() throws Exception {
+        FrameRateController controller = new FrameRateController(control, 1, false);
+        // 100 ms a frame on one worker: 10 fps, covered by 20 fps.
+        decode(controller, 100);
+        assertFalse(controller.evaluate());
+        assertArrayEquals(new int[]{10000, 20000}, control.range);
+    }
+
+    @Test
+    public void evaluate_waitsForEnoughSamples() throws Exception {
+        FrameRateController controller = new FrameRateController(control, 1, false);
+        for (int i = 0; i < 4; i++) {
+            controller.onFrameDecoded(100000000L, false);
+        }
+        assertFalse(controller.evaluate());
+        assertArrayEquals(new int[]{7500, 30000}, control.range);
+    }
+
+    @Test
+    public void evaluate_settlesAfterChange() throws Exception {
+        FrameRateController controller = new FrameRateController(control, 1, false);
+        decode(controller, 100);
+        controller.evaluate();
+        control.range = new int[]{7500, 30000};
+        for (int i = 0; i < 2; i++) {
+            decode(controller, 100);
+            controller.evaluate();
+            assertArrayEquals(new int[]{7500, 30000}, control.range);
+        }
+        decode(controller, 100);
+        controller.evaluate();
+        assertArrayEquals(new int[]{10000, 20000}, control.range);
+    }
+
+    @Test
+    public void evaluate_stepsSizeDownWhenBehindSlowestRange() throws Exception {
+        // No frame is ever dropped by the pool, as without pipelining: only the service time shows it.
+        FrameRateController controller = new FrameRateController(control, 2, true);
+        control.range = new int[]{15000, 15000};
+        // 400 ms a frame on two workers: 5 fps against the 15 fps of the slowest range.
+        for (int i = 0; i < 2; i++) {
+            decode(controller, 400);
+            assertFalse(controller.evaluate());
+        }
+        decode(controller, 400);
+        assertTrue(controller.evaluate());
+        assertEquals(1, control.stepDowns);
+    }
+
+    @Test
+    public void evaluate_stepsSizeDownWhenQueueStaysFull() throws Exception {
+        // Pipelined: the capacity looks sufficient, but frames keep waiting for a worker.
+        FrameRateController controller = new FrameRateController(control, 2, true);
+        control.range = new int[]{15000, 15000};
+        // 120 ms a frame on two workers: 16.7 fps, no shortfall against 15 fps.
+        for (int i = 0; i < 2; i++) {
+            decode(controller, 120, true);
+            assertFalse(controller.evaluate());
+        }
+        decode(controller, 120, true);
+        assertTrue(controller.evaluate());
+        assertEquals(1, control.stepDowns);
+    }
+
+    @Test
+    public void evaluate_keepsSizeWhenQueueDrains() throws Exception {
+        FrameRateController controller = new FrameRateController(control, 2, true);
+        control.range = new int[]{15000, 15000};
+        for (int i = 0; i < 5; i++) {
+            // A burst now and then leaves the queue full, most decodes find it drained.
+            for (int j = 0; j < 10; j++) {
+                controller.onFrameDecoded(120000000L, j < 3);
+            }
+            assertFalse(controller.evaluate());
+        }
+        assertEquals(0, control.stepDowns);
+    }
+
+    @Test
+    public void evaluate_keepsSizeWhenKeepingUp() throws Exception {
+        FrameRateController controller = new FrameRateController(control, 2, true);
+        control.range = new int[]{15000, 15000};
+        // 150 ms a frame on two workers: 13.3 fps, within the tolerance of 15 fps.
+        for (int i = 0; i < 5; i++) {
+            decode(controller, 150);
+            assertFalse(controller.evaluate());
+        }
+        assertEquals(0, control.stepDowns);
+    }
+
+    @Test
+    public void evaluate_keepsSizeWhenNotAllowed() throws Exception {
+        FrameRateController controller = new FrameRateController(control, 1, false);
+        control.range = new int[]{15000, 15000};
+        for (int i = 0; i < 5; i++) {
+            decode(controller, 400);
+            assertFalse(controller.evaluate());
+        }
+        assertEquals(0, control.stepDowns);
+    }
+
+    private static void decode(FrameRateController controller, long serviceMs) {
+        decode(controller, serviceMs, false);
+    }
+
+    private static void decode(FrameRateController controller, long serviceMs, boolean queueFull) {
+        for (int i = 0; i < 10; i++) {
+            controller.onFrameDecoded(serviceMs * 1000000L, queueFull);
+        }
+    }
+
+    private static final class FakeControl implements FrameRateControl {
+
+        int[] range = {7500, 30000};
+        int stepDowns;
+
+        @Override
+        public List<int[]> getSupportedFpsRanges() {
+            return RANGES;
+        }
+
+        @Override
+        public int[] getFpsRange() {
+            return range;
+        }
+
+        @Override
+        public boolean setFpsRange(int minFps, int maxFps) {
+            range = new int[]{minFps, maxFps};
+            return true;
+        }
+
+        @Override
+        public boolean stepDownFrameSize() {
+            stepDowns++;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.coderchoy.barcodereaderview.decode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_tileTheRangeWithoutGaps() throws Exception {
+        int last = LatencyHistogram.bucketOf(Long.MAX_VALUE);
+        assertEquals(0L, LatencyHistogram.lowerBoundOf(0));
+        for (int bucket = 0; bucket < last; bucket++) {
+            long lower = LatencyHistogram.lowerBoundOf(bucket);
+            long width = LatencyHistogram.widthOf(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(lower));
+            assertEquals(bucket, LatencyHistogram.bucketOf(lower + width - 1));
+            assertEquals(lower + width, LatencyHistogram.lowerBoundOf(bucket + 1));
+        }
+    }
+
+    @Test
+    public void buckets_withinAnEighthOfTheValue() throws Exception {
+        for (long micros = 8L; micros < 1L << 27; micros = micros * 3 / 2 + 1) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            assertTrue(LatencyHistogram.widthOf(bucket) * 8 <= LatencyHistogram.lowerBoundOf(bucket));
+        }
+    }
+
+    @Test
+    public void bucketOf_clampsToLastBucket() throws Exception {
+        int last = LatencyHistogram.bucketOf(Long.MAX_VALUE);
+        assertEquals(last, LatencyHistogram.bucketOf(1L << 40));
+        // About two minutes still has a bucket of its own.
+        assertTrue(LatencyHistogram.bucketOf(120000000L) < last);
+    }
+
+    @Test
+    public void snapshot_empty() throws Exception {
+        StageLatency latency = new LatencyHistogram().snapshot();
+        assertEquals(0L, latency.getCount());
+        assertEquals(0f, latency.getMeanMs(), 0f);
+        assertEquals(0f, latency.getPercentileMs(50), 0f);
+    }
+
+    @Test
+    public void snapshot_percentilesWithinAnEighth() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 ms to 100 ms, one value each.
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1000000L);
+        }
+        StageLatency latency = histogram.snapshot();
+        assertEquals(100L, latency.getCount());
+        assertEquals(50.5f, latency.getMeanMs(), 0.001f);
+        assertEquals(100f, latency.getMaxMs(), 0f);
+        assertEquals(50f, latency.getPercentileMs(50), 50f / 8);
+        assertEquals(90f, latency.getPercentileMs(90), 90f / 8);
+        assertEquals(99f, latency.getPercentileMs(99), 99f / 8);
+        assertEquals(1f, latency.getPercentileMs(0), 1f / 8);
+    }
+
+    @Test
+    public void snapshot_percentileNeverBeyondMax() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000000000L);
+        StageLatency latency = histogram.snapshot();
+        assertEquals(1000f, latency.getPercentileMs(100), 0f);
+    }
+
+    @Test
+    public void record_negativeCountsAsZero() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5000L);
+        StageLatency latency = histogram.snapshot();
+        assertEquals(1L, latency.getCount());
+        assertEquals(0f, latency.getMaxMs(), 0f);
+    }
+
+    @Test
+    public void record_concurrentlyLosesNothing() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record((i % 50 + offset) * 1000L);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        StageLatency latency = histogram.snapshot();
+        assertEquals(40000L, latency.getCount());
+        assertEquals(0.052f, latency.getMaxMs(), 0f);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.coderchoy.barcodereaderview.decode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Drives the producer side of the replay the way {@link TimedFrameSource} does, without its thread.
+ */
+public class RecordedFrameSourceTest {
+
+    private static final int FRAME_COUNT = 20;
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 6;
+
+    private File segment;
+
+    @Before
+    public void setUp() throws Exception {
+        segment = File.createTempFile(FrameRecorder.SEGMENT_PREFIX, FrameRecorder.SEGMENT_SUFFIX);
+        ByteBuffer out = ByteBuffer.allocate(FrameRecorder.SEGMENT_HEADER_SIZE +
+                FRAME_COUNT * (FrameRecord.HEADER_SIZE + WIDTH * HEIGHT));
+        out.putInt(FrameRecorder.SEGMENT_MAGIC);
+        out.putInt(FrameRecorder.SEGMENT_VERSION);
+        out.putLong(0L);
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            new FrameRecord(WIDTH, HEIGHT, PlaneLayout.packed(WIDTH), 0, 0, 0, WIDTH, HEIGHT,
+                    FrameRecord.FOCUS_UNKNOWN, i * 33000000L, i * 33L).writeHeader(out);
+            // Every pixel of a frame holds its index.
+            byte[] plane = new byte[WIDTH * HEIGHT];
+            Arrays.fill(plane, (byte) i);
+            out.put(plane);
+        }
+        FileOutputStream output = new FileOutputStream(segment);
+        try {
+            output.write(out.array());
+        } finally {
+            output.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        segment.delete();
+    }
+
+    @Test
+    public void maximumSpeed_deliversEveryFrameOnceInOrder() throws Exception {
+        RecordedFrameSource source = new RecordedFrameSource(segment);
+        source.setOriginalSpeed(false);
+        // More decoders asking than buffers to go round, as with pipelining and several workers.
+        source.setBufferCount(2);
+        int[] deliveries = new int[FRAME_COUNT];
+        int expected = 0;
+        ArrayDeque<byte[]> decoding = new ArrayDeque<>();
+        while (source.hasNextFrame()) {
+            byte[] frame = source.nextFrame();
+            if (frame == null) {
+                // Every buffer is out; a decoder finishes and gives one back.
+                source.releasePreviewBuffer(decoding.poll());
+                continue;
+            }
+            assertEquals(WIDTH, source.getFrameWidth(frame));
+            int index = frame[0];
+            assertEquals("frame out of order", expected++, index);
+            deliveries[index]++;
+            decoding.offer(frame);
+            if (decoding.size() > 3) {
+                source.releasePreviewBuffer(decoding.poll());
+            }
+        }
+        int[] once = new int[FRAME_COUNT];
+        Arrays.fill(once, 1);
+        assertArrayEquals(once, deliveries);
+    }
+
+    @Test
+    public void originalSpeed_dropsFrameWhileBuffersAreOut() throws Exception {
+        RecordedFrameSource source = new RecordedFrameSource(segment);
+        source.setBufferCount(1);
+        byte[] first = source.nextFrame();
+        assertEquals(0, first[0]);
+        // Like a camera: the frame due while the only buffer is being decoded passes by.
+        assertNull(source.nextFrame());
+        source.releasePreviewBuffer(first);
+        assertEquals(2, source.nextFrame()[0]);
+    }
+
+    @Test
+    public void readFrame_returnsRecordedPlane() throws Exception {
+        RecordedFrameSource source = new RecordedFrameSource(segment);
+        assertEquals(FRAME_COUNT, source.getFrameCount());
+        byte[] plane = new byte[WIDTH * HEIGHT];
+        Arrays.fill(plane, (byte) 7);
+        assertArrayEquals(plane, source.readFrame(7));
+        assertFalse(source.getFrameRecords().isEmpty());
+    }
+
+}
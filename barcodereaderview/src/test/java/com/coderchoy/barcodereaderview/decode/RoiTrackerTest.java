@@ -0,0 +1,126 @@
+package com.coderchoy.barcodereaderview.decode;
+
+import com.google.zxing.ResultPoint;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RoiTrackerTest {
+
+    private static final int SIZE = 400;
+    private static final List<ResultPoint> NO_POINTS = Collections.emptyList();
+    // 40 apart: the region is the 100x100 minimum around their center.
+    private static final List<ResultPoint> CODE =
+            Arrays.asList(new ResultPoint(180f, 180f), new ResultPoint(220f, 220f));
+
+    private RoiTracker tracker;
+
+    @Before
+    public void setUp() throws Exception {
+        tracker = new RoiTracker();
+    }
+
+    @Test
+    public void nextRegion_nothingTracked_decodesWholeCrop() throws Exception {
+        assertNull(tracker.nextRegion(SIZE, SIZE));
+        assertFalse(tracker.update(null, NO_POINTS));
+        assertNull(tracker.nextRegion(SIZE, SIZE));
+    }
+
+    @Test
+    public void update_points_narrowToRegionAroundThem() throws Exception {
+        tracker.update(tracker.nextRegion(SIZE, SIZE), CODE);
+        assertRegion(150, 150, 100, 100, tracker.nextRegion(SIZE, SIZE));
+    }
+
+    @Test
+    public void update_singleMiss_keepsRegion() throws Exception {
+        tracker.update(tracker.nextRegion(SIZE, SIZE), CODE);
+        CropRegion region = tracker.nextRegion(SIZE, SIZE);
+        assertFalse(tracker.update(region, NO_POINTS));
+        assertRegion(150, 150, 100, 100, tracker.nextRegion(SIZE, SIZE));
+    }
+
+    @Test
+    public void update_twoMisses_growRegion() throws Exception {
+        tracker.update(tracker.nextRegion(SIZE, SIZE), CODE);
+        assertFalse(tracker.update(tracker.nextRegion(SIZE, SIZE), NO_POINTS));
+        assertFalse(tracker.update(tracker.nextRegion(SIZE, SIZE), NO_POINTS));
+        assertRegion(125, 125, 150, 150, tracker.nextRegion(SIZE, SIZE));
+    }
+
+    @Test
+    public void update_keepsGrowing_untilTrackingIsLost() throws Exception {
+        tracker.update(tracker.nextRegion(SIZE, SIZE), CODE);
+        assertFalse(tracker.update(tracker.nextRegion(SIZE, SIZE), NO_POINTS));
+        // 150x150, then 224x224, then too much of the crop to be worth it.
+        assertFalse(tracker.update(tracker.nextRegion(SIZE, SIZE), NO_POINTS));
+        assertFalse(tracker.update(tracker.nextRegion(SIZE, SIZE), NO_POINTS));
+        assertNotNull(tracker.nextRegion(SIZE, SIZE));
+        assertTrue(tracker.update(tracker.nextRegion(SIZE, SIZE), NO_POINTS));
+        assertNull(tracker.nextRegion(SIZE, SIZE));
+    }
+
+    @Test
+    public void update_pointsAgain_resetMisses() throws Exception {
+        tracker.update(tracker.nextRegion(SIZE, SIZE), CODE);
+        tracker.update(tracker.nextRegion(SIZE, SIZE), NO_POINTS);
+        tracker.update(tracker.nextRegion(SIZE, SIZE), CODE);
+        tracker.update(tracker.nextRegion(SIZE, SIZE), NO_POINTS);
+        assertRegion(150, 150, 100, 100, tracker.nextRegion(SIZE, SIZE));
+    }
+
+    @Test
+    public void update_wholeCropFrame_isNotAMiss() throws Exception {
+        tracker.update(tracker.nextRegion(SIZE, SIZE), CODE);
+        tracker.update(null, NO_POINTS);
+        tracker.update(null, NO_POINTS);
+        assertRegion(150, 150, 100, 100, tracker.nextRegion(SIZE, SIZE));
+    }
+
+    @Test
+    public void nextRegion_everyTenthFrame_decodesWholeCrop() throws Exception {
+        tracker.update(tracker.nextRegion(SIZE, SIZE), CODE);
+        for (int frame = 2; frame <= 20; frame++) {
+            CropRegion region = tracker.nextRegion(SIZE, SIZE);
+            if (frame % 10 == 0) {
+                assertNull("frame " + frame, region);
+            } else {
+                assertNotNull("frame " + frame, region);
+            }
+            tracker.update(region, CODE);
+        }
+    }
+
+    @Test
+    public void nextRegion_newCropSize_forgetsRegion() throws Exception {
+        tracker.update(tracker.nextRegion(SIZE, SIZE), CODE);
+        assertNull(tracker.nextRegion(SIZE, SIZE / 2));
+    }
+
+    @Test
+    public void update_pointsCoveringMostOfCrop_decodeWholeCrop() throws Exception {
+        tracker.update(tracker.nextRegion(SIZE, SIZE),
+                Arrays.asList(new ResultPoint(60f, 60f), new ResultPoint(340f, 340f)));
+        assertNull(tracker.nextRegion(SIZE, SIZE));
+    }
+
+    private static void assertRegion(int left, int top, int width, int height, CropRegion region) {
+        assertNotNull(region);
+        assertEquals(left, region.left);
+        assertEquals(top, region.top);
+        assertEquals(width, region.width);
+        assertEquals(height, region.height);
+    }
+
+}
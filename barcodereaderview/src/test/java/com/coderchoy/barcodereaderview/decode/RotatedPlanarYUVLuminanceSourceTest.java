@@ -0,0 +1,206 @@
+package com.coderchoy.barcodereaderview.decode;
+
+import com.google.zxing.LuminanceSource;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the source with the obvious implementation: rotate the whole Y plane, then crop.
+ */
+public class RotatedPlanarYUVLuminanceSourceTest {
+
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    private static final int WIDTH = 24;
+    private static final int HEIGHT = 16;
+
+    @Test
+    public void getMatrix_matchesRotatedCrop() throws Exception {
+        byte[] plane = randomPlane(WIDTH, HEIGHT, 1);
+        for (int rotation : ROTATIONS) {
+            byte[] rotated = rotate(plane, WIDTH, HEIGHT, rotation);
+            int rotatedWidth = rotatedWidth(rotation);
+            RotatedPlanarYUVLuminanceSource source =
+                    new RotatedPlanarYUVLuminanceSource(plane, WIDTH, HEIGHT, rotation, 3, 2, 9, 7);
+            assertArrayEquals("rotation " + rotation, crop(rotated, rotatedWidth, 3, 2, 9, 7), source.getMatrix());
+        }
+    }
+
+    @Test
+    public void getRowAndGetLuminance_matchMatrix() throws Exception {
+        byte[] plane = randomPlane(WIDTH, HEIGHT, 2);
+        for (int rotation : ROTATIONS) {
+            RotatedPlanarYUVLuminanceSource source =
+                    new RotatedPlanarYUVLuminanceSource(plane, WIDTH, HEIGHT, rotation, 1, 4, 10, 8);
+            byte[] matrix = source.getMatrix();
+            byte[] row = null;
+            for (int y = 0; y < 8; y++) {
+                row = source.getRow(y, row);
+                for (int x = 0; x < 10; x++) {
+                    assertEquals(matrix[y * 10 + x], row[x]);
+                    assertEquals(matrix[y * 10 + x] & 0xff, source.getLuminance(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void crop_ofCrop_matchesRotatedCrop() throws Exception {
+        byte[] plane = randomPlane(WIDTH, HEIGHT, 3);
+        for (int rotation : ROTATIONS) {
+            byte[] rotated = rotate(plane, WIDTH, HEIGHT, rotation);
+            RotatedPlanarYUVLuminanceSource source =
+                    new RotatedPlanarYUVLuminanceSource(plane, WIDTH, HEIGHT, rotation, 2, 1, 12, 10);
+            LuminanceSource cropped = source.crop(3, 4, 5, 6);
+            assertArrayEquals("rotation " + rotation,
+                    crop(rotated, rotatedWidth(rotation), 5, 5, 5, 6), cropped.getMatrix());
+        }
+    }
+
+    @Test
+    public void rotateCounterClockwise_matchesRotatedMatrix() throws Exception {
+        byte[] plane = randomPlane(WIDTH, HEIGHT, 4);
+        for (int rotation : ROTATIONS) {
+            RotatedPlanarYUVLuminanceSource source =
+                    new RotatedPlanarYUVLuminanceSource(plane, WIDTH, HEIGHT, rotation, 2, 3, 11, 7);
+            LuminanceSource turned = source.rotateCounterClockwise();
+            assertEquals(7, turned.getWidth());
+            assertEquals(11, turned.getHeight());
+            // Counter-clockwise by 90 is clockwise by 270.
+            assertArrayEquals("rotation " + rotation, rotate(source.getMatrix(), 11, 7, 270), turned.getMatrix());
+        }
+    }
+
+    @Test
+    public void downsample_averagesBlocks() throws Exception {
+        byte[] plane = randomPlane(WIDTH, HEIGHT, 5);
+        for (int rotation : ROTATIONS) {
+            RotatedPlanarYUVLuminanceSource source =
+                    new RotatedPlanarYUVLuminanceSource(plane, WIDTH, HEIGHT, rotation, 1, 1, 12, 10);
+            RotatedPlanarYUVLuminanceSource half = source.downsample();
+            assertArrayEquals("rotation " + rotation, halve(source.getMatrix(), 12, 10), half.getMatrix());
+            // Cropping and turning a downsampled source keep reading whole 2x2 blocks.
+            assertArrayEquals("rotation " + rotation, crop(halve(source.getMatrix(), 12, 10), 6, 1, 2, 4, 3),
+                    half.crop(1, 2, 4, 3).getMatrix());
+            assertArrayEquals("rotation " + rotation, rotate(half.getMatrix(), 6, 5, 270),
+                    half.rotateCounterClockwise().getMatrix());
+        }
+    }
+
+    @Test
+    public void stridedLayouts_matchPackedFrame() throws Exception {
+        byte[] plane = randomPlane(WIDTH, HEIGHT, 6);
+        PlaneLayout[] layouts = {PlaneLayout.yv12(WIDTH), PlaneLayout.of(5, 2 * WIDTH + 3, 2)};
+        for (PlaneLayout layout : layouts) {
+            byte[] data = spread(plane, layout);
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 7);
+            direct.position(7);
+            direct.put(data);
+            direct.position(7);
+            for (int rotation : ROTATIONS) {
+                byte[] expected = new RotatedPlanarYUVLuminanceSource(plane, WIDTH, HEIGHT, rotation,
+                        2, 3, 8, 9).getMatrix();
+                String message = layout + ", rotation " + rotation;
+                assertArrayEquals(message, expected, new RotatedPlanarYUVLuminanceSource(data, layout,
+                        WIDTH, HEIGHT, rotation, 2, 3, 8, 9).getMatrix());
+                assertArrayEquals(message, expected, new RotatedPlanarYUVLuminanceSource(ByteBuffer.wrap(data),
+                        layout, WIDTH, HEIGHT, rotation, 2, 3, 8, 9).getMatrix());
+                assertArrayEquals(message, expected, new RotatedPlanarYUVLuminanceSource(direct, layout,
+                        WIDTH, HEIGHT, rotation, 2, 3, 8, 9).getMatrix());
+                assertEquals(7, direct.position());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsCropOutsideRotatedFrame() throws Exception {
+        // 24x16 turned by 90 is 16 wide.
+        new RotatedPlanarYUVLuminanceSource(new byte[WIDTH * HEIGHT], WIDTH, HEIGHT, 90, 0, 0, 17, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsDataTooSmallForLayout() throws Exception {
+        new RotatedPlanarYUVLuminanceSource(new byte[WIDTH * HEIGHT], PlaneLayout.yv12(WIDTH + 1),
+                WIDTH + 1, HEIGHT, 0, 0, 0, 4, 4);
+    }
+
+    private static byte[] randomPlane(int width, int height, long seed) {
+        byte[] plane = new byte[width * height];
+        new Random(seed).nextBytes(plane);
+        return plane;
+    }
+
+    private static int rotatedWidth(int rotation) {
+        return rotation == 90 || rotation == 270 ? HEIGHT : WIDTH;
+    }
+
+    /**
+     * @return the width x height plane rotated clockwise
+     */
+    private static byte[] rotate(byte[] plane, int width, int height, int rotation) {
+        byte[] rotated = new byte[plane.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                byte value = plane[y * width + x];
+                switch (rotation) {
+                    case 0:
+                        rotated[y * width + x] = value;
+                        break;
+                    case 90:
+                        rotated[x * height + (height - 1 - y)] = value;
+                        break;
+                    case 180:
+                        rotated[(height - 1 - y) * width + (width - 1 - x)] = value;
+                        break;
+                    default:
+                        rotated[(width - 1 - x) * height + y] = value;
+                        break;
+                }
+            }
+        }
+        return rotated;
+    }
+
+    private static byte[] crop(byte[] plane, int planeWidth, int left, int top, int width, int height) {
+        byte[] cropped = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(plane, (top + y) * planeWidth + left, cropped, y * width, width);
+        }
+        return cropped;
+    }
+
+    private static byte[] halve(byte[] plane, int width, int height) {
+        int halfWidth = width / 2;
+        int halfHeight = height / 2;
+        byte[] half = new byte[halfWidth * halfHeight];
+        for (int y = 0; y < halfHeight; y++) {
+            for (int x = 0; x < halfWidth; x++) {
+                int index = 2 * y * width + 2 * x;
+                int sum = (plane[index] & 0xff) + (plane[index + 1] & 0xff) +
+                        (plane[index + width] & 0xff) + (plane[index + width + 1] & 0xff);
+                half[y * halfWidth + x] = (byte) ((sum + 2) >> 2);
+            }
+        }
+        return half;
+    }
+
+    /**
+     * @return the packed plane laid out as described, the gaps filled with noise
+     */
+    private static byte[] spread(byte[] plane, PlaneLayout layout) {
+        byte[] data = new byte[layout.getRequiredSize(WIDTH, HEIGHT)];
+        new Random(7).nextBytes(data);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                data[layout.getOffset() + y * layout.getRowStride() + x * layout.getPixelStride()] = plane[y * WIDTH + x];
+            }
+        }
+        return data;
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.coderchoy.barcodereaderview.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitMatrix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Feeds a recording through the frame source, the worker pool and the state machine on plain
+ * threads, and checks what reaches the result sink.
+ */
+public class ScanPipelineTest {
+
+    private static final String TEXT = "ScanPipelineTest";
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int BLANK_FRAME_COUNT = 4;
+    private static final int CODE_FRAME_COUNT = 4;
+    private static final long TIMEOUT_MS = 5000L;
+    private static final long QUIET_MS = 300L;
+
+    private File segment;
+    private final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+    private volatile ScanStateMachine stateMachine;
+    private MessageLoop scanLoop;
+
+    @Before
+    public void setUp() throws Exception {
+        BitMatrix code = new MultiFormatWriter().encode(TEXT, BarcodeFormat.QR_CODE, 200, 200);
+        int frameCount = BLANK_FRAME_COUNT + CODE_FRAME_COUNT;
+        segment = File.createTempFile(FrameRecorder.SEGMENT_PREFIX, FrameRecorder.SEGMENT_SUFFIX);
+        ByteBuffer out = ByteBuffer.allocate(FrameRecorder.SEGMENT_HEADER_SIZE +
+                frameCount * (FrameRecord.HEADER_SIZE + WIDTH * HEIGHT));
+        out.putInt(FrameRecorder.SEGMENT_MAGIC);
+        out.putInt(FrameRecorder.SEGMENT_VERSION);
+        out.putLong(0L);
+        for (int i = 0; i < frameCount; i++) {
+            new FrameRecord(WIDTH, HEIGHT, PlaneLayout.packed(WIDTH), 0, 0, 0, WIDTH, HEIGHT,
+                    FrameRecord.FOCUS_UNKNOWN, i * 33000000L, i * 33L).writeHeader(out);
+            out.put(i < BLANK_FRAME_COUNT ? blankPlane() : codePlane(code));
+        }
+        FileOutputStream output = new FileOutputStream(segment);
+        try {
+            output.write(out.array());
+        } finally {
+            output.close();
+        }
+        scanLoop = ThreadMessageLoop.FACTORY.start("ScanLoop", new MessageLoop.Callback() {
+            @Override
+            public void handleMessage(int what, int arg1, int arg2, Object obj) {
+                stateMachine.handleMessage(what, arg1, arg2, obj);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (stateMachine != null) {
+            stateMachine.quitSynchronously();
+        }
+        scanLoop.quit();
+        scanLoop.join(TIMEOUT_MS);
+        segment.delete();
+    }
+
+    @Test
+    public void singleShot_deliversCode() throws Exception {
+        start(newOptions());
+        Result result = results.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull("no code found", result);
+        assertEquals(TEXT, result.getText());
+        // The other frames with the code are not decoded once the first result has won.
+        assertNull(results.poll(QUIET_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void continuousScan_deliversCodeOnce() throws Exception {
+        ScanOptions options = newOptions();
+        options.setContinuousScan(true, TIMEOUT_MS);
+        start(options);
+        Result result = results.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull("no code found", result);
+        assertEquals(TEXT, result.getText());
+        // Every later frame holds the same code, within the time-to-live.
+        assertNull(results.poll(QUIET_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void pipelinedWorkers_deliverFirstResultOnly() throws Exception {
+        ScanOptions options = newOptions();
+        options.setDecodeWorkerCount(2);
+        options.setPipelinedDecode(true);
+        start(options);
+        Result result = results.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull("no code found", result);
+        assertEquals(TEXT, result.getText());
+        assertNull(results.poll(QUIET_MS, TimeUnit.MILLISECONDS));
+        DecodePipelineStats stats = stateMachine.getDecodePipelineStats();
+        assertEquals(2, stats.getWorkerCount());
+    }
+
+    private ScanOptions newOptions() {
+        ScanOptions options = new ScanOptions();
+        // Thumbnails are rendered into a Bitmap, which needs the device.
+        options.setThumbnailEnabled(false);
+        return options;
+    }
+
+    private void start(ScanOptions options) throws Exception {
+        RecordedFrameSource frameSource = new RecordedFrameSource(segment);
+        frameSource.setMessageLoopFactory(ThreadMessageLoop.FACTORY);
+        frameSource.setOriginalSpeed(false);
+        frameSource.setLooping(false);
+        ScanResultSink sink = new ScanResultSink() {
+            @Override
+            public void handleDecode(Result result, BarcodeThumbnail thumbnail) {
+                results.add(result);
+            }
+
+            @Override
+            public void handleDecodeMultiple(Result[] found, BarcodeThumbnail thumbnail) {
+                results.addAll(Arrays.asList(found));
+            }
+        };
+        stateMachine = new ScanStateMachine(scanLoop, ThreadMessageLoop.FACTORY, sink,
+                EnumSet.of(BarcodeFormat.QR_CODE), null, null, null, frameSource, options, new StartupTracker());
+        stateMachine.start();
+    }
+
+    private static byte[] blankPlane() {
+        byte[] plane = new byte[WIDTH * HEIGHT];
+        Arrays.fill(plane, (byte) 0xFF);
+        return plane;
+    }
+
+    private static byte[] codePlane(BitMatrix code) {
+        byte[] plane = blankPlane();
+        int left = (WIDTH - code.getWidth()) / 2;
+        int top = (HEIGHT - code.getHeight()) / 2;
+        for (int y = 0; y < code.getHeight(); y++) {
+            for (int x = 0; x < code.getWidth(); x++) {
+                if (code.get(x, y)) {
+                    plane[(top + y) * WIDTH + left + x] = 0;
+                }
+            }
+        }
+        return plane;
+    }
+
+}
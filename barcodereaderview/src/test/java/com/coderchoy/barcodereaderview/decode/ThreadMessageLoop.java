@@ -0,0 +1,153 @@
+package com.coderchoy.barcodereaderview.decode;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * A {@link MessageLoop} on a plain thread, so the scan pipeline runs on the JVM without a Looper.
+ * Messages are handled in the order they are due, those due at the same time in the order sent.
+ */
+final class ThreadMessageLoop implements MessageLoop {
+
+    static final Factory FACTORY = new Factory() {
+        @Override
+        public MessageLoop start(String name, Callback callback) {
+            ThreadMessageLoop loop = new ThreadMessageLoop(name, callback);
+            loop.thread.start();
+            return loop;
+        }
+    };
+
+    private final Thread thread;
+    private final Callback callback;
+    // Guarded by this.
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private long sequence;
+    private boolean quitting;
+    private long quitAtMs;
+
+    private ThreadMessageLoop(String name, Callback callback) {
+        this.callback = callback;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, name);
+    }
+
+    @Override
+    public void send(int what, int arg1, int arg2, Object obj) {
+        enqueue(what, arg1, arg2, obj, 0L);
+    }
+
+    @Override
+    public void sendDelayed(int what, long delayMs) {
+        enqueue(what, 0, 0, null, delayMs);
+    }
+
+    @Override
+    public synchronized boolean hasMessages(int what) {
+        for (Entry entry : queue) {
+            if (entry.what == what) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void removeMessages(int what) {
+        Iterator<Entry> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().what == what) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public boolean isLoopThread() {
+        return thread == Thread.currentThread();
+    }
+
+    @Override
+    public synchronized void quit() {
+        if (!quitting) {
+            quitting = true;
+            quitAtMs = nowMs();
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void join(long timeoutMs) throws InterruptedException {
+        thread.join(timeoutMs);
+    }
+
+    private synchronized void enqueue(int what, int arg1, int arg2, Object obj, long delayMs) {
+        if (quitting) {
+            return;
+        }
+        queue.add(new Entry(what, arg1, arg2, obj, nowMs() + delayMs, sequence++));
+        notifyAll();
+    }
+
+    private void loop() {
+        while (true) {
+            Entry entry;
+            synchronized (this) {
+                try {
+                    while (true) {
+                        Entry head = queue.peek();
+                        if (quitting && (head == null || head.dueMs > quitAtMs)) {
+                            queue.clear();
+                            return;
+                        }
+                        long waitMs = head == null ? 0L : head.dueMs - nowMs();
+                        if (head != null && waitMs <= 0L) {
+                            entry = queue.poll();
+                            break;
+                        }
+                        wait(waitMs);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            callback.handleMessage(entry.what, entry.arg1, entry.arg2, entry.obj);
+        }
+    }
+
+    private static long nowMs() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        final int what;
+        final int arg1;
+        final int arg2;
+        final Object obj;
+        final long dueMs;
+        final long sequence;
+
+        Entry(int what, int arg1, int arg2, Object obj, long dueMs, long sequence) {
+            this.what = what;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.obj = obj;
+            this.dueMs = dueMs;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (dueMs != other.dueMs) {
+                return dueMs < other.dueMs ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.coderchoy.barcodereaderview.decode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class WorkerWatchdogTest {
+
+    private static final long TIMEOUT_MS = 1000L;
+
+    @Test
+    public void stuckWorker_isTakenOnceTimeoutPasses() throws Exception {
+        WorkerWatchdog watchdog = new WorkerWatchdog(2, TIMEOUT_MS);
+        watchdog.onBusy(0, 10000L);
+        watchdog.onBusy(1, 10000L);
+        // Worker 1 finishes in time, worker 0 never reports back.
+        watchdog.onIdle(1);
+        assertEquals(-1, watchdog.takeStalled(10999L));
+        assertEquals(501L, watchdog.getCheckDelayMs());
+        assertEquals(0, watchdog.takeStalled(11000L));
+        // Taken once: the slot is idle until its replacement gets a frame.
+        assertEquals(-1, watchdog.takeStalled(20000L));
+        assertEquals(-1L, watchdog.getCheckDelayMs());
+    }
+
+    @Test
+    public void replacement_isWatchedFromItsOwnFrame() throws Exception {
+        WorkerWatchdog watchdog = new WorkerWatchdog(1, TIMEOUT_MS);
+        watchdog.onBusy(0, 0L);
+        assertEquals(0, watchdog.takeStalled(TIMEOUT_MS));
+        watchdog.onBusy(0, 5000L);
+        assertEquals(-1, watchdog.takeStalled(5000L + TIMEOUT_MS - 1));
+        assertEquals(0, watchdog.takeStalled(5000L + TIMEOUT_MS));
+    }
+
+    @Test
+    public void severalStuckWorkers_areTakenInTurn() throws Exception {
+        WorkerWatchdog watchdog = new WorkerWatchdog(3, TIMEOUT_MS);
+        watchdog.onBusy(0, 0L);
+        watchdog.onBusy(1, 600L);
+        watchdog.onBusy(2, 100L);
+        assertEquals(0, watchdog.takeStalled(1200L));
+        assertEquals(2, watchdog.takeStalled(1200L));
+        assertEquals(-1, watchdog.takeStalled(1200L));
+        // Worker 1 is still busy, so the watchdog keeps checking.
+        assertEquals(501L, watchdog.getCheckDelayMs());
+        assertEquals(1, watchdog.takeStalled(1600L));
+    }
+
+    @Test
+    public void disabled_neverTakesAWorker() throws Exception {
+        WorkerWatchdog watchdog = new WorkerWatchdog(1, 0L);
+        assertFalse(watchdog.isEnabled());
+        watchdog.onBusy(0, 0L);
+        assertEquals(-1, watchdog.takeStalled(Long.MAX_VALUE));
+        assertEquals(-1L, watchdog.getCheckDelayMs());
+    }
+
+}
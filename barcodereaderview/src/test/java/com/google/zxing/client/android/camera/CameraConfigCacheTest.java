@@ -0,0 +1,71 @@
+package com.google.zxing.client.android.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CameraConfigCacheTest {
+
+    private static final String FINGERPRINT = "google/walleye/walleye:8.1.0/OPM1/4479392:user/release-keys#1a2b3c";
+
+    @Test
+    public void entry_roundTrip() throws Exception {
+        CameraConfigCache.Entry entry = new CameraConfigCache.Entry(1920, 1080, 90, 270, "continuous-picture",
+                true, false, FINGERPRINT);
+        CameraConfigCache.Entry decoded = CameraConfigCache.Entry.decode(entry.encode());
+        assertEquals(1920, decoded.previewWidth);
+        assertEquals(1080, decoded.previewHeight);
+        assertEquals(90, decoded.cwNeededRotation);
+        assertEquals(270, decoded.cwRotationFromDisplayToCamera);
+        assertEquals("continuous-picture", decoded.focusMode);
+        assertTrue(decoded.autoFocus);
+        assertFalse(decoded.safeMode);
+        assertEquals(FINGERPRINT, decoded.fingerprint);
+        assertEquals(entry, decoded);
+        assertEquals(entry.hashCode(), decoded.hashCode());
+    }
+
+    @Test
+    public void entry_roundTripWithoutFocusMode() throws Exception {
+        CameraConfigCache.Entry entry = new CameraConfigCache.Entry(640, 480, 0, 0, null, false, true, FINGERPRINT);
+        CameraConfigCache.Entry decoded = CameraConfigCache.Entry.decode(entry.encode());
+        assertNull(decoded.focusMode);
+        assertFalse(decoded.autoFocus);
+        assertTrue(decoded.safeMode);
+        assertEquals(entry, decoded);
+    }
+
+    @Test
+    public void entry_fingerprintWithCommasKeepsOtherFields() throws Exception {
+        String fingerprint = "a,b,,c,";
+        CameraConfigCache.Entry entry = new CameraConfigCache.Entry(1280, 720, 180, 90, "auto", true, true,
+                fingerprint);
+        CameraConfigCache.Entry decoded = CameraConfigCache.Entry.decode(entry.encode());
+        assertEquals(fingerprint, decoded.fingerprint);
+        assertEquals(1280, decoded.previewWidth);
+        assertEquals("auto", decoded.focusMode);
+        assertTrue(decoded.safeMode);
+    }
+
+    @Test
+    public void entry_decodeRejectsBadInput() throws Exception {
+        assertNull(CameraConfigCache.Entry.decode(""));
+        assertNull(CameraConfigCache.Entry.decode("1920,1080,90,270,auto,true,false"));
+        assertNull(CameraConfigCache.Entry.decode("wide,1080,90,270,auto,true,false," + FINGERPRINT));
+        assertNull(CameraConfigCache.Entry.decode("1920,1080,90,,auto,true,false," + FINGERPRINT));
+    }
+
+    @Test
+    public void entry_equalsComparesEveryField() throws Exception {
+        CameraConfigCache.Entry entry = new CameraConfigCache.Entry(1920, 1080, 90, 270, "auto", true, false,
+                FINGERPRINT);
+        assertEquals(entry, new CameraConfigCache.Entry(1920, 1080, 90, 270, "auto", true, false, FINGERPRINT));
+        assertFalse(entry.equals(new CameraConfigCache.Entry(1920, 1088, 90, 270, "auto", true, false,
+                FINGERPRINT)));
+        assertFalse(entry.equals(new CameraConfigCache.Entry(1920, 1080, 90, 270, "auto", true, false, "other")));
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.benchmark;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binarizing the framing rect crop, including reading it from the frame, the way a fresh
+ * {@link com.google.zxing.BinaryBitmap} does on every decode pass. The 2D readers take the
+ * black matrix, the 1D readers black rows. A binarizer that finds no usable threshold throws
+ * {@link NotFoundException}, which the decode path takes as a miss, and so do these.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BinarizerBenchmark {
+
+    private static final int ROW_COUNT = 15;
+
+    @Param({"HYBRID", "GLOBAL_HISTOGRAM"})
+    public String binarizer;
+
+    private BitArray row;
+
+    @Benchmark
+    public BitMatrix blackMatrix(ResolutionState state) {
+        return blackMatrix(newBinarizer(state.frame.newSource()));
+    }
+
+    /**
+     * At half resolution, as the resolution pyramid decodes large frames first.
+     */
+    @Benchmark
+    public BitMatrix blackMatrixHalf(ResolutionState state) {
+        return blackMatrix(newBinarizer(state.frame.newSource().downsample()));
+    }
+
+    /**
+     * The rows a 1D reader scans without TRY_HARDER, from the middle outwards.
+     */
+    @Benchmark
+    public int blackRows(ResolutionState state) {
+        Binarizer binarizer = newBinarizer(state.frame.newSource());
+        int height = binarizer.getHeight();
+        int step = Math.max(1, height / ROW_COUNT);
+        int sum = 0;
+        for (int i = 0; i < ROW_COUNT; i++) {
+            int offset = (i + 1) / 2 * ((i & 0x01) == 0 ? step : -step);
+            try {
+                row = binarizer.getBlackRow(height / 2 + offset, row);
+                sum += row.getSize();
+            } catch (NotFoundException nfe) {
+                // continue
+            }
+        }
+        return sum;
+    }
+
+    private static BitMatrix blackMatrix(Binarizer binarizer) {
+        try {
+            return binarizer.getBlackMatrix();
+        } catch (NotFoundException nfe) {
+            return null;
+        }
+    }
+
+    private Binarizer newBinarizer(LuminanceSource source) {
+        return "HYBRID".equals(binarizer) ? new HybridBinarizer(source) : new GlobalHistogramBinarizer(source);
+    }
+
+}
@@ -0,0 +1,317 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.benchmark;
+
+import com.coderchoy.barcodereaderview.decode.FrameRecord;
+import com.coderchoy.barcodereaderview.decode.RecordedFrameSource;
+import com.coderchoy.barcodereaderview.decode.RotatedPlanarYUVLuminanceSource;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The frames the benchmarks run on: one NV21 preview frame per format and resolution, landscape
+ * and with the content turned by 90 degrees, as a phone held upright delivers it.
+ * <p>
+ * The frames are taken from {@code corpus.dir}, the checked-in {@code benchmark/corpus} unless
+ * {@code -Pcorpus} names another, named {@code FORMAT-WIDTHxHEIGHT}: a segment ({@code .rec}) or a
+ * directory recorded by {@link com.coderchoy.barcodereaderview.decode.FrameRecorder}, whose first
+ * decoded frame, or else its first frame, is used along with its rotation and framing rect, or a raw
+ * {@code .yuv} file, NV21 or Y plane only.
+ * <p>
+ * A missing frame fails the benchmark, unless {@code corpus.synthetic} is set: then it is generated
+ * instead, a code drawn on a textured background, blurred, with seeded sensor noise. Generated
+ * frames are cached under {@code corpus.cache} and come out the same on every run and machine;
+ * every run says which frames were generated, since they flatter the decoders next to real ones.
+ */
+final class Corpus {
+
+    private static final int ROTATION = 90;
+    private static final long SEED = 0x5CA11L;
+    private static final int NOISE = 6;
+    private static final int DARK = 60;
+    private static final int LIGHT = 180;
+
+    private Corpus() {
+    }
+
+    static Frame load(BarcodeFormat format, String resolution) throws IOException {
+        int separator = resolution.indexOf('x');
+        int width = Integer.parseInt(resolution.substring(0, separator));
+        int height = Integer.parseInt(resolution.substring(separator + 1));
+        String name = format.name() + "-" + width + "x" + height;
+
+        String dir = System.getProperty("corpus.dir");
+        if (dir != null) {
+            File segment = new File(dir, name + ".rec");
+            if (segment.isFile()) {
+                return loadRecording(segment);
+            }
+            File recording = new File(dir, name);
+            if (recording.isDirectory()) {
+                return loadRecording(recording);
+            }
+            File raw = new File(dir, name + ".yuv");
+            if (raw.isFile()) {
+                return new Frame(readFile(raw, width * height), width, height, ROTATION);
+            }
+        }
+        String missing = "No recording of " + name + (dir != null ? " in " + dir : "");
+        if (!Boolean.getBoolean("corpus.synthetic")) {
+            throw new IOException(missing + "; record one as corpus/README.md describes, " +
+                    "or pass -Pcorpus.synthetic to use a generated frame");
+        }
+        System.err.println(missing + ", using a generated frame");
+        File cached = new File(System.getProperty("corpus.cache", "build/corpus"), name + ".yuv");
+        if (cached.isFile() && cached.length() == width * height * 3 / 2) {
+            return new Frame(readFile(cached, width * height * 3 / 2), width, height, ROTATION);
+        }
+        byte[] data = generate(format, width, height);
+        File parent = cached.getParentFile();
+        if (parent.isDirectory() || parent.mkdirs()) {
+            OutputStream out = new FileOutputStream(cached);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+        }
+        return new Frame(data, width, height, ROTATION);
+    }
+
+    /**
+     * @param recording A segment file or a directory of them.
+     */
+    private static Frame loadRecording(File recording) throws IOException {
+        RecordedFrameSource source = new RecordedFrameSource(recording);
+        if (source.getFrameCount() == 0) {
+            throw new IOException("No frames recorded in " + recording);
+        }
+        List<FrameRecord> records = source.getFrameRecords();
+        int index = 0;
+        while (index < records.size() && records.get(index).getResultCount() <= 0) {
+            index++;
+        }
+        if (index == records.size()) {
+            index = 0;
+        }
+        FrameRecord record = records.get(index);
+        return new Frame(source.readFrame(index), record.getWidth(), record.getHeight(), record.getRotation(),
+                record.getFramingLeft(), record.getFramingTop(), record.getFramingWidth(), record.getFramingHeight());
+    }
+
+    private static byte[] readFile(File file, int minLength) throws IOException {
+        if (file.length() < minLength) {
+            throw new IOException(file + " holds " + file.length() + " bytes, at least " + minLength + " expected");
+        }
+        byte[] data = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            new DataInputStream(in).readFully(data);
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    /**
+     * Draws the code upright in the framing rect of the rotated image, then stores every pixel where
+     * the rotation by {@link #ROTATION} reads it from.
+     */
+    private static byte[] generate(BarcodeFormat format, int width, int height) throws IOException {
+        Frame frame = new Frame(null, width, height, ROTATION);
+        int rotatedWidth = height;
+        int rotatedHeight = width;
+        int[] image = new int[rotatedWidth * rotatedHeight];
+        for (int y = 0; y < rotatedHeight; y++) {
+            for (int x = 0; x < rotatedWidth; x++) {
+                // A soft diagonal pattern, so the background is not a flat plane for the binarizers.
+                image[y * rotatedWidth + x] = 110 + (int) (20 * Math.sin((x + y) / 23.0) * Math.cos((x - y) / 37.0));
+            }
+        }
+
+        boolean square = format == BarcodeFormat.QR_CODE || format == BarcodeFormat.DATA_MATRIX ||
+                format == BarcodeFormat.AZTEC;
+        int codeWidth = square ? Math.min(frame.framingWidth, frame.framingHeight) * 2 / 3 : frame.framingWidth * 9 / 10;
+        int codeHeight = square ? codeWidth : frame.framingHeight / 3;
+        BitMatrix matrix = encode(format, codeWidth, codeHeight);
+        int codeLeft = frame.framingLeft + (frame.framingWidth - codeWidth) / 2;
+        int codeTop = frame.framingTop + (frame.framingHeight - codeHeight) / 2;
+        // The label, with a margin for codes that come without a quiet zone.
+        int margin = codeWidth / 6;
+        for (int y = codeTop - margin; y < codeTop + codeHeight + margin; y++) {
+            for (int x = codeLeft - margin; x < codeLeft + codeWidth + margin; x++) {
+                int cx = x - codeLeft;
+                int cy = y - codeTop;
+                boolean dark = cx >= 0 && cy >= 0 && cx < codeWidth && cy < codeHeight &&
+                        matrix.get(cx * matrix.getWidth() / codeWidth, cy * matrix.getHeight() / codeHeight);
+                image[y * rotatedWidth + x] = dark ? DARK : LIGHT;
+            }
+        }
+
+        byte[] data = new byte[width * height * 3 / 2];
+        RotatedIndex index = new RotatedIndex(width, height);
+        Random random = new Random(SEED ^ ((long) format.ordinal() << 32) ^ (width * 31L + height));
+        for (int y = 0; y < rotatedHeight; y++) {
+            for (int x = 0; x < rotatedWidth; x++) {
+                int value = blur(image, rotatedWidth, rotatedHeight, x, y) + random.nextInt(2 * NOISE + 1) - NOISE;
+                data[index.of(x, y)] = (byte) Math.max(0, Math.min(255, value));
+            }
+        }
+        // Neutral chroma.
+        for (int i = width * height; i < data.length; i++) {
+            data[i] = (byte) 128;
+        }
+        return data;
+    }
+
+    private static BitMatrix encode(BarcodeFormat format, int width, int height) throws IOException {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.MARGIN, 0);
+        try {
+            return new MultiFormatWriter().encode(contentsOf(format), format, width, height, hints);
+        } catch (WriterException | IllegalArgumentException e) {
+            throw new IOException("Cannot generate a " + format + " frame", e);
+        }
+    }
+
+    private static String contentsOf(BarcodeFormat format) {
+        switch (format) {
+            case EAN_13:
+                return "5901234123457";
+            case EAN_8:
+                return "96385074";
+            case UPC_A:
+                return "036000291452";
+            case QR_CODE:
+                return "https://example.com/o/20170901";
+            default:
+                return "2017090142";
+        }
+    }
+
+    /**
+     * A 3x3 box filter; a camera never delivers perfectly sharp edges.
+     */
+    private static int blur(int[] image, int width, int height, int x, int y) {
+        int sum = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            int row = Math.max(0, Math.min(height - 1, y + dy)) * width;
+            for (int dx = -1; dx <= 1; dx++) {
+                sum += image[row + Math.max(0, Math.min(width - 1, x + dx))];
+            }
+        }
+        return sum / 9;
+    }
+
+    /**
+     * Maps rotated coordinates to the index of the unrotated Y plane, as
+     * {@link RotatedPlanarYUVLuminanceSource} reads it.
+     */
+    private static final class RotatedIndex {
+
+        private final int width;
+        private final int height;
+
+        RotatedIndex(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        int of(int x, int y) {
+            // Rotated by 90 degrees clockwise, pixel (x, y) is unrotated (y, height - 1 - x).
+            return (height - 1 - x) * width + y;
+        }
+    }
+
+    /**
+     * A preview frame with the rotation and framing rect it is decoded with.
+     */
+    static final class Frame {
+
+        final byte[] data;
+        final int width;
+        final int height;
+        final int rotation;
+        final int framingLeft;
+        final int framingTop;
+        final int framingWidth;
+        final int framingHeight;
+
+        Frame(byte[] data, int width, int height, int rotation, int framingLeft, int framingTop,
+              int framingWidth, int framingHeight) {
+            this.data = data;
+            this.width = width;
+            this.height = height;
+            this.rotation = rotation;
+            this.framingLeft = framingLeft;
+            this.framingTop = framingTop;
+            this.framingWidth = framingWidth;
+            this.framingHeight = framingHeight;
+        }
+
+        /**
+         * A framing rect of 5/8 of the rotated frame each way, centered, as CameraManager picks it.
+         */
+        Frame(byte[] data, int width, int height, int rotation) {
+            this(data, width, height, rotation, framing(width, height, rotation));
+        }
+
+        private Frame(byte[] data, int width, int height, int rotation, int[] framing) {
+            this(data, width, height, rotation, framing[0], framing[1], framing[2], framing[3]);
+        }
+
+        private static int[] framing(int width, int height, int rotation) {
+            boolean swapped = rotation == 90 || rotation == 270;
+            int rotatedWidth = swapped ? height : width;
+            int rotatedHeight = swapped ? width : height;
+            int framingWidth = rotatedWidth * 5 / 8;
+            int framingHeight = rotatedHeight * 5 / 8;
+            return new int[]{(rotatedWidth - framingWidth) / 2, (rotatedHeight - framingHeight) / 2,
+                    framingWidth, framingHeight};
+        }
+
+        RotatedPlanarYUVLuminanceSource newSource() {
+            return new RotatedPlanarYUVLuminanceSource(data, width, height, rotation,
+                    framingLeft, framingTop, framingWidth, framingHeight);
+        }
+
+        int getRotatedWidth() {
+            return rotation == 90 || rotation == 270 ? height : width;
+        }
+
+        int getRotatedHeight() {
+            return rotation == 90 || rotation == 270 ? width : height;
+        }
+    }
+
+}
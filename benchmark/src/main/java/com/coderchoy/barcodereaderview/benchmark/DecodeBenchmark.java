@@ -0,0 +1,141 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.benchmark;
+
+import com.coderchoy.barcodereaderview.decode.BarcodeScannerEngine;
+import com.coderchoy.barcodereaderview.decode.BinarizerStrategy;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a frame: {@link MultiFormatReader#decodeWithState} as the view did it, with only the
+ * frame's format enabled or with all corpus formats, and the whole path through
+ * {@link BarcodeScannerEngine} with default and with adaptive settings.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecodeBenchmark {
+
+    private static final Collection<BarcodeFormat> CORPUS_FORMATS = EnumSet.of(
+            BarcodeFormat.QR_CODE, BarcodeFormat.CODE_128, BarcodeFormat.EAN_13, BarcodeFormat.DATA_MATRIX);
+
+    private MultiFormatReader singleFormatReader;
+    private MultiFormatReader allFormatsReader;
+    private BarcodeScannerEngine engine;
+    private BarcodeScannerEngine adaptiveEngine;
+
+    @Setup(Level.Trial)
+    public void setUp(FrameState state) {
+        singleFormatReader = newReader(EnumSet.of(BarcodeFormat.valueOf(state.format)));
+        allFormatsReader = newReader(CORPUS_FORMATS);
+        engine = new BarcodeScannerEngine.Builder()
+                .setDecodeFormats(CORPUS_FORMATS)
+                .build();
+        adaptiveEngine = new BarcodeScannerEngine.Builder()
+                .setDecodeFormats(CORPUS_FORMATS)
+                .setAdaptiveFormatOrder(true)
+                .setRoiTracking(true)
+                .setFrameQualityGate(true)
+                .setBinarizerStrategy(BinarizerStrategy.ADAPTIVE)
+                .setResolutionPyramid(true)
+                .build();
+        // A frame nothing is found in measures the failure path only, say so rather than mislead.
+        if (decode(singleFormatReader, state.frame.newSource()) == null) {
+            System.err.println("No " + state.format + " found in the " + state.resolution + " frame");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+        adaptiveEngine.close();
+    }
+
+    @Benchmark
+    public Result decodeWithStateSingleFormat(FrameState state) {
+        return decode(singleFormatReader, state.frame.newSource());
+    }
+
+    @Benchmark
+    public Result decodeWithStateAllFormats(FrameState state) {
+        return decode(allFormatsReader, state.frame.newSource());
+    }
+
+    @Benchmark
+    public Result[] engineDecode(FrameState state) {
+        return decode(engine, state.frame);
+    }
+
+    @Benchmark
+    public Result[] engineDecodeAdaptive(FrameState state) {
+        return decode(adaptiveEngine, state.frame);
+    }
+
+    private static MultiFormatReader newReader(Collection<BarcodeFormat> formats) {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        MultiFormatReader reader = new MultiFormatReader();
+        reader.setHints(hints);
+        return reader;
+    }
+
+    private static Result decode(MultiFormatReader reader, LuminanceSource source) {
+        try {
+            return reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(source)));
+        } catch (ReaderException re) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    private static Result[] decode(BarcodeScannerEngine engine, Corpus.Frame frame) {
+        return engine.decode(frame.data, frame.width, frame.height, frame.rotation,
+                frame.framingLeft, frame.framingTop, frame.framingWidth, frame.framingHeight);
+    }
+
+}
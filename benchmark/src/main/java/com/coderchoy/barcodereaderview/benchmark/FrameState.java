@@ -0,0 +1,50 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * A corpus frame for every format and resolution. For stages that do not care what is in the
+ * frame use {@link ResolutionState}.
+ */
+@State(Scope.Benchmark)
+public class FrameState {
+
+    @Param({"QR_CODE", "CODE_128", "EAN_13", "DATA_MATRIX"})
+    public String format;
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    Corpus.Frame frame;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        frame = Corpus.load(BarcodeFormat.valueOf(format), resolution);
+    }
+
+}
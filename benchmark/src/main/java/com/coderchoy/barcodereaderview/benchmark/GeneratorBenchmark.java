@@ -0,0 +1,220 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.benchmark;
+
+import com.coderchoy.barcodereaderview.encode.BarcodeGenerator;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The phases of {@link BarcodeGenerator#encodeBarcode()}: encoding the matrix, filling the ARGB
+ * pixels from it, and the Bitmap with the logo drawn over it. The last needs a device, so it is
+ * measured on a plain int[] standing in for the Bitmap: {@link #bitmap} does the copy
+ * {@code Bitmap.setPixels} does, {@link #bitmapWithLogo} adds the source-over blend
+ * {@code Canvas.drawBitmap} does for the logo.
+ * <p>
+ * {@link #renderPixelsByRow} is an alternative to the BitMatrix.get loop, reading the matrix a row
+ * at a time, to compare render paths against.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratorBenchmark {
+
+    // About the length of a payment code URL with a one-time token.
+    private static final String CONTENTS = "https://pay.example.com/c/7Q2XK9PZ4M8RT3WV6YB1NH5JD0GFCS";
+    private static final int MAIN_COLOR = 0xFF000000;
+    private static final int EMPTY_COLOR = 0xFFFFFFFF;
+    private static final int LOGO_SCALE = 5;
+
+    /**
+     * Format, then the error correction as BarcodeGenerator.Builder.setErrorCorrection takes it,
+     * if any.
+     */
+    @Param({"QR_CODE:L", "QR_CODE:M", "QR_CODE:Q", "QR_CODE:H", "AZTEC:33", "PDF_417:2", "DATA_MATRIX",
+            "CODE_128", "EAN_13"})
+    public String symbology;
+
+    @Param({"256", "512", "1024"})
+    public int size;
+
+    private BarcodeGenerator generator;
+    private BitMatrix matrix;
+    private int[] pixels;
+    private int[] logo;
+    private BitArray row;
+
+    @Setup(Level.Trial)
+    public void setUp() throws WriterException {
+        String[] fields = symbology.split(":");
+        BarcodeFormat format = BarcodeFormat.valueOf(fields[0]);
+        boolean linear = format == BarcodeFormat.CODE_128 || format == BarcodeFormat.EAN_13;
+        BarcodeGenerator.Builder builder = new BarcodeGenerator.Builder()
+                .setBarcodeFormat(format)
+                .setWidth(size)
+                .setHeight(linear ? size / 3 : size)
+                .setContent(contentsOf(format));
+        if (fields.length > 1) {
+            builder.setErrorCorrection(format == BarcodeFormat.QR_CODE ?
+                    ErrorCorrectionLevel.valueOf(fields[1]) : Integer.valueOf(fields[1]));
+        }
+        generator = builder.build();
+        matrix = generator.encodeMatrix();
+        pixels = generator.renderPixels(matrix);
+        logo = format == BarcodeFormat.QR_CODE ? newLogo(matrix.getWidth() / LOGO_SCALE) : null;
+    }
+
+    @Benchmark
+    public BitMatrix encode() throws WriterException {
+        return generator.encodeMatrix();
+    }
+
+    @Benchmark
+    public int[] renderPixels() {
+        return generator.renderPixels(matrix);
+    }
+
+    @Benchmark
+    public int[] renderPixelsByRow() {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            row = matrix.getRow(y, row);
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                pixels[offset + x] = row.get(x) ? MAIN_COLOR : EMPTY_COLOR;
+            }
+        }
+        return pixels;
+    }
+
+    @Benchmark
+    public int[] bitmap() {
+        return toBitmap(pixels);
+    }
+
+    @Benchmark
+    public int[] bitmapWithLogo() {
+        int[] bitmap = toBitmap(pixels);
+        if (logo != null) {
+            drawLogo(bitmap, matrix.getWidth(), matrix.getHeight());
+        }
+        return bitmap;
+    }
+
+    /**
+     * All phases, as one call of encodeBarcode with a logo set.
+     */
+    @Benchmark
+    public int[] encodeBarcode() throws WriterException {
+        BitMatrix matrix = generator.encodeMatrix();
+        int[] bitmap = toBitmap(generator.renderPixels(matrix));
+        if (logo != null) {
+            drawLogo(bitmap, matrix.getWidth(), matrix.getHeight());
+        }
+        return bitmap;
+    }
+
+    private static String contentsOf(BarcodeFormat format) {
+        switch (format) {
+            case EAN_13:
+                return "5901234123457";
+            case CODE_128:
+                return "20170901004271";
+            default:
+                return CONTENTS;
+        }
+    }
+
+    private static int[] toBitmap(int[] pixels) {
+        int[] bitmap = new int[pixels.length];
+        System.arraycopy(pixels, 0, bitmap, 0, pixels.length);
+        return bitmap;
+    }
+
+    /**
+     * Draws the logo centered, blending its translucent edge over the code.
+     */
+    private void drawLogo(int[] bitmap, int width, int height) {
+        int logoSize = (int) Math.sqrt(logo.length);
+        int left = width / 2 - logoSize / 2;
+        int top = height / 2 - logoSize / 2;
+        for (int y = 0; y < logoSize; y++) {
+            int src = y * logoSize;
+            int dst = (top + y) * width + left;
+            for (int x = 0; x < logoSize; x++) {
+                int color = logo[src + x];
+                int alpha = color >>> 24;
+                if (alpha == 0xff) {
+                    bitmap[dst + x] = color;
+                } else if (alpha != 0) {
+                    bitmap[dst + x] = blend(color, alpha, bitmap[dst + x]);
+                }
+            }
+        }
+    }
+
+    private static int blend(int color, int alpha, int background) {
+        int inverse = 0xff - alpha;
+        int r = (((color >> 16) & 0xff) * alpha + ((background >> 16) & 0xff) * inverse) / 0xff;
+        int g = (((color >> 8) & 0xff) * alpha + ((background >> 8) & 0xff) * inverse) / 0xff;
+        int b = ((color & 0xff) * alpha + (background & 0xff) * inverse) / 0xff;
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * A rounded square logo, opaque inside and fading out over its corners.
+     */
+    private static int[] newLogo(int size) {
+        int[] logo = new int[size * size];
+        float radius = size / 4f;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                float dx = Math.max(0f, Math.max(radius - x, x - (size - 1 - radius)));
+                float dy = Math.max(0f, Math.max(radius - y, y - (size - 1 - radius)));
+                float outside = (float) Math.sqrt(dx * dx + dy * dy) - radius;
+                int alpha = outside <= -1f ? 0xff : outside >= 1f ? 0 : (int) ((1f - outside) / 2f * 0xff);
+                logo[y * size + x] = (alpha << 24) | 0x3388DD;
+            }
+        }
+        return logo;
+    }
+
+}
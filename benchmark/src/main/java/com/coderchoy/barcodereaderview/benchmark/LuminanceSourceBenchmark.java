@@ -0,0 +1,67 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.benchmark;
+
+import com.coderchoy.barcodereaderview.decode.RotatedPlanarYUVLuminanceSource;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Constructing the luminance source alone. Neither copies pixels here, so this is the fixed cost
+ * every decode attempt pays before reading the first one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LuminanceSourceBenchmark {
+
+    @Benchmark
+    public LuminanceSource planarYuv(ResolutionState state) {
+        Corpus.Frame frame = state.frame;
+        // Unrotated, as PlanarYUVLuminanceSource cannot rotate.
+        return new PlanarYUVLuminanceSource(frame.data, frame.width, frame.height,
+                (frame.width - frame.framingHeight) / 2, (frame.height - frame.framingWidth) / 2,
+                frame.framingHeight, frame.framingWidth, false);
+    }
+
+    @Benchmark
+    public LuminanceSource rotatedPlanarYuv(ResolutionState state) {
+        return state.frame.newSource();
+    }
+
+    @Benchmark
+    public LuminanceSource rotatedPlanarYuvCropped(ResolutionState state) {
+        RotatedPlanarYUVLuminanceSource source = state.frame.newSource();
+        // A tracked region of interest, as FrameDecoder crops it.
+        return source.crop(source.getWidth() / 4, source.getHeight() / 4,
+                source.getWidth() / 2, source.getHeight() / 2);
+    }
+
+}
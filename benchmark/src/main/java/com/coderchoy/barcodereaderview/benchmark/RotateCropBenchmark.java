@@ -0,0 +1,111 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.benchmark;
+
+import com.coderchoy.barcodereaderview.decode.PlaneLayout;
+import com.coderchoy.barcodereaderview.decode.RotatedPlanarYUVLuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getting the framing rect out of a preview frame, turned upright: what DecodeHandler.decode does
+ * before any binarizing. {@link #rotateFrameThenCrop} is how it used to be done, rotating the whole
+ * Y plane into a new array first; the others read the crop in place.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RotateCropBenchmark {
+
+    private ByteBuffer directBuffer;
+    private byte[] row;
+
+    @Setup(Level.Trial)
+    public void setUp(ResolutionState state) {
+        Corpus.Frame frame = state.frame;
+        directBuffer = ByteBuffer.allocateDirect(frame.width * frame.height);
+        directBuffer.put(frame.data, 0, frame.width * frame.height);
+        directBuffer.flip();
+        row = new byte[frame.framingWidth];
+    }
+
+    @Benchmark
+    public byte[] rotateFrameThenCrop(ResolutionState state) {
+        Corpus.Frame frame = state.frame;
+        int width = frame.width;
+        int height = frame.height;
+        byte[] data = frame.data;
+        byte[] rotatedData = new byte[data.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                rotatedData[x * height + height - y - 1] = data[x + y * width];
+            }
+        }
+        return new PlanarYUVLuminanceSource(rotatedData, height, width, frame.framingLeft, frame.framingTop,
+                frame.framingWidth, frame.framingHeight, false).getMatrix();
+    }
+
+    @Benchmark
+    public byte[] rotatedCropMatrix(ResolutionState state) {
+        return state.frame.newSource().getMatrix();
+    }
+
+    /**
+     * Row by row into one reused array, the way the 1D readers consume a source.
+     */
+    @Benchmark
+    public int rotatedCropRows(ResolutionState state) {
+        RotatedPlanarYUVLuminanceSource source = state.frame.newSource();
+        int sum = 0;
+        for (int y = 0; y < source.getHeight(); y++) {
+            sum += source.getRow(y, row)[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public byte[] rotatedCropHalfMatrix(ResolutionState state) {
+        return state.frame.newSource().downsample().getMatrix();
+    }
+
+    @Benchmark
+    public byte[] rotatedCropDirectBuffer(ResolutionState state) {
+        Corpus.Frame frame = state.frame;
+        return new RotatedPlanarYUVLuminanceSource(directBuffer, PlaneLayout.packed(frame.width),
+                frame.width, frame.height, frame.rotation,
+                frame.framingLeft, frame.framingTop, frame.framingWidth, frame.framingHeight).getMatrix();
+    }
+
+}
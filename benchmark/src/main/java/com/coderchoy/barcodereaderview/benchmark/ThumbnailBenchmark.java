@@ -0,0 +1,57 @@
+/*
+    Copyright (C) 2017 CoderChoy
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+ */
+
+
+package com.coderchoy.barcodereaderview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The thumbnail of a decoded frame: the downscaled luminance the decode thread keeps, and the
+ * ARGB pixels BarcodeThumbnail.getBitmap turns it into. Creating the Bitmap itself needs a device.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThumbnailBenchmark {
+
+    @Benchmark
+    public byte[] renderThumbnailLuminance(ResolutionState state) {
+        return state.frame.newSource().renderThumbnailLuminance();
+    }
+
+    @Benchmark
+    public int[] thumbnailPixels(ResolutionState state) {
+        byte[] luminance = state.frame.newSource().renderThumbnailLuminance();
+        int[] pixels = new int[luminance.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int grey = luminance[i] & 0xff;
+            pixels[i] = 0xFF000000 | (grey * 0x00010101);
+        }
+        return pixels;
+    }
+
+}